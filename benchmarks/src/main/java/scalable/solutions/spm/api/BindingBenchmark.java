@@ -0,0 +1,99 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.openjdk.jmh.annotations.*;
+import scalable.solutions.spm.benchmarks.Amount;
+import scalable.solutions.spm.benchmarks.Hello;
+import scalable.solutions.spm.benchmarks.Twice;
+import scalable.solutions.spm.benchmarks.stub.StubCallableStatement;
+import scalable.solutions.spm.benchmarks.stub.StubConnection;
+
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parameter binding cost: binds the input parameters, registers the output
+ * parameters and reads them back through a stub statement.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingBenchmark {
+
+    private ProcedureManagerImpl manager;
+
+    private CallableStatement statement;
+
+    private EntityResolver.Entity twiceEntity;
+    private EntityResolver.Entity helloEntity;
+    private EntityResolver.Entity amountEntity;
+
+    private Twice twice;
+    private Hello hello;
+    private Amount amount;
+
+    @Setup
+    public void setup() {
+        manager = new ProcedureManagerImpl(new StubConnection(), new ProcedureManagerConfig());
+        statement = new StubCallableStatement();
+        twice = new Twice(1_000_000);
+        hello = new Hello("world");
+        amount = new Amount(BigDecimal.ONE, BigDecimal.TEN);
+        twiceEntity = manager.resolver.resolve(twice);
+        helloEntity = manager.resolver.resolve(hello);
+        amountEntity = manager.resolver.resolve(amount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    private Object bind(Object pojo, EntityResolver.Entity entity) throws SQLException {
+        manager.bindInputParameters(statement, pojo, entity);
+        manager.bindOutputParameters(statement, pojo, entity);
+        return pojo;
+    }
+
+    @Benchmark
+    public int twice() throws SQLException {
+        return ((Twice) bind(twice, twiceEntity)).getResult();
+    }
+
+    @Benchmark
+    public String hello() throws SQLException {
+        return ((Hello) bind(hello, helloEntity)).getResult();
+    }
+
+    @Benchmark
+    public BigDecimal amount() throws SQLException {
+        return ((Amount) bind(amount, amountEntity)).getAmount();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.openjdk.jmh.annotations.*;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
+import scalable.solutions.spm.benchmarks.Twice;
+
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity resolution cost: cold resolution through the compile time generated
+ * binder and through reflection, and the warm (cached) lookup.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolverBenchmark {
+
+    /* Private fields without accessors, no binder is generated. */
+    @StoredProcedure(name = "TWICE", procedure = false)
+    static class Reflective {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER, direction = Direction.OUT)
+        private int result;
+
+        @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+        private int value;
+    }
+
+    /* Resolver with the entities already cached. */
+    private EntityResolver resolver;
+
+    @Setup
+    public void setup() {
+        resolver = new EntityResolver();
+        resolver.resolve(Twice.class);
+    }
+
+    @Benchmark
+    public EntityResolver.Entity coldGenerated() {
+        return new EntityResolver().resolve(Twice.class);
+    }
+
+    @Benchmark
+    public EntityResolver.Entity coldReflective() {
+        return new EntityResolver().resolve(Reflective.class);
+    }
+
+    @Benchmark
+    public EntityResolver.Entity warm() {
+        return resolver.resolve(Twice.class);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.benchmarks;
+
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+
+/**
+ * Function with two decimal inputs and a decimal result.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+@StoredProcedure(name = "AMOUNT", procedure = false)
+public class Amount {
+
+    @StoredProcedureParameter(index = 1, type = Types.DECIMAL, direction = Direction.OUT)
+    BigDecimal amount;
+
+    @StoredProcedureParameter(index = 2, type = Types.DECIMAL)
+    BigDecimal price;
+
+    @StoredProcedureParameter(index = 3, type = Types.DECIMAL)
+    BigDecimal quantity;
+
+    public Amount(BigDecimal price, BigDecimal quantity) {
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.benchmarks;
+
+import scalable.solutions.spm.annotations.JDBC;
+import scalable.solutions.spm.api.ProcedureManager;
+import scalable.solutions.spm.api.ProcedureManagerConfig;
+import scalable.solutions.spm.api.ProcedureManagerFactory;
+import scalable.solutions.spm.benchmarks.stub.StubDriver;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Databases the call benchmarks run against.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public enum Backend {
+
+    /* No database, measures the library overhead only. */
+    STUB(Stub.class),
+
+    /* In memory H2 database, measures a real driver round trip. */
+    H2(InMemory.class);
+
+    @JDBC(driver = "scalable.solutions.spm.benchmarks.stub.StubDriver",
+            url = StubDriver.URL + "bench", maxPoolSize = 64, validateOnBorrow = false)
+    static class Stub {
+    }
+
+    @JDBC(driver = "org.h2.Driver", url = "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+            username = "sa", maxPoolSize = 64, validateOnBorrow = false)
+    static class InMemory {
+    }
+
+    /* @JDBC annotated class. */
+    private final Class<?> jdbcClass;
+
+    Backend(Class<?> jdbcClass) {
+        this.jdbcClass = jdbcClass;
+    }
+
+    /**
+     * Open a new connection with the H2 aliases installed.
+     *
+     * @return JDBC connection.
+     * @throws SQLException Database access error.
+     */
+    public Connection connect() throws SQLException {
+
+        JDBC jdbc = jdbcClass.getAnnotation(JDBC.class);
+        try {
+            Class.forName(jdbc.driver());
+        } catch (ClassNotFoundException e) {
+            throw new SQLException(e);
+        }
+
+        Connection connection = DriverManager.getConnection(jdbc.url(), jdbc.username(), jdbc.password());
+        if (this == H2) {
+            Procedures.install(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Create a single connection manager.
+     *
+     * @param config Configuration options.
+     * @return ProcedureManager instance.
+     * @throws SQLException Database access error.
+     */
+    public ProcedureManager createInstance(ProcedureManagerConfig config) throws SQLException {
+        return ProcedureManagerFactory.createInstance(connect(), config);
+    }
+
+    /**
+     * Create a thread safe manager on the connection pool of the backend.
+     *
+     * @param config Configuration options.
+     * @return ProcedureManager instance.
+     * @throws SQLException Database access error.
+     */
+    public ProcedureManager createConcurrentInstance(ProcedureManagerConfig config) throws SQLException {
+        connect().close();
+        return ProcedureManagerFactory.createConcurrentInstance(jdbcClass, config);
+    }
+}
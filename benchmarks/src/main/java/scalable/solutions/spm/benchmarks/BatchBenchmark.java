@@ -0,0 +1,86 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import scalable.solutions.spm.api.ProcedureManager;
+import scalable.solutions.spm.api.ProcedureManagerConfig;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched calls compared with the same number of individual calls.
+ * Scores are reported per procedure call.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+    private static final int CALLS = 100;
+
+    @Param({"STUB", "H2"})
+    public Backend backend;
+
+    private ProcedureManager manager;
+
+    private List<LogEvent> events;
+
+    @Setup
+    public void setup() throws SQLException {
+        manager = backend.createInstance(new ProcedureManagerConfig().setStatementCacheSize(64));
+        events = new ArrayList<>(CALLS);
+        for (int i = 0; i < CALLS; i++) {
+            events.add(new LogEvent("event " + i, i % 5));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int calls() {
+        int count = 0;
+        for (LogEvent event : events) {
+            manager.call(event);
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int[] batch() {
+        return manager.callBatch(events);
+    }
+}
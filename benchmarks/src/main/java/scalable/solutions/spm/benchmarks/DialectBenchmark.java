@@ -0,0 +1,79 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import scalable.solutions.spm.api.ProcedureManager;
+import scalable.solutions.spm.api.ProcedureManagerConfig;
+import scalable.solutions.spm.api.StandardDialect;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single threaded <code>call()</code> round trips on the embedded H2
+ * database using the JDBC escape syntax (GENERIC) or the native H2 call
+ * syntax, with and without the statement cache. Without the cache every
+ * call is parsed again by the driver.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DialectBenchmark {
+
+    @Param({"GENERIC", "H2"})
+    public StandardDialect dialect;
+
+    @Param({"0", "64"})
+    public int statementCacheSize;
+
+    private ProcedureManager manager;
+
+    @Setup
+    public void setup() throws SQLException {
+        manager = Backend.H2.createInstance(new ProcedureManagerConfig()
+                .setDialect(dialect)
+                .setStatementCacheSize(statementCacheSize));
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public int twice() {
+        Twice twice = new Twice(21);
+        manager.call(twice);
+        return twice.getResult();
+    }
+
+    @Benchmark
+    public void logEvent() {
+        manager.call(new LogEvent("benchmark", 1));
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.benchmarks;
+
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+
+import java.sql.Types;
+
+/**
+ * Procedure with input parameters only, used by the batch benchmarks.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+@StoredProcedure(name = "LOG_EVENT")
+public class LogEvent {
+
+    @StoredProcedureParameter(index = 1)
+    String message;
+
+    @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+    int level;
+
+    public LogEvent(String message, int level) {
+        this.message = message;
+        this.level = level;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Java implementation of the benchmark functions and procedures, registered
+ * as H2 aliases.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class Procedures {
+
+    private Procedures() {
+    }
+
+    public static int twice(int value) {
+        return 2 * value;
+    }
+
+    public static String hello(String name) {
+        return "Hello " + name;
+    }
+
+    public static BigDecimal amount(BigDecimal price, BigDecimal quantity) {
+        return price.multiply(quantity);
+    }
+
+    public static void logEvent(String message, int level) {
+    }
+
+    /**
+     * Create the aliases in an H2 database.
+     *
+     * @param connection H2 connection.
+     * @throws SQLException Database access error.
+     */
+    public static void install(Connection connection) throws SQLException {
+
+        String prefix = "CREATE ALIAS IF NOT EXISTS ";
+        String type = Procedures.class.getName();
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(prefix + "TWICE FOR \"" + type + ".twice\"");
+            statement.execute(prefix + "HELLO FOR \"" + type + ".hello\"");
+            statement.execute(prefix + "AMOUNT FOR \"" + type + ".amount\"");
+            statement.execute(prefix + "LOG_EVENT FOR \"" + type + ".logEvent\"");
+        }
+    }
+}
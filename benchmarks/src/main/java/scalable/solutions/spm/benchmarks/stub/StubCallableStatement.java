@@ -0,0 +1,1014 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.benchmarks.stub;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.*;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * Allocation free CallableStatement that returns constant OUT values.
+ * Used to measure the library overhead without any driver or network cost.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class StubCallableStatement implements CallableStatement {
+
+    /* Constant OUT values. */
+    private static final Integer INTEGER = 42;
+    private static final String VARCHAR = "stub";
+    private static final BigDecimal DECIMAL = BigDecimal.TEN;
+
+    /* Registered OUT parameter types, by index. */
+    private final int[] types = new int[32];
+
+    /* Number of batched calls. */
+    private int batch;
+
+    /* Closed flag. */
+    private boolean closed;
+
+    @Override
+    public boolean execute() throws SQLException {
+        return false;
+    }
+
+    @Override
+    public void addBatch() throws SQLException {
+        batch++;
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        batch = 0;
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        int[] counts = new int[batch];
+        batch = 0;
+        return counts;
+    }
+
+    @Override
+    public void registerOutParameter(int p0, int p1) throws SQLException {
+        types[p0] = p1;
+    }
+
+    @Override
+    public void registerOutParameter(int p0, int p1, int p2) throws SQLException {
+        types[p0] = p1;
+    }
+
+    @Override
+    public void registerOutParameter(int p0, int p1, String p2) throws SQLException {
+        types[p0] = p1;
+    }
+
+    @Override
+    public Object getObject(int p0) throws SQLException {
+        switch (types[p0]) {
+            case Types.INTEGER:
+                return INTEGER;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return DECIMAL;
+            default:
+                return VARCHAR;
+        }
+    }
+
+    @Override
+    public int getInt(int p0) throws SQLException {
+        return INTEGER;
+    }
+
+    @Override
+    public long getLong(int p0) throws SQLException {
+        return INTEGER;
+    }
+
+    @Override
+    public double getDouble(int p0) throws SQLException {
+        return INTEGER;
+    }
+
+    @Override
+    public String getString(int p0) throws SQLException {
+        return VARCHAR;
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(int p0) throws SQLException {
+        return DECIMAL;
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return -1;
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean getMoreResults(int p0) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+    }
+
+    @Override
+    public void addBatch(String p0) throws SQLException {
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public ResultSet executeQuery(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int executeUpdate(String p0, int[] p1) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int executeUpdate(String p0, String[] p1) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int executeUpdate(String p0, int p1) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int executeUpdate(String p0) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public boolean execute(String p0, int[] p1) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean execute(String p0, String[] p1) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean execute(String p0, int p1) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean execute(String p0) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public Array getArray(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Array getArray(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(int p0, int p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Blob getBlob(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Blob getBlob(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public boolean getBoolean(String p0) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean getBoolean(int p0) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public byte getByte(String p0) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public byte getByte(int p0) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public byte[] getBytes(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public byte[] getBytes(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Reader getCharacterStream(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Reader getCharacterStream(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Clob getClob(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Clob getClob(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Date getDate(String p0, Calendar p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Date getDate(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Date getDate(int p0, Calendar p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Date getDate(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public double getDouble(String p0) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public float getFloat(String p0) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public float getFloat(int p0) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public int getInt(String p0) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public long getLong(String p0) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Reader getNCharacterStream(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Reader getNCharacterStream(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public NClob getNClob(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public NClob getNClob(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public String getNString(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public String getNString(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public <T> T getObject(String p0, Class<T> p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Object getObject(String p0, Map<String, Class<?>> p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Object getObject(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public <T> T getObject(int p0, Class<T> p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Object getObject(int p0, Map<String, Class<?>> p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public ParameterMetaData getParameterMetaData() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public Ref getRef(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Ref getRef(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public RowId getRowId(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public RowId getRowId(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public SQLXML getSQLXML(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public SQLXML getSQLXML(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public short getShort(String p0) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public short getShort(int p0) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public String getString(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Time getTime(String p0, Calendar p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Time getTime(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Time getTime(int p0, Calendar p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Time getTime(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Timestamp getTimestamp(String p0, Calendar p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Timestamp getTimestamp(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Timestamp getTimestamp(int p0, Calendar p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Timestamp getTimestamp(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public URL getURL(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public URL getURL(int p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> p0) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public void registerOutParameter(String p0, int p1, String p2) throws SQLException {
+    }
+
+    @Override
+    public void registerOutParameter(String p0, int p1, int p2) throws SQLException {
+    }
+
+    @Override
+    public void registerOutParameter(String p0, int p1) throws SQLException {
+    }
+
+    @Override
+    public void setArray(int p0, Array p1) throws SQLException {
+    }
+
+    @Override
+    public void setAsciiStream(String p0, InputStream p1, int p2) throws SQLException {
+    }
+
+    @Override
+    public void setAsciiStream(String p0, InputStream p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setAsciiStream(String p0, InputStream p1) throws SQLException {
+    }
+
+    @Override
+    public void setAsciiStream(int p0, InputStream p1, int p2) throws SQLException {
+    }
+
+    @Override
+    public void setAsciiStream(int p0, InputStream p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setAsciiStream(int p0, InputStream p1) throws SQLException {
+    }
+
+    @Override
+    public void setBigDecimal(String p0, BigDecimal p1) throws SQLException {
+    }
+
+    @Override
+    public void setBigDecimal(int p0, BigDecimal p1) throws SQLException {
+    }
+
+    @Override
+    public void setBinaryStream(String p0, InputStream p1, int p2) throws SQLException {
+    }
+
+    @Override
+    public void setBinaryStream(String p0, InputStream p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setBinaryStream(String p0, InputStream p1) throws SQLException {
+    }
+
+    @Override
+    public void setBinaryStream(int p0, InputStream p1, int p2) throws SQLException {
+    }
+
+    @Override
+    public void setBinaryStream(int p0, InputStream p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setBinaryStream(int p0, InputStream p1) throws SQLException {
+    }
+
+    @Override
+    public void setBlob(String p0, InputStream p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setBlob(String p0, InputStream p1) throws SQLException {
+    }
+
+    @Override
+    public void setBlob(String p0, Blob p1) throws SQLException {
+    }
+
+    @Override
+    public void setBlob(int p0, InputStream p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setBlob(int p0, InputStream p1) throws SQLException {
+    }
+
+    @Override
+    public void setBlob(int p0, Blob p1) throws SQLException {
+    }
+
+    @Override
+    public void setBoolean(String p0, boolean p1) throws SQLException {
+    }
+
+    @Override
+    public void setBoolean(int p0, boolean p1) throws SQLException {
+    }
+
+    @Override
+    public void setByte(String p0, byte p1) throws SQLException {
+    }
+
+    @Override
+    public void setByte(int p0, byte p1) throws SQLException {
+    }
+
+    @Override
+    public void setBytes(String p0, byte[] p1) throws SQLException {
+    }
+
+    @Override
+    public void setBytes(int p0, byte[] p1) throws SQLException {
+    }
+
+    @Override
+    public void setCharacterStream(String p0, Reader p1, int p2) throws SQLException {
+    }
+
+    @Override
+    public void setCharacterStream(String p0, Reader p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setCharacterStream(String p0, Reader p1) throws SQLException {
+    }
+
+    @Override
+    public void setCharacterStream(int p0, Reader p1, int p2) throws SQLException {
+    }
+
+    @Override
+    public void setCharacterStream(int p0, Reader p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setCharacterStream(int p0, Reader p1) throws SQLException {
+    }
+
+    @Override
+    public void setClob(String p0, Reader p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setClob(String p0, Reader p1) throws SQLException {
+    }
+
+    @Override
+    public void setClob(String p0, Clob p1) throws SQLException {
+    }
+
+    @Override
+    public void setClob(int p0, Reader p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setClob(int p0, Reader p1) throws SQLException {
+    }
+
+    @Override
+    public void setClob(int p0, Clob p1) throws SQLException {
+    }
+
+    @Override
+    public void setCursorName(String p0) throws SQLException {
+    }
+
+    @Override
+    public void setDate(String p0, Date p1, Calendar p2) throws SQLException {
+    }
+
+    @Override
+    public void setDate(String p0, Date p1) throws SQLException {
+    }
+
+    @Override
+    public void setDate(int p0, Date p1, Calendar p2) throws SQLException {
+    }
+
+    @Override
+    public void setDate(int p0, Date p1) throws SQLException {
+    }
+
+    @Override
+    public void setDouble(String p0, double p1) throws SQLException {
+    }
+
+    @Override
+    public void setDouble(int p0, double p1) throws SQLException {
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean p0) throws SQLException {
+    }
+
+    @Override
+    public void setFetchDirection(int p0) throws SQLException {
+    }
+
+    @Override
+    public void setFetchSize(int p0) throws SQLException {
+    }
+
+    @Override
+    public void setFloat(String p0, float p1) throws SQLException {
+    }
+
+    @Override
+    public void setFloat(int p0, float p1) throws SQLException {
+    }
+
+    @Override
+    public void setInt(String p0, int p1) throws SQLException {
+    }
+
+    @Override
+    public void setInt(int p0, int p1) throws SQLException {
+    }
+
+    @Override
+    public void setLong(String p0, long p1) throws SQLException {
+    }
+
+    @Override
+    public void setLong(int p0, long p1) throws SQLException {
+    }
+
+    @Override
+    public void setMaxFieldSize(int p0) throws SQLException {
+    }
+
+    @Override
+    public void setMaxRows(int p0) throws SQLException {
+    }
+
+    @Override
+    public void setNCharacterStream(String p0, Reader p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setNCharacterStream(String p0, Reader p1) throws SQLException {
+    }
+
+    @Override
+    public void setNCharacterStream(int p0, Reader p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setNCharacterStream(int p0, Reader p1) throws SQLException {
+    }
+
+    @Override
+    public void setNClob(String p0, Reader p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setNClob(String p0, Reader p1) throws SQLException {
+    }
+
+    @Override
+    public void setNClob(String p0, NClob p1) throws SQLException {
+    }
+
+    @Override
+    public void setNClob(int p0, Reader p1, long p2) throws SQLException {
+    }
+
+    @Override
+    public void setNClob(int p0, Reader p1) throws SQLException {
+    }
+
+    @Override
+    public void setNClob(int p0, NClob p1) throws SQLException {
+    }
+
+    @Override
+    public void setNString(String p0, String p1) throws SQLException {
+    }
+
+    @Override
+    public void setNString(int p0, String p1) throws SQLException {
+    }
+
+    @Override
+    public void setNull(String p0, int p1, String p2) throws SQLException {
+    }
+
+    @Override
+    public void setNull(String p0, int p1) throws SQLException {
+    }
+
+    @Override
+    public void setNull(int p0, int p1, String p2) throws SQLException {
+    }
+
+    @Override
+    public void setNull(int p0, int p1) throws SQLException {
+    }
+
+    @Override
+    public void setObject(String p0, Object p1, int p2, int p3) throws SQLException {
+    }
+
+    @Override
+    public void setObject(String p0, Object p1, int p2) throws SQLException {
+    }
+
+    @Override
+    public void setObject(String p0, Object p1) throws SQLException {
+    }
+
+    @Override
+    public void setObject(int p0, Object p1, int p2, int p3) throws SQLException {
+    }
+
+    @Override
+    public void setObject(int p0, Object p1, int p2) throws SQLException {
+    }
+
+    @Override
+    public void setObject(int p0, Object p1) throws SQLException {
+    }
+
+    @Override
+    public void setPoolable(boolean p0) throws SQLException {
+    }
+
+    @Override
+    public void setQueryTimeout(int p0) throws SQLException {
+    }
+
+    @Override
+    public void setRef(int p0, Ref p1) throws SQLException {
+    }
+
+    @Override
+    public void setRowId(String p0, RowId p1) throws SQLException {
+    }
+
+    @Override
+    public void setRowId(int p0, RowId p1) throws SQLException {
+    }
+
+    @Override
+    public void setSQLXML(String p0, SQLXML p1) throws SQLException {
+    }
+
+    @Override
+    public void setSQLXML(int p0, SQLXML p1) throws SQLException {
+    }
+
+    @Override
+    public void setShort(String p0, short p1) throws SQLException {
+    }
+
+    @Override
+    public void setShort(int p0, short p1) throws SQLException {
+    }
+
+    @Override
+    public void setString(String p0, String p1) throws SQLException {
+    }
+
+    @Override
+    public void setString(int p0, String p1) throws SQLException {
+    }
+
+    @Override
+    public void setTime(String p0, Time p1, Calendar p2) throws SQLException {
+    }
+
+    @Override
+    public void setTime(String p0, Time p1) throws SQLException {
+    }
+
+    @Override
+    public void setTime(int p0, Time p1, Calendar p2) throws SQLException {
+    }
+
+    @Override
+    public void setTime(int p0, Time p1) throws SQLException {
+    }
+
+    @Override
+    public void setTimestamp(String p0, Timestamp p1, Calendar p2) throws SQLException {
+    }
+
+    @Override
+    public void setTimestamp(String p0, Timestamp p1) throws SQLException {
+    }
+
+    @Override
+    public void setTimestamp(int p0, Timestamp p1, Calendar p2) throws SQLException {
+    }
+
+    @Override
+    public void setTimestamp(int p0, Timestamp p1) throws SQLException {
+    }
+
+    @Override
+    public void setURL(String p0, URL p1) throws SQLException {
+    }
+
+    @Override
+    public void setURL(int p0, URL p1) throws SQLException {
+    }
+
+    @Override
+    public void setUnicodeStream(int p0, InputStream p1, int p2) throws SQLException {
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public boolean wasNull() throws SQLException {
+        return false;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.benchmarks.stub;
+
+import java.sql.*;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * Connection of the stub driver. Every prepared call returns a new
+ * {@link StubCallableStatement}.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class StubConnection implements Connection {
+
+    /* Auto commit mode. */
+    private boolean autoCommit = true;
+
+    /* Closed flag. */
+    private boolean closed;
+
+    @Override
+    public CallableStatement prepareCall(String p0) throws SQLException {
+        return new StubCallableStatement();
+    }
+
+    @Override
+    public CallableStatement prepareCall(String p0, int p1, int p2) throws SQLException {
+        return new StubCallableStatement();
+    }
+
+    @Override
+    public CallableStatement prepareCall(String p0, int p1, int p2, int p3) throws SQLException {
+        return new StubCallableStatement();
+    }
+
+    @Override
+    public boolean isValid(int p0) throws SQLException {
+        return !closed;
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        return autoCommit;
+    }
+
+    @Override
+    public void setAutoCommit(boolean p0) throws SQLException {
+        autoCommit = p0;
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+    }
+
+    @Override
+    public void abort(Executor p0) throws SQLException {
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+    }
+
+    @Override
+    public void commit() throws SQLException {
+    }
+
+    @Override
+    public Array createArrayOf(String p0, Object[] p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Blob createBlob() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Clob createClob() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public NClob createNClob() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public SQLXML createSQLXML() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Statement createStatement(int p0, int p1, int p2) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Statement createStatement(int p0, int p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Struct createStruct(String p0, Object[] p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public String getCatalog() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Properties getClientInfo() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public String getClientInfo(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public DatabaseMetaData getMetaData() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public int getNetworkTimeout() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public String getSchema() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public Map<String, Class<?>> getTypeMap() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public boolean isReadOnly() throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> p0) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public String nativeSQL(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String p0, int[] p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String p0, String[] p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String p0, int p1, int p2, int p3) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String p0, int p1, int p2) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String p0, int p1) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint p0) throws SQLException {
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+    }
+
+    @Override
+    public void rollback(Savepoint p0) throws SQLException {
+    }
+
+    @Override
+    public void setCatalog(String p0) throws SQLException {
+    }
+
+    @Override
+    public void setClientInfo(String p0, String p1) throws SQLClientInfoException {
+    }
+
+    @Override
+    public void setClientInfo(Properties p0) throws SQLClientInfoException {
+    }
+
+    @Override
+    public void setHoldability(int p0) throws SQLException {
+    }
+
+    @Override
+    public void setNetworkTimeout(Executor p0, int p1) throws SQLException {
+    }
+
+    @Override
+    public void setReadOnly(boolean p0) throws SQLException {
+    }
+
+    @Override
+    public Savepoint setSavepoint() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public Savepoint setSavepoint(String p0) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public void setSchema(String p0) throws SQLException {
+    }
+
+    @Override
+    public void setTransactionIsolation(int p0) throws SQLException {
+    }
+
+    @Override
+    public void setTypeMap(Map<String, Class<?>> p0) throws SQLException {
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> p0) throws SQLException {
+        return null;
+    }
+}
@@ -60,4 +60,58 @@ public @interface JDBC {
      * @return	password.
      */
     String password() default "";
+
+    /**
+     * Minimum number of pooled connections kept open.
+     *
+     * @return  minimum pool size.
+     */
+    int minPoolSize() default 0;
+
+    /**
+     * Maximum number of pooled connections. The default <code>0</code>
+     * disables the connection pool and opens a new connection for each
+     * manager, set a positive size to enable pooling.
+     *
+     * @return  maximum pool size.
+     */
+    int maxPoolSize() default 0;
+
+    /**
+     * Maximum time to wait for a pooled connection, in milliseconds.
+     *
+     * @return  acquire timeout.
+     */
+    long acquireTimeout() default 30000;
+
+    /**
+     * Time after which an idle pooled connection is closed, in milliseconds.
+     * <code>0</code> keeps idle connections open.
+     *
+     * @return  idle timeout.
+     */
+    long idleTimeout() default 600000;
+
+    /**
+     * Validate pooled connections before handing them out.
+     *
+     * @return  <code>true</code> to validate connections on borrow.
+     */
+    boolean validateOnBorrow() default true;
+
+    /**
+     * Connection validation timeout, in seconds.
+     *
+     * @return  validation timeout.
+     */
+    int validationTimeout() default 5;
+
+    /**
+     * Time after which a borrowed connection that was not returned is
+     * reported as a possible leak, in milliseconds. <code>0</code> disables
+     * leak detection.
+     *
+     * @return  leak detection threshold.
+     */
+    long leakDetectionThreshold() default 0;
 }
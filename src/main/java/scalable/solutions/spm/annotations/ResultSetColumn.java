@@ -0,0 +1,51 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * Result set column annotation. Maps a column of the rows returned by a
+ * stored procedure to a field of a row POJO.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(value = {ElementType.FIELD})
+public @interface ResultSetColumn {
+
+    /**
+     * Column label. Defaults to the field name when neither a label nor an
+     * index is given.
+     *
+     * @return  column label.
+     */
+    String name() default "";
+
+    /**
+     * Column index starting from 1. Takes precedence over the column label.
+     *
+     * @return  column index, <code>0</code> to map the column by label.
+     */
+    int index() default 0;
+}
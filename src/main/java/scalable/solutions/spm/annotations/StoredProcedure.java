@@ -47,4 +47,50 @@ public @interface StoredProcedure {
      *          <code>false</code> - function.
      */
     boolean procedure() default true;
+
+    /**
+     * Cache the OUT parameter values by IN parameter values. Only pure
+     * lookups, returning the same results for the same arguments, should be
+     * cacheable. See <code>ProcedureManagerConfig.setResultCacheSize</code>.
+     *
+     * @return  <code>true</code> to cache the call results.
+     */
+    boolean cacheable() default false;
+
+    /**
+     * Time to live of the cached results, in milliseconds. <code>0</code>
+     * keeps the results until they are evicted or invalidated.
+     *
+     * @return  cached results time to live.
+     */
+    long ttl() default 0;
+
+    /**
+     * Collapse concurrent calls with equal IN parameter values into a single
+     * database call. The callers waiting for the call in flight receive its
+     * OUT parameter values. Only read only procedures should use single flight
+     * calls. Calls inside a transaction or on a caller connection are never
+     * collapsed.
+     *
+     * @return  <code>true</code> to share the calls in flight.
+     */
+    boolean singleFlight() default false;
+
+    /**
+     * Maximum execution time of a call, in milliseconds, applied with
+     * <code>setQueryTimeout</code> rounded up to seconds. A call deadline
+     * shorter than the timeout takes precedence. <code>0</code> waits for
+     * the call to complete.
+     *
+     * @return  call timeout.
+     */
+    long timeout() default 0;
+
+    /**
+     * The procedure only reads data. Routing managers send the calls of read
+     * only procedures to a replica unless a transaction is active.
+     *
+     * @return  <code>true</code> if the procedure can run on a replica.
+     */
+    boolean readOnly() default false;
 }
@@ -56,4 +56,28 @@ public @interface StoredProcedureParameter {
      * @return  Direction attribute of the stored procedure parameter.
      */
     Direction direction() default Direction.IN;
+
+    /**
+     * Row POJO class of a cursor OUT parameter. Cursor parameters, like
+     * Oracle <code>REF CURSOR</code>, are mapped to <code>Stream</code>
+     * fields. The row class defaults to the type argument of the field.
+     * <p>
+     * For <code>ARRAY</code> parameters mapped to <code>Collection</code>
+     * fields this is the element class, defaulting to the type argument of
+     * the field. Array fields use their component type.
+     *
+     * @return  Row POJO class of a cursor parameter or element class of an array.
+     */
+    Class<?> rowType() default void.class;
+
+    /**
+     * SQL type name of the elements of an <code>ARRAY</code> parameter, for
+     * example <code>INTEGER</code> or the name of the structured type of
+     * POJO elements. <code>ARRAY</code> parameters are mapped to
+     * <code>Collection</code> and array fields, POJO elements are bound as
+     * structs whose attributes are the @ResultSetColumn fields in index order.
+     *
+     * @return  SQL type name of the array elements.
+     */
+    String typeName() default "";
 }
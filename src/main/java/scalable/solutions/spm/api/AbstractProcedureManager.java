@@ -0,0 +1,1282 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.exception.ProcedureTimeoutException;
+import scalable.solutions.spm.i18n.I18n;
+import scalable.solutions.spm.metrics.MetricsRegistry;
+import scalable.solutions.spm.metrics.ProcedureMetrics;
+import scalable.solutions.spm.metrics.ProcedureStatistics;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Common ProcedureManager call path. Subclasses decide where the JDBC
+ * connection of a call comes from and how statements are prepared and
+ * released on it.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+abstract class AbstractProcedureManager implements ProcedureManager, TransactionManager {
+
+    /* Entity resolver instance. */
+    final EntityResolver resolver;
+
+    /* Configuration options. */
+    final ProcedureManagerConfig config;
+
+    /* Asynchronous calls executor. */
+    private final AsyncExecutor async;
+
+    /* Call metrics, null if disabled. */
+    private final MetricsRegistry metrics;
+
+    /* Results of cacheable procedures. */
+    private final ResultCache cache;
+
+    /* Calls in flight of single flight procedures. */
+    private final SingleFlight flights = new SingleFlight();
+
+    /* Deadline of the call running on the current thread. */
+    private static final ThreadLocal<Deadline> DEADLINE = new ThreadLocal<>();
+
+    /**
+     * Construct a ProcedureManager.
+     *
+     * @param resolver    Entity resolver.
+     * @param config      Configuration options.
+     * @param maxInFlight Maximum number of asynchronous calls in flight.
+     */
+    AbstractProcedureManager(EntityResolver resolver, ProcedureManagerConfig config, int maxInFlight) {
+        this(resolver, config, maxInFlight, config.getJmxName());
+    }
+
+    /**
+     * Construct a ProcedureManager exposing its metrics under the given name.
+     *
+     * @param resolver    Entity resolver.
+     * @param config      Configuration options.
+     * @param maxInFlight Maximum number of asynchronous calls in flight.
+     * @param jmxName     Metrics MXBean name or <code>null</code>.
+     */
+    AbstractProcedureManager(EntityResolver resolver, ProcedureManagerConfig config, int maxInFlight,
+                             String jmxName) {
+        this.resolver = resolver;
+        this.config = config;
+        this.async = new AsyncExecutor(config.getExecutor(), maxInFlight);
+        this.metrics = config.isMetricsEnabled() ? new MetricsRegistry() : null;
+        this.cache = new ResultCache(config.getResultCacheSize());
+        if (config.getDialect() != null) {
+            resolver.setDialect(config.getDialect());
+        } else if (!config.isDialectDetectionEnabled()) {
+            resolver.setDialect(StandardDialect.GENERIC);
+        }
+        if (metrics != null && jmxName != null) {
+            try {
+                metrics.register(jmxName);
+            } catch (RuntimeException e) {
+                async.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Release the resources shared by all calls of the manager.
+     */
+    void closeResources() {
+        async.close();
+        if (metrics != null) {
+            metrics.unregister();
+        }
+    }
+
+    /**
+     * Call metrics snapshot.
+     *
+     * @return Statistics by stored procedure name, empty if metrics are disabled.
+     */
+    @Override
+    public Map<String, ProcedureStatistics> getMetrics() {
+        return metrics != null ? metrics.getProcedures() : Collections.emptyMap();
+    }
+
+    /**
+     * Results cache of the @StoredProcedure(cacheable = true) procedures.
+     *
+     * @return Result cache.
+     */
+    @Override
+    public ResultCache getResultCache() {
+        return cache;
+    }
+
+    /**
+     * Current time for the call metrics.
+     *
+     * @param recorder Procedure metrics, null if disabled.
+     * @return Nanoseconds, <code>0</code> if metrics are disabled.
+     */
+    private static long now(ProcedureMetrics recorder) {
+        return recorder != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Resolve the entity of a POJO.
+     *
+     * @param pojo POJO entity.
+     * @return Resolved entity.
+     */
+    EntityResolver.Entity resolve(Object pojo) {
+        return resolve(pojo.getClass());
+    }
+
+    /**
+     * Resolve the entity of a POJO class. Until the SQL dialect is detected
+     * the call statements use the JDBC escape syntax.
+     *
+     * @param type POJO class.
+     * @return Resolved entity.
+     */
+    EntityResolver.Entity resolve(Class<?> type) {
+        return resolver.resolve(type);
+    }
+
+    /**
+     * Detect the SQL dialect from the metadata of the connection of the
+     * first call, when dialect detection is enabled. The entities resolved
+     * before are resolved again with the detected dialect.
+     *
+     * @param connection Acquired connection of a call.
+     * @return The connection, released if the detection failed.
+     */
+    private Connection detectDialect(Connection connection) {
+
+        if (resolver.getDialect() != null) {
+            return connection;
+        }
+
+        try {
+            synchronized (resolver) {
+                if (resolver.getDialect() == null) {
+                    resolver.setDialect(StandardDialect.detect(connection));
+                }
+            }
+            return connection;
+        } catch (RuntimeException e) {
+            release(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Acquire the connection of a call.
+     *
+     * @return JDBC connection.
+     */
+    abstract Connection acquire();
+
+    /**
+     * Acquire the connection of a single call. Routing managers select the
+     * database of the call from its entity.
+     *
+     * @param entity Resolved entity.
+     * @return JDBC connection.
+     */
+    Connection acquire(EntityResolver.Entity entity) {
+        return acquire();
+    }
+
+    /**
+     * Release the connection of a call.
+     *
+     * @param connection JDBC connection returned by {@link #acquire()}.
+     */
+    abstract void release(Connection connection);
+
+    /**
+     * Release the connection of a completed call.
+     *
+     * @param connection JDBC connection returned by {@link #acquire(EntityResolver.Entity)}.
+     * @param failure    Call error or <code>null</code> if the call succeeded.
+     */
+    void release(Connection connection, Throwable failure) {
+        release(connection);
+    }
+
+    /**
+     * Prepare a call statement.
+     *
+     * @param connection JDBC connection.
+     * @param sql        Call statement SQL.
+     * @return Callable statement.
+     * @throws SQLException Database access error.
+     */
+    CallableStatement prepare(Connection connection, String sql) throws SQLException {
+        return connection.prepareCall(sql);
+    }
+
+    /**
+     * Release a call statement.
+     *
+     * @param connection JDBC connection.
+     * @param sql        Call statement SQL.
+     * @param statement  Callable statement.
+     * @param reusable   <code>false</code> if the call failed.
+     * @throws SQLException Database access error.
+     */
+    void release(Connection connection, String sql, CallableStatement statement,
+                 boolean reusable) throws SQLException {
+        statement.close();
+    }
+
+    /**
+     * Check if prepared call statements are kept for the next calls.
+     *
+     * @return <code>true</code> if the manager has a statement cache.
+     */
+    boolean cachesStatements() {
+        return false;
+    }
+
+    /**
+     * Library version.
+     *
+     * @return see above.
+     */
+    @Override
+    public String version() {
+        return I18n.get("pojo.sp.version");
+    }
+
+    /**
+     * Get TransactionManager API.
+     *
+     * @return TransactionManager interface.
+     */
+    @Override
+    public TransactionManager getTransactionManager() {
+        return this;
+    }
+
+    /**
+     * Check if a transaction is active on the manager connection of the
+     * calling thread.
+     *
+     * @return <code>true</code> if calls run inside a transaction.
+     */
+    abstract boolean isTransactionActive();
+
+    /**
+     * Run a unit of work in a transaction. The transaction is committed if the
+     * callback returns and rolled back if it throws. When the failure is a
+     * deadlock, a serialization failure or a lost connection the whole unit
+     * of work runs again, up to the configured number of retries, after a
+     * random exponential delay.
+     * <p>
+     * Inside an active transaction the unit of work runs in a savepoint
+     * instead, a failure rolls back only its own changes and is propagated
+     * so the outermost scope decides whether to retry.
+     *
+     * @param callback Unit of work.
+     * @param <T>      Result type.
+     * @return Unit of work result.
+     */
+    @Override
+    public <T> T inTransaction(TransactionCallback<T> callback) {
+
+        if (isTransactionActive()) {
+            return inSavepoint(callback);
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            begin();
+            T result;
+            try {
+                result = callback.execute(this);
+                commit();
+            } catch (SQLException | RuntimeException e) {
+                abort(e);
+                if (attempt < config.getTransactionRetries() && TransientErrors.isTransient(e)) {
+                    backoff(attempt, e);
+                    continue;
+                }
+                throw unchecked(e);
+            } catch (Error e) {
+                abort(e);
+                throw e;
+            }
+            end();
+            return result;
+        }
+    }
+
+    /**
+     * Run a nested unit of work in a savepoint of the active transaction.
+     *
+     * @param callback Unit of work.
+     * @param <T>      Result type.
+     * @return Unit of work result.
+     */
+    private <T> T inSavepoint(TransactionCallback<T> callback) {
+
+        Connection connection = getConnection();
+        Savepoint savepoint;
+        try {
+            savepoint = connection.setSavepoint();
+        } catch (SQLException e) {
+            throw new ProcedureManagerException(e);
+        }
+
+        T result;
+        try {
+            result = callback.execute(this);
+        } catch (SQLException | RuntimeException e) {
+            rollback(connection, savepoint, e);
+            throw unchecked(e);
+        } catch (Error e) {
+            rollback(connection, savepoint, e);
+            throw e;
+        }
+
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLFeatureNotSupportedException e) {
+            // savepoints are released with the transaction.
+        } catch (SQLException e) {
+            throw new ProcedureManagerException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Roll back a failed nested unit of work, keeping the original error.
+     *
+     * @param connection Transaction connection.
+     * @param savepoint  Savepoint of the nested unit of work.
+     * @param error      Unit of work error.
+     */
+    private static void rollback(Connection connection, Savepoint savepoint, Throwable error) {
+        try {
+            connection.rollback(savepoint);
+        } catch (SQLException e) {
+            error.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Roll back and end a failed transaction, keeping the original error.
+     *
+     * @param error Unit of work error.
+     */
+    private void abort(Throwable error) {
+        try {
+            rollback();
+        } catch (RuntimeException e) {
+            error.addSuppressed(e);
+        }
+        try {
+            end();
+        } catch (RuntimeException e) {
+            error.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Wait before a transaction or write behind retry. The delay is random up
+     * to the base delay doubled on each attempt, capped by the maximum delay.
+     *
+     * @param attempt Failed attempt, starting from <code>0</code>.
+     * @param error   Transient error of the failed attempt.
+     */
+    void backoff(int attempt, Exception error) {
+
+        long bound = Math.min(config.getMaxRetryBackoff(), config.getRetryBackoff() << Math.min(attempt, 30));
+        if (bound <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw unchecked(error);
+        }
+    }
+
+    /**
+     * Unit of work errors are reported as unchecked exceptions.
+     *
+     * @param error Unit of work error.
+     * @return Runtime exception to throw.
+     */
+    private static RuntimeException unchecked(Exception error) {
+        return error instanceof RuntimeException ? (RuntimeException) error : new ProcedureManagerException(error);
+    }
+
+    /**
+     * Register the input/output parameters before the call.
+     *
+     * @param statement CallableStatement object.
+     * @param pojo      Stored procedure entity.
+     * @param entity    Resolved entity.
+     * @throws SQLException Database access error.
+     */
+    void bindInputParameters(CallableStatement statement, Object pojo,
+                             EntityResolver.Entity entity) throws SQLException {
+
+        for (ParameterBinder binder : entity.in) {
+            if (binder.kind == ParameterBinder.Kind.ARRAY) {
+                binder.bind(statement, pojo, config.getArrayAdapter());
+            } else {
+                binder.bind(statement, pojo);
+            }
+        }
+
+        for (int i = 0; i < entity.out.length; i++) {
+            ParameterBinder binder = entity.out[i];
+            if (binder.typeName != null) {
+                statement.registerOutParameter(binder.index, entity.outTypes[i], binder.typeName);
+            } else {
+                statement.registerOutParameter(binder.index, entity.outTypes[i]);
+            }
+        }
+    }
+
+    /**
+     * Register the output parameters after call.
+     *
+     * @param statement CallableStatement object.
+     * @param pojo      Stored procedure entity.
+     * @param entity    Resolved entity.
+     * @throws SQLException Database access error.
+     */
+    void bindOutputParameters(CallableStatement statement, Object pojo,
+                              EntityResolver.Entity entity) throws SQLException {
+
+        for (ParameterBinder binder : entity.out) {
+            if (binder.kind != ParameterBinder.Kind.CURSOR && binder.kind != ParameterBinder.Kind.BINARY_STREAM
+                    && binder.kind != ParameterBinder.Kind.CHARACTER_STREAM) {
+                binder.fetch(statement, pojo);
+            }
+        }
+    }
+
+    /**
+     * Call a function or stored procedure.
+     *
+     * @param pojo POJO entity.
+     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
+     * <code>false</code> if the first result is an update count or no result
+     */
+    @Override
+    public boolean call(Object pojo) {
+
+        // Null POJO entities are not allowed.
+        if (pojo == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.entity"));
+        }
+
+        // answer cacheable calls from the cache without a connection
+        EntityResolver.Entity entity = resolve(pojo);
+        if (entity.streaming) {
+            return executeStreaming(detectDialect(acquire(entity)), true, pojo, entity);
+        }
+
+        ResultCache.Key key = cache.key(entity, pojo);
+        Boolean cached = key != null ? cache.load(key, entity, pojo) : null;
+        if (cached != null) {
+            return cached;
+        }
+
+        // identical concurrent calls share a single connection and call, outside transactions only
+        if (entity.singleFlight && !isTransactionActive()) {
+            return flights.call(entity, pojo, DEADLINE.get(), () -> acquireAndExecute(pojo, entity, key));
+        }
+
+        return acquireAndExecute(pojo, entity, key);
+    }
+
+    /**
+     * Call a function or stored procedure within a deadline.
+     *
+     * @param pojo     POJO entity.
+     * @param deadline Call deadline and cancel handle.
+     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
+     * <code>false</code> if the first result is an update count or no result
+     */
+    @Override
+    public boolean call(Object pojo, Deadline deadline) {
+
+        Deadline outer = DEADLINE.get();
+        DEADLINE.set(deadline);
+        try {
+            return call(pojo);
+        } finally {
+            if (outer != null) {
+                DEADLINE.set(outer);
+            } else {
+                DEADLINE.remove();
+            }
+        }
+    }
+
+    /**
+     * Apply the call timeout and the time left until the deadline of the
+     * current call to a statement about to run.
+     *
+     * @param statement Statement.
+     * @param entity    Resolved entity.
+     * @param deadline  Call deadline or <code>null</code>.
+     * @throws SQLException Database access error.
+     */
+    private static void limit(Statement statement, EntityResolver.Entity entity,
+                              Deadline deadline) throws SQLException {
+
+        long timeout = entity.timeout;
+        if (deadline != null) {
+            if (!deadline.attach(statement)) {
+                throw new ProcedureManagerException(I18n.get("error.call.cancelled", entity.name));
+            }
+            long remaining = deadline.remaining(TimeUnit.MILLISECONDS);
+            if (remaining <= 0) {
+                throw new ProcedureTimeoutException(I18n.get("error.call.timeout", entity.name));
+            }
+            if (remaining != Long.MAX_VALUE) {
+                timeout = timeout > 0 ? Math.min(timeout, remaining) : remaining;
+            }
+        }
+
+        // query timeouts have a one second resolution, cached statements keep the previous timeout
+        int seconds = timeout > 0 ? (int) Math.min(Integer.MAX_VALUE, (timeout + 999) / 1000) : 0;
+        if (seconds > 0 || statement.getQueryTimeout() > 0) {
+            statement.setQueryTimeout(seconds);
+        }
+    }
+
+    /**
+     * Translate a call error, reporting timeouts and cancelled calls. A
+     * driver timeout is a call timeout only if the deadline expired or the
+     * call ran for its timeout; lock timeouts, raised by some drivers with
+     * the same SQL state, are reported as regular errors.
+     *
+     * @param e        Call error.
+     * @param entity   Resolved entity.
+     * @param deadline Call deadline or <code>null</code>.
+     * @param started  Call start time in nanoseconds.
+     * @return Exception to throw.
+     */
+    private static ProcedureManagerException failure(SQLException e, EntityResolver.Entity entity,
+                                                     Deadline deadline, long started) {
+
+        if (deadline != null && deadline.isCancelled()) {
+            return new ProcedureManagerException(I18n.get("error.call.cancelled", entity.name), e);
+        }
+        boolean timedOut = e instanceof SQLTimeoutException || "HYT00".equals(e.getSQLState());
+        if ((deadline != null && deadline.isExpired()) || (timedOut && entity.timeout > 0
+                && System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(entity.timeout))) {
+            return new ProcedureTimeoutException(I18n.get("error.call.timeout", entity.name), e);
+        }
+        return new ProcedureManagerException(e);
+    }
+
+    /**
+     * Execute a resolved call on an acquired connection.
+     *
+     * @param pojo   POJO entity.
+     * @param entity Resolved entity.
+     * @param key    Result cache key, <code>null</code> if not cacheable.
+     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
+     * <code>false</code> if the first result is an update count or no result
+     */
+    private boolean acquireAndExecute(Object pojo, EntityResolver.Entity entity, ResultCache.Key key) {
+
+        Connection connection = detectDialect(acquire(entity));
+        Throwable failure = null;
+        try {
+            return execute(connection, pojo, entity, key);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            release(connection, failure);
+        }
+    }
+
+    /**
+     * Call a function or stored procedure asynchronously.
+     *
+     * @param pojo POJO entity.
+     * @param <T>  POJO type.
+     * @return Future completed with the POJO once its OUT parameters are bound.
+     */
+    @Override
+    public <T> CompletableFuture<T> callAsync(T pojo) {
+
+        // Null POJO entities are not allowed.
+        if (pojo == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.entity"));
+        }
+
+        return async.submit(() -> {
+            call(pojo);
+            return pojo;
+        });
+    }
+
+    /**
+     * Run a task on the asynchronous executor of the manager, bounded by the
+     * maximum number of calls in flight.
+     *
+     * @param task Task to run.
+     * @param <T>  Task result type.
+     * @return Future completed with the task result.
+     */
+    <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return async.submit(task);
+    }
+
+    /**
+     * Call IN only stored procedures in JDBC batches of the configured size.
+     *
+     * @param pojos Entity instances.
+     * @return Update counts, one for each entity in iteration order.
+     */
+    @Override
+    public int[] callBatch(Collection<?> pojos) {
+        return callBatch(pojos, config.getBatchSize());
+    }
+
+    /**
+     * Call IN only stored procedures in JDBC batches.
+     *
+     * @param pojos     Entity instances.
+     * @param batchSize Maximum number of calls sent in a single batch.
+     * @return Update counts, one for each entity in iteration order.
+     */
+    @Override
+    public int[] callBatch(Collection<?> pojos, int batchSize) {
+
+        if (batchSize < 1) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option", "batchSize", batchSize));
+        }
+
+        // resolve and group entities by class, rejecting OUT parameters up front
+        Map<EntityResolver.Entity, List<Integer>> groups = new LinkedHashMap<>();
+        Object[] items = pojos.toArray();
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] == null) {
+                throw new ProcedureManagerException(I18n.get("error.no.entity"));
+            }
+
+            EntityResolver.Entity entity = resolve(items[i]);
+            if (entity.out.length > 0) {
+                throw new ProcedureManagerException(I18n.get("error.batch.output",
+                        items[i].getClass().getName()));
+            }
+
+            groups.computeIfAbsent(entity, key -> new ArrayList<>()).add(i);
+        }
+
+        int[] counts = new int[items.length];
+        if (groups.isEmpty()) {
+            return counts;
+        }
+
+        Connection connection = detectDialect(acquire());
+        try {
+            for (Map.Entry<EntityResolver.Entity, List<Integer>> group : groups.entrySet()) {
+                executeBatch(connection, group.getKey(), group.getValue(), items, counts, batchSize);
+            }
+        } finally {
+            release(connection);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Create a pipeline of calls sent together.
+     *
+     * @return Empty pipeline.
+     */
+    @Override
+    public Pipeline pipeline() {
+        return new Pipeline(this);
+    }
+
+    /**
+     * Run the calls of a pipeline on a single connection, composed into one
+     * statement when the SQL dialect allows it or one at a time otherwise.
+     *
+     * @param pojos Queued POJO entities.
+     */
+    void callPipeline(List<?> pojos) {
+
+        List<Class<?>> types = new ArrayList<>(pojos.size());
+        for (Object pojo : pojos) {
+            EntityResolver.Entity entity = resolve(pojo);
+            if (entity.streaming) {
+                throw new ProcedureManagerException(I18n.get("error.pipeline.stream", entity.name));
+            }
+            types.add(pojo.getClass());
+        }
+
+        EntityResolver.Entity pipeline = resolver.resolvePipeline(types);
+        Connection connection = detectDialect(acquire());
+        try {
+            if (pipeline != null) {
+                executePipeline(connection, pojos, pipeline);
+            } else {
+                for (Object pojo : pojos) {
+                    execute(connection, pojo, resolve(pojo), null);
+                }
+            }
+        } finally {
+            release(connection);
+        }
+    }
+
+    /**
+     * Execute the composed statement of a pipeline in a single round trip.
+     *
+     * @param connection JDBC connection.
+     * @param pojos      Queued POJO entities.
+     * @param pipeline   Resolved pipeline.
+     */
+    private void executePipeline(Connection connection, List<?> pojos, EntityResolver.Entity pipeline) {
+
+        ProcedureMetrics recorder = metrics != null ? metrics.procedure(pipeline.name) : null;
+        Deadline deadline = DEADLINE.get();
+        long started = System.nanoTime();
+        try {
+            long start = now(recorder);
+            CallableStatement statement = prepare(connection, pipeline.sql);
+            boolean reusable = false;
+            try {
+                limit(statement, pipeline, deadline);
+                long prepared = now(recorder);
+                for (int i = 0; i < pipeline.parts.length; i++) {
+                    bindInputParameters(statement, pojos.get(i), pipeline.parts[i]);
+                }
+                long bound = now(recorder);
+                statement.execute();
+                long executed = now(recorder);
+                for (int i = 0; i < pipeline.parts.length; i++) {
+                    bindOutputParameters(statement, pojos.get(i), pipeline.parts[i]);
+                }
+                if (recorder != null) {
+                    recorder.record(prepared - start, bound - prepared, executed - bound, now(recorder) - executed);
+                }
+                reusable = true;
+            } finally {
+                if (deadline != null) {
+                    deadline.detach(statement);
+                }
+                release(connection, pipeline.sql, statement, reusable);
+            }
+        } catch (SQLException e) {
+            if (recorder != null) {
+                recorder.error();
+            }
+            throw failure(e, pipeline, deadline, started);
+        } catch (RuntimeException e) {
+            if (recorder != null) {
+                recorder.error();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Call the records of a record entity in JDBC batches of the configured
+     * size on a borrowed connection. The calls run in a single local
+     * transaction, so a failed call leaves none of the records applied.
+     *
+     * @param entity  Record entity.
+     * @param records IN parameter values of the calls.
+     */
+    void callRecords(EntityResolver.Entity entity, List<Object[]> records) {
+
+        List<Integer> positions = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            positions.add(i);
+        }
+
+        Connection connection = detectDialect(acquire());
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                executeBatch(connection, entity, positions, records.toArray(), new int[records.size()],
+                        config.getBatchSize());
+                connection.commit();
+            } catch (RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            throw new ProcedureManagerException(e);
+        } finally {
+            release(connection);
+        }
+    }
+
+    /**
+     * Execute the calls of a single entity class in JDBC batches.
+     *
+     * @param connection JDBC connection.
+     * @param entity     Resolved entity.
+     * @param positions  Positions of the entity instances.
+     * @param items      All entity instances.
+     * @param counts     Update counts by position.
+     * @param batchSize  Maximum number of calls sent in a single batch.
+     */
+    private void executeBatch(Connection connection, EntityResolver.Entity entity, List<Integer> positions,
+                              Object[] items, int[] counts, int batchSize) {
+
+        Deadline deadline = DEADLINE.get();
+        long started = System.nanoTime();
+        try {
+            CallableStatement statement = prepare(connection, entity.sql);
+            boolean reusable = false;
+            try {
+                limit(statement, entity, deadline);
+                int from = 0;
+                for (int i = 0; i < positions.size(); i++) {
+                    bindInputParameters(statement, items[positions.get(i)], entity);
+                    statement.addBatch();
+
+                    if (i - from + 1 == batchSize || i == positions.size() - 1) {
+                        int[] result = statement.executeBatch();
+                        for (int j = 0; j < result.length; j++) {
+                            counts[positions.get(from + j)] = result[j];
+                        }
+                        from = i + 1;
+                    }
+                }
+                reusable = true;
+            } finally {
+                if (deadline != null) {
+                    deadline.detach(statement);
+                }
+                release(connection, entity.sql, statement, reusable);
+            }
+        } catch (SQLException e) {
+            throw failure(e, entity, deadline, started);
+        }
+    }
+
+    /**
+     * Stream the rows of the first result set using the configured fetch size.
+     *
+     * @param pojo    POJO entity.
+     * @param rowType Row POJO class.
+     * @param <T>     Row POJO type.
+     * @return Lazy stream of rows.
+     */
+    @Override
+    public <T> Stream<T> stream(Object pojo, Class<T> rowType) {
+        return stream(pojo, rowType, config.getFetchSize());
+    }
+
+    /**
+     * Stream the rows of the first result set. The statement and the
+     * connection are owned by the stream until it is closed. The call is
+     * prepared, limited and measured like any other call, its OUT binding
+     * time is not measured since the OUT parameters are bound on close.
+     *
+     * @param pojo      POJO entity.
+     * @param rowType   Row POJO class.
+     * @param fetchSize Fetch size, <code>0</code> uses the driver default.
+     * @param <T>       Row POJO type.
+     * @return Lazy stream of rows.
+     */
+    @Override
+    public <T> Stream<T> stream(Object pojo, Class<T> rowType, int fetchSize) {
+
+        // Null POJO entities are not allowed.
+        if (pojo == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.entity"));
+        }
+
+        if (fetchSize < 0) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option", "fetchSize", fetchSize));
+        }
+
+        EntityResolver.Entity entity = resolve(pojo);
+        RowMapper<T> mapper = resolver.resolveRows(rowType);
+        ProcedureMetrics recorder = metrics != null ? metrics.procedure(entity.name) : null;
+        Deadline deadline = DEADLINE.get();
+        long started = System.nanoTime();
+
+        Connection connection = detectDialect(acquire(entity));
+        CallableStatement statement = null;
+        boolean reusable = false;
+        boolean owned = false;
+        try {
+            long start = now(recorder);
+            statement = prepare(connection, entity.sql);
+            statement.setFetchSize(fetchSize);
+            limit(statement, entity, deadline);
+            long prepared = now(recorder);
+            bindInputParameters(statement, pojo, entity);
+            long bound = now(recorder);
+            ResultSet resultSet = firstResultSet(statement);
+            long executed = now(recorder);
+
+            if (resultSet == null) {
+                bindOutputParameters(statement, pojo, entity);
+                if (recorder != null) {
+                    recorder.record(prepared - start, bound - prepared, executed - bound, now(recorder) - executed);
+                }
+                reusable = true;
+                return Stream.empty();
+            }
+
+            resultSet.setFetchSize(fetchSize);
+            ResultSetSpliterator<T> rows = new ResultSetSpliterator<>(resultSet, mapper);
+            CallableStatement owner = statement;
+            Stream<T> stream = StreamSupport.stream(rows, false)
+                    .onClose(() -> closeStream(connection, owner, pojo, entity, rows, deadline));
+            if (recorder != null) {
+                recorder.record(prepared - start, bound - prepared, executed - bound, 0);
+            }
+            owned = true;
+            return stream;
+        } catch (SQLException e) {
+            if (recorder != null) {
+                recorder.error();
+            }
+            throw failure(e, entity, deadline, started);
+        } catch (RuntimeException e) {
+            if (recorder != null) {
+                recorder.error();
+            }
+            throw e;
+        } finally {
+            if (!owned) {
+                try {
+                    if (statement != null) {
+                        if (deadline != null) {
+                            deadline.detach(statement);
+                        }
+                        release(connection, entity.sql, statement, reusable);
+                    }
+                } catch (SQLException e) {
+                    // the call error, if any, is more relevant
+                } finally {
+                    release(connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the first result set of an executed statement.
+     *
+     * @param statement Callable statement.
+     * @return Result set or <code>null</code> if the call produced no result set.
+     * @throws SQLException Database access error.
+     */
+    private static ResultSet firstResultSet(CallableStatement statement) throws SQLException {
+
+        boolean isResultSet = statement.execute();
+        while (!isResultSet && statement.getUpdateCount() != -1) {
+            isResultSet = statement.getMoreResults();
+        }
+
+        return isResultSet ? statement.getResultSet() : null;
+    }
+
+    /**
+     * Close a result set stream, binding the OUT parameters if all rows were
+     * consumed, and release its statement and connection.
+     *
+     * @param connection JDBC connection.
+     * @param statement  Callable statement.
+     * @param pojo       POJO entity.
+     * @param entity     Resolved entity.
+     * @param rows       Stream rows.
+     * @param deadline   Call deadline or <code>null</code>.
+     */
+    private void closeStream(Connection connection, CallableStatement statement, Object pojo,
+                             EntityResolver.Entity entity, ResultSetSpliterator<?> rows, Deadline deadline) {
+        try {
+            boolean reusable = false;
+            try {
+                rows.getResultSet().close();
+                if (rows.isExhausted()) {
+                    bindOutputParameters(statement, pojo, entity);
+                }
+                reusable = true;
+            } finally {
+                if (deadline != null) {
+                    deadline.detach(statement);
+                }
+                try {
+                    release(connection, entity.sql, statement, reusable);
+                } finally {
+                    release(connection);
+                }
+            }
+        } catch (SQLException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Resolve entities in parallel and optionally prepare their call statements.
+     * Statements are prepared only when the manager has a statement cache
+     * and a current connection, otherwise a prepared statement would be
+     * closed right away and the preparation is skipped.
+     *
+     * @param types   @StoredProcedure classes.
+     * @param prepare <code>true</code> to prepare the call statements.
+     * @return Warm up report.
+     */
+    @Override
+    public WarmUpReport warmUp(Collection<Class<?>> types, boolean prepare) {
+
+        long start = System.nanoTime();
+        Map<Class<?>, EntityResolver.Entity> entities = new ConcurrentHashMap<>();
+        Map<Class<?>, Throwable> failures = new ConcurrentHashMap<>();
+
+        types.parallelStream().distinct().forEach(type -> {
+            try {
+                entities.put(type, resolve(type));
+            } catch (RuntimeException | LinkageError e) {
+                failures.put(type, e);
+            }
+        });
+
+        int prepared = 0;
+        boolean skipped = prepare && !cachesStatements();
+        if (prepare && !skipped && !entities.isEmpty()) {
+            Connection connection = detectDialect(acquire());
+            try {
+                for (Map.Entry<Class<?>, EntityResolver.Entity> entity : entities.entrySet()) {
+                    try {
+                        String sql = entity.getValue().sql;
+                        release(connection, sql, prepare(connection, sql), true);
+                        prepared++;
+                    } catch (SQLException e) {
+                        failures.put(entity.getKey(), e);
+                    }
+                }
+            } finally {
+                release(connection);
+            }
+        }
+
+        List<Class<?>> resolved = types.stream().distinct()
+                .filter(type -> entities.containsKey(type) && !failures.containsKey(type))
+                .collect(Collectors.toList());
+
+        return new WarmUpReport(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                resolved, prepared, skipped, new LinkedHashMap<>(failures));
+    }
+
+    /**
+     * Warm up the @StoredProcedure classes of a package.
+     *
+     * @param packageName Package name.
+     * @param prepare     <code>true</code> to prepare the call statements.
+     * @return Warm up report.
+     */
+    @Override
+    public WarmUpReport warmUp(String packageName, boolean prepare) {
+        return warmUp(ProcedureManagerFactory.findStoredProcedures(packageName), prepare);
+    }
+
+    /**
+     * Execute JDBC statement.
+     *
+     * @param connection JDBC connection.
+     * @param pojo       Stored procedure object.
+     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
+     * <code>false</code> if the first result is an update count or no result
+     */
+    boolean execute(Connection connection, Object pojo) {
+
+        // resolve entity
+        EntityResolver.Entity entity = resolve(pojo);
+        if (entity.streaming) {
+            return executeStreaming(connection, false, pojo, entity);
+        }
+
+        ResultCache.Key key = cache.key(entity, pojo);
+        Boolean cached = key != null ? cache.load(key, entity, pojo) : null;
+        if (cached != null) {
+            return cached;
+        }
+
+        // calls on a caller connection may see its uncommitted changes and are never shared
+        return execute(connection, pojo, entity, key);
+    }
+
+    /**
+     * Execute a call with cursor or LOB OUT parameters. Each cursor is bound
+     * to its field as a lazy stream of rows and each LOB as a lazily read
+     * InputStream or Reader. The statement, and the connection when owned,
+     * are released when all the streams are closed.
+     *
+     * @param connection JDBC connection.
+     * @param owned      <code>true</code> to release the connection with the statement.
+     * @param pojo       Stored procedure object.
+     * @param entity     Resolved entity.
+     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
+     * <code>false</code> if the first result is an update count or no result
+     */
+    private boolean executeStreaming(Connection connection, boolean owned, Object pojo, EntityResolver.Entity entity) {
+
+        CursorScope scope = null;
+        boolean streaming = false;
+        Deadline deadline = DEADLINE.get();
+        long started = System.nanoTime();
+        CallableStatement statement = null;
+        try {
+            statement = connection.prepareCall(entity.sql);
+            scope = new CursorScope(statement, entity.cursors.length + entity.lobs.length,
+                    owned ? () -> release(connection) : null);
+            limit(statement, entity, deadline);
+            bindInputParameters(statement, pojo, entity);
+            boolean result = statement.execute();
+            bindOutputParameters(statement, pojo, entity);
+
+            for (ParameterBinder cursor : entity.cursors) {
+                cursor.set(pojo, scope.stream(cursor.cursor(statement),
+                        resolver.resolveRows(cursor.rowType), config.getFetchSize()));
+            }
+
+            for (ParameterBinder lob : entity.lobs) {
+                Object stream = lob.lob(statement);
+                lob.set(pojo, stream instanceof Reader ? scope.stream((Reader) stream) : scope.stream((InputStream) stream));
+            }
+
+            streaming = true;
+            return result;
+        } catch (SQLException e) {
+            throw failure(e, entity, deadline, started);
+        } finally {
+            if (deadline != null && statement != null) {
+                deadline.detach(statement);
+            }
+            if (!streaming) {
+                if (scope != null) {
+                    scope.close();
+                } else if (owned) {
+                    release(connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Execute a resolved call on a connection and cache its result.
+     *
+     * @param connection JDBC connection.
+     * @param pojo       Stored procedure object.
+     * @param entity     Resolved entity.
+     * @param key        Result cache key, <code>null</code> if not cacheable.
+     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
+     * <code>false</code> if the first result is an update count or no result
+     */
+    private boolean execute(Connection connection, Object pojo, EntityResolver.Entity entity, ResultCache.Key key) {
+
+        boolean result;
+        ProcedureMetrics recorder = metrics != null ? metrics.procedure(entity.name) : null;
+        Deadline deadline = DEADLINE.get();
+        long started = System.nanoTime();
+
+        // call procedure
+        try {
+            long start = now(recorder);
+            CallableStatement statement = prepare(connection, entity.sql);
+            boolean reusable = false;
+            try {
+                limit(statement, entity, deadline);
+                long prepared = now(recorder);
+                bindInputParameters(statement, pojo, entity);
+                long bound = now(recorder);
+                result = statement.execute();
+                long executed = now(recorder);
+                bindOutputParameters(statement, pojo, entity);
+                if (recorder != null) {
+                    recorder.record(prepared - start, bound - prepared, executed - bound, now(recorder) - executed);
+                }
+                reusable = true;
+            } finally {
+                if (deadline != null) {
+                    deadline.detach(statement);
+                }
+                release(connection, entity.sql, statement, reusable);
+            }
+        } catch (SQLException e) {
+            if (recorder != null) {
+                recorder.error();
+            }
+            throw failure(e, entity, deadline, started);
+        } catch (RuntimeException e) {
+            if (recorder != null) {
+                recorder.error();
+            }
+            throw e;
+        }
+
+        if (key != null) {
+            cache.store(key, entity, pojo, result);
+        }
+
+        return result;
+    }
+}
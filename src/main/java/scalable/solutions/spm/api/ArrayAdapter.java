@@ -0,0 +1,81 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Struct;
+
+/**
+ * Create the <code>ARRAY</code> and struct values of array parameters. The
+ * standard adapter uses <code>Connection.createArrayOf</code> and
+ * <code>Connection.createStruct</code>. Drivers with vendor specific array
+ * types, for example Oracle collections created by type name, plug their
+ * own adapter with {@link ProcedureManagerConfig#setArrayAdapter(ArrayAdapter)}.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public interface ArrayAdapter {
+
+    /* JDBC standard adapter. */
+    ArrayAdapter STANDARD = new ArrayAdapter() {
+    };
+
+    /**
+     * Create an array value.
+     *
+     * @param   connection
+     *          Statement connection.
+     * @param   typeName
+     *          SQL type name of the elements, the typeName parameter attribute.
+     * @param   elements
+     *          Array elements, structs for POJO elements.
+     *
+     * @return  Array value.
+     *
+     * @throws  SQLException
+     *          Database access error.
+     */
+    default Array createArray(Connection connection, String typeName, Object[] elements) throws SQLException {
+        return connection.createArrayOf(typeName, elements);
+    }
+
+    /**
+     * Create a struct value of a POJO array element.
+     *
+     * @param   connection
+     *          Statement connection.
+     * @param   typeName
+     *          SQL structured type name, the typeName parameter attribute.
+     * @param   attributes
+     *          Struct attributes.
+     *
+     * @return  Struct value.
+     *
+     * @throws  SQLException
+     *          Database access error.
+     */
+    default Struct createStruct(Connection connection, String typeName, Object[] attributes) throws SQLException {
+        return connection.createStruct(typeName, attributes);
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.annotations.ResultSetColumn;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Struct;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Precompiled mapper of <code>Collection</code> and array fields to SQL
+ * <code>ARRAY</code> values. Primitive arrays are boxed element by element,
+ * POJO elements are converted to structs whose attributes are the
+ * @ResultSetColumn fields of the element class in index order.
+ * <p>
+ * Arrays read from OUT parameters are converted back to the field type.
+ * Numeric elements are converted to the element type, since drivers may
+ * return a wider type than the one of the field.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class ArrayMapper {
+
+    /* Erased getter type: (Object)Object */
+    private static final MethodType GETTER_TYPE =
+            MethodType.methodType(Object.class, Object.class);
+
+    /* Erased setter type: (Object, Object)void */
+    private static final MethodType SETTER_TYPE =
+            MethodType.methodType(void.class, Object.class, Object.class);
+
+    /* Component type of an array field, null for a Collection field. */
+    private final Class<?> componentType;
+
+    /* Element class, the wrapper class of primitive components. */
+    private final Class<?> elementType;
+
+    /* SQL type name of the elements. */
+    private final String typeName;
+
+    /* Collection factory of an OUT Collection field, null otherwise. */
+    private final Supplier<Collection<Object>> collection;
+
+    /* Struct attribute getters of POJO elements, null for scalar elements. */
+    private final MethodHandle[] getters;
+
+    /* No arguments constructor of OUT POJO elements: ()Object */
+    private final MethodHandle constructor;
+
+    /* Struct attribute setters of OUT POJO elements. */
+    private final MethodHandle[] setters;
+
+    /* Struct attribute classes of OUT POJO elements. */
+    private final Class<?>[] attributeTypes;
+
+    /**
+     * Compile a mapper for an array parameter.
+     *
+     * @param fieldType   Array or Collection field type.
+     * @param elementType Element class.
+     * @param typeName    SQL type name of the elements.
+     * @param output      <code>true</code> for OUT and INOUT parameters.
+     */
+    ArrayMapper(Class<?> fieldType, Class<?> elementType, String typeName, boolean output) {
+
+        this.componentType = fieldType.isArray() ? fieldType.getComponentType() : null;
+        this.elementType = MethodType.methodType(elementType).wrap().returnType();
+        this.typeName = typeName;
+        this.collection = output && componentType == null ? collection(fieldType) : null;
+
+        Field[] attributes = Arrays.stream(elementType.getDeclaredFields())
+                .filter(field -> field.isAnnotationPresent(ResultSetColumn.class))
+                .sorted(Comparator.comparingInt(field -> field.getAnnotation(ResultSetColumn.class).index()))
+                .toArray(Field[]::new);
+
+        if (attributes.length == 0) {
+            this.getters = null;
+            this.constructor = null;
+            this.setters = null;
+            this.attributeTypes = null;
+            return;
+        }
+
+        this.getters = new MethodHandle[attributes.length];
+        this.setters = output ? new MethodHandle[attributes.length] : null;
+        this.attributeTypes = output ? new Class<?>[attributes.length] : null;
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            for (int i = 0; i < attributes.length; i++) {
+                attributes[i].setAccessible(true);
+                getters[i] = lookup.unreflectGetter(attributes[i]).asType(GETTER_TYPE);
+                if (output) {
+                    setters[i] = lookup.unreflectSetter(attributes[i]).asType(SETTER_TYPE);
+                    attributeTypes[i] = MethodType.methodType(attributes[i].getType()).wrap().returnType();
+                }
+            }
+
+            if (output) {
+                Constructor<?> init = elementType.getDeclaredConstructor();
+                init.setAccessible(true);
+                this.constructor = lookup.unreflectConstructor(init).asType(MethodType.methodType(Object.class));
+            } else {
+                this.constructor = null;
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Factory of the collections read from OUT parameters.
+     *
+     * @param type Collection field type.
+     * @return Collection factory.
+     */
+    @SuppressWarnings("unchecked")
+    static Supplier<Collection<Object>> collection(Class<?> type) {
+
+        if (type.isAssignableFrom(ArrayList.class)) {
+            return ArrayList::new;
+        }
+        if (type.isAssignableFrom(LinkedHashSet.class)) {
+            return LinkedHashSet::new;
+        }
+        if (type.isAssignableFrom(TreeSet.class)) {
+            return TreeSet::new;
+        }
+        if (type.isAssignableFrom(ArrayDeque.class)) {
+            return ArrayDeque::new;
+        }
+
+        // a concrete collection class with a no arguments constructor.
+        try {
+            MethodHandle init = MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Collection.class));
+            return () -> {
+                try {
+                    return (Collection<Object>) init.invokeExact();
+                } catch (Throwable e) {
+                    throw new ProcedureManagerException(e);
+                }
+            };
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Create the <code>ARRAY</code> value of a field.
+     *
+     * @param connection Statement connection.
+     * @param adapter    Array adapter.
+     * @param value      Field value, a Collection or an array.
+     * @return Array value.
+     * @throws SQLException Database access error.
+     */
+    Array toArray(Connection connection, ArrayAdapter adapter, Object value) throws SQLException {
+
+        Object[] elements = elements(value);
+        if (getters != null) {
+            for (int i = 0; i < elements.length; i++) {
+                if (elements[i] != null) {
+                    elements[i] = adapter.createStruct(connection, typeName, attributes(elements[i]));
+                }
+            }
+        }
+
+        return adapter.createArray(connection, typeName, elements);
+    }
+
+    /**
+     * Elements of a field value. Object arrays of scalar elements are used as
+     * they are, other values are copied.
+     *
+     * @param value Collection or array.
+     * @return Array elements.
+     */
+    private Object[] elements(Object value) {
+
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).toArray();
+        }
+        if (value instanceof Object[]) {
+            return getters != null ? ((Object[]) value).clone() : (Object[]) value;
+        }
+
+        Object[] elements = new Object[java.lang.reflect.Array.getLength(value)];
+        if (value instanceof int[]) {
+            int[] values = (int[]) value;
+            for (int i = 0; i < values.length; i++) {
+                elements[i] = values[i];
+            }
+        } else if (value instanceof long[]) {
+            long[] values = (long[]) value;
+            for (int i = 0; i < values.length; i++) {
+                elements[i] = values[i];
+            }
+        } else if (value instanceof double[]) {
+            double[] values = (double[]) value;
+            for (int i = 0; i < values.length; i++) {
+                elements[i] = values[i];
+            }
+        } else {
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = java.lang.reflect.Array.get(value, i);
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Struct attributes of a POJO element.
+     *
+     * @param element POJO element.
+     * @return Attribute values.
+     */
+    private Object[] attributes(Object element) {
+
+        Object[] attributes = new Object[getters.length];
+        try {
+            for (int i = 0; i < attributes.length; i++) {
+                attributes[i] = (Object) getters[i].invokeExact(element);
+            }
+        } catch (Throwable e) {
+            throw new ProcedureManagerException(e);
+        }
+        return attributes;
+    }
+
+    /**
+     * Convert an <code>ARRAY</code> OUT value to the field type. The array
+     * is freed once its elements are read.
+     *
+     * @param array Array value or <code>null</code>.
+     * @return Collection or array field value, <code>null</code> for a null array.
+     * @throws SQLException Database access error.
+     */
+    Object toValue(Array array) throws SQLException {
+
+        if (array == null) {
+            return null;
+        }
+
+        Object elements;
+        try {
+            elements = array.getArray();
+        } finally {
+            free(array);
+        }
+
+        int length = java.lang.reflect.Array.getLength(elements);
+        if (componentType == null) {
+            Collection<Object> values = collection.get();
+            for (int i = 0; i < length; i++) {
+                values.add(element(elements, i));
+            }
+            return values;
+        }
+
+        Object values = java.lang.reflect.Array.newInstance(componentType, length);
+        for (int i = 0; i < length; i++) {
+            java.lang.reflect.Array.set(values, i, element(elements, i));
+        }
+        return values;
+    }
+
+    /**
+     * Read an element of an <code>ARRAY</code> OUT value.
+     *
+     * @param elements Array returned by the driver.
+     * @param i        Element position.
+     * @return Element converted to the element type.
+     * @throws SQLException Database access error.
+     */
+    private Object element(Object elements, int i) throws SQLException {
+
+        Object element = java.lang.reflect.Array.get(elements, i);
+        if (constructor == null || !(element instanceof Struct)) {
+            return convert(element, elementType);
+        }
+
+        Object[] attributes = ((Struct) element).getAttributes();
+        try {
+            Object pojo = (Object) constructor.invokeExact();
+            for (int a = 0; a < Math.min(attributes.length, setters.length); a++) {
+                setters[a].invokeExact(pojo, convert(attributes[a], attributeTypes[a]));
+            }
+            return pojo;
+        } catch (Throwable e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Convert a numeric value to the numeric type of a field.
+     *
+     * @param value Value read from the driver.
+     * @param type  Field type, wrapper class for primitive fields.
+     * @return Converted value, the value itself if no conversion applies.
+     */
+    private static Object convert(Object value, Class<?> type) {
+
+        if (!(value instanceof Number) || type.isInstance(value)) {
+            return value;
+        }
+
+        Number number = (Number) value;
+        if (type == Integer.class) {
+            return number.intValue();
+        }
+        if (type == Long.class) {
+            return number.longValue();
+        }
+        if (type == Double.class) {
+            return number.doubleValue();
+        }
+        if (type == Short.class) {
+            return number.shortValue();
+        }
+        if (type == Byte.class) {
+            return number.byteValue();
+        }
+        if (type == Float.class) {
+            return number.floatValue();
+        }
+        if (type == BigDecimal.class) {
+            return new BigDecimal(number.toString());
+        }
+        return value;
+    }
+
+    /**
+     * Release the driver resources of an array.
+     *
+     * @param array Array value.
+     * @throws SQLException Database access error.
+     */
+    private static void free(Array array) throws SQLException {
+        try {
+            array.free();
+        } catch (SQLFeatureNotSupportedException | AbstractMethodError e) {
+            // released when the statement is closed.
+        }
+    }
+}
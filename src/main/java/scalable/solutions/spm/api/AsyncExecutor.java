@@ -0,0 +1,168 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous calls of a ProcedureManager with a bound on the number
+ * of calls in flight. Callers block when the bound is reached.
+ * <p>
+ * Calls run on the configured executor or, when none is configured, on a
+ * virtual thread per call (JDK 21 and later) or a bounded pool of daemon
+ * threads owned by the manager.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class AsyncExecutor {
+
+    /* Thread counter of the default executors. */
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    /* Calls in flight permits. */
+    private final Semaphore inFlight;
+
+    /* Maximum number of calls in flight. */
+    private final int maxInFlight;
+
+    /* User supplied executor, null if not configured. */
+    private final Executor configured;
+
+    /* Default executor, created on first use and owned by this instance. */
+    private volatile ExecutorService owned;
+
+    /**
+     * Create an async executor.
+     *
+     * @param executor    User supplied executor or <code>null</code>.
+     * @param maxInFlight Maximum number of calls in flight.
+     */
+    AsyncExecutor(Executor executor, int maxInFlight) {
+        this.configured = executor;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight, true);
+    }
+
+    /**
+     * Submit a call, waiting for a free in flight slot.
+     *
+     * @param call Call to run.
+     * @param <T>  Call result type.
+     * @return Future completed with the call result.
+     */
+    <T> CompletableFuture<T> submit(Supplier<T> call) {
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcedureManagerException(e);
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call.get();
+                } finally {
+                    inFlight.release();
+                }
+            }, executor());
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Get the executor of the calls.
+     *
+     * @return Configured or default executor.
+     */
+    private Executor executor() {
+
+        if (configured != null) {
+            return configured;
+        }
+
+        ExecutorService executor = owned;
+        if (executor == null) {
+            synchronized (this) {
+                executor = owned;
+                if (executor == null) {
+                    executor = createDefaultExecutor();
+                    owned = executor;
+                }
+            }
+        }
+
+        return executor;
+    }
+
+    /**
+     * Create a virtual thread per task executor when the runtime supports
+     * it, otherwise a pool of daemon threads sized to the in flight bound.
+     *
+     * @return Default executor.
+     */
+    private ExecutorService createDefaultExecutor() {
+
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // virtual threads are not available before JDK 21
+        }
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxInFlight, maxInFlight,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "pojo-sp-async-" + THREADS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Shut down the default executor. Calls already submitted complete,
+     * a user supplied executor is left untouched.
+     */
+    void close() {
+        ExecutorService executor = owned;
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.i18n.I18n;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces independent calls of IN only stored procedures into JDBC
+ * batches. Calls are queued by @StoredProcedure class and sent using
+ * {@link ProcedureManager#callBatch(java.util.Collection)} when the batch
+ * size is reached or when the oldest queued call has waited the linger time,
+ * whichever comes first. Each caller receives a future completed with the
+ * update count of its own call.
+ * <p>
+ * Batches are sent by the flush threads of the executor. With a single
+ * flush thread (the default) the manager is used by one thread at a time,
+ * more flush threads require a thread safe manager.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class BatchingExecutor implements AutoCloseable {
+
+    /* Thread counter. */
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    /* Target procedure manager. */
+    private final ProcedureManager manager;
+
+    /* Maximum number of calls sent in a single batch. */
+    private final int batchSize;
+
+    /* Maximum time a queued call waits for its batch, in nanoseconds. */
+    private final long linger;
+
+    /* Linger timers and flushes. */
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /* Queued calls by POJO class. */
+    private final Map<Class<?>, Lane> lanes = new ConcurrentHashMap<>();
+
+    /* Closed flag. */
+    private volatile boolean closed;
+
+    /**
+     * Create a batching executor with a single flush thread.
+     *
+     * @param manager   Procedure manager.
+     * @param batchSize Maximum number of calls sent in a single batch.
+     * @param linger    Maximum time a queued call waits for its batch.
+     * @param unit      Linger time unit.
+     */
+    public BatchingExecutor(ProcedureManager manager, int batchSize, long linger, TimeUnit unit) {
+        this(manager, batchSize, linger, unit, 1);
+    }
+
+    /**
+     * Create a batching executor.
+     *
+     * @param manager      Procedure manager.
+     * @param batchSize    Maximum number of calls sent in a single batch.
+     * @param linger       Maximum time a queued call waits for its batch.
+     * @param unit         Linger time unit.
+     * @param flushThreads Number of threads sending batches.
+     */
+    public BatchingExecutor(ProcedureManager manager, int batchSize, long linger, TimeUnit unit, int flushThreads) {
+
+        if (batchSize < 1) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option", "batchSize", batchSize));
+        }
+        if (linger < 0) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option", "linger", linger));
+        }
+        if (flushThreads < 1) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option", "flushThreads", flushThreads));
+        }
+
+        this.manager = manager;
+        this.batchSize = batchSize;
+        this.linger = unit.toNanos(linger);
+        this.scheduler = new ScheduledThreadPoolExecutor(flushThreads, task -> {
+            Thread thread = new Thread(task, "pojo-sp-batch-" + THREADS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Queue a call of an IN only stored procedure.
+     *
+     * @param pojo Stored procedure entity.
+     * @return Future completed with the update count of the call.
+     */
+    public CompletableFuture<Integer> submit(Object pojo) {
+
+        // Null POJO entities are not allowed.
+        if (pojo == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.entity"));
+        }
+
+        // reject OUT parameters before queueing, a batch fails as a whole
+        if (manager instanceof AbstractProcedureManager
+                && ((AbstractProcedureManager) manager).resolve(pojo).out.length > 0) {
+            throw new ProcedureManagerException(I18n.get("error.batch.output", pojo.getClass().getName()));
+        }
+
+        Call call = new Call(pojo);
+        Lane lane = lanes.computeIfAbsent(pojo.getClass(), type -> new Lane());
+        List<Call> batch = lane.add(call);
+        if (batch != null) {
+            send(batch);
+        }
+
+        return call.future;
+    }
+
+    /**
+     * Send all the queued calls without waiting for the linger time.
+     */
+    public void flush() {
+        for (Lane lane : lanes.values()) {
+            List<Call> batch = lane.take();
+            if (!batch.isEmpty()) {
+                send(batch);
+            }
+        }
+    }
+
+    /**
+     * Send the queued calls and stop the flush threads once the batches in
+     * flight are completed. New calls are rejected.
+     */
+    @Override
+    public void close() {
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        flush();
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Send a batch on a flush thread.
+     *
+     * @param batch Queued calls.
+     */
+    private void send(List<Call> batch) {
+        try {
+            scheduler.execute(() -> execute(batch));
+        } catch (RejectedExecutionException e) {
+            ProcedureManagerException error = new ProcedureManagerException(I18n.get("error.executor.closed"));
+            batch.forEach(call -> call.future.completeExceptionally(error));
+        }
+    }
+
+    /**
+     * Execute a batch and complete the futures of its calls.
+     *
+     * @param batch Queued calls.
+     */
+    private void execute(List<Call> batch) {
+
+        List<Object> pojos = new ArrayList<>(batch.size());
+        for (Call call : batch) {
+            pojos.add(call.pojo);
+        }
+
+        try {
+            int[] counts = manager.callBatch(pojos, batchSize);
+            for (int i = 0; i < counts.length; i++) {
+                batch.get(i).future.complete(counts[i]);
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(call -> call.future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Queued call.
+     */
+    private static final class Call {
+
+        /* Stored procedure entity. */
+        final Object pojo;
+
+        /* Update count future. */
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        Call(Object pojo) {
+            this.pojo = pojo;
+        }
+    }
+
+    /**
+     * Queued calls of a single @StoredProcedure class.
+     */
+    private final class Lane {
+
+        /* Queued calls in arrival order. */
+        private List<Call> calls = new ArrayList<>();
+
+        /* Linger timer of the oldest queued call. */
+        private ScheduledFuture<?> timer;
+
+        /**
+         * Queue a call.
+         *
+         * @param call Queued call.
+         * @return Full batch to send, <code>null</code> if the batch is not full.
+         */
+        synchronized List<Call> add(Call call) {
+
+            if (closed) {
+                throw new ProcedureManagerException(I18n.get("error.executor.closed"));
+            }
+
+            calls.add(call);
+            if (calls.size() >= batchSize) {
+                return take();
+            }
+
+            if (timer == null) {
+                timer = scheduler.schedule(this::expire, linger, TimeUnit.NANOSECONDS);
+            }
+
+            return null;
+        }
+
+        /**
+         * Take all the queued calls and cancel the linger timer.
+         *
+         * @return Queued calls.
+         */
+        synchronized List<Call> take() {
+
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+
+            List<Call> batch = calls;
+            calls = new ArrayList<>();
+            return batch;
+        }
+
+        /**
+         * Linger timer: send the queued calls on the timer thread.
+         */
+        private void expire() {
+            List<Call> batch;
+            synchronized (this) {
+                timer = null;
+                batch = calls;
+                calls = new ArrayList<>();
+            }
+            if (!batch.isEmpty()) {
+                execute(batch);
+            }
+        }
+    }
+}
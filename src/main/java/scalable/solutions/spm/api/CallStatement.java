@@ -0,0 +1,62 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+/**
+ * Call statement builder, shared by the entity resolver and the annotation
+ * processor.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class CallStatement {
+
+    /**
+     * Hidden constructor.
+     */
+    private CallStatement() {
+    }
+
+    /**
+     * Build an SQL-92 call statement for a stored procedure or function.
+     *
+     * @param name            Stored procedure or function name.
+     * @param procedure       <code>true</code> for a procedure, <code>false</code> for a function.
+     * @param parametersCount Number of parameters.
+     * @return Generated call statement as string.
+     */
+    public static String escape(String name, boolean procedure, int parametersCount) {
+
+        StringBuilder buffer = new StringBuilder("{");
+
+        if (!procedure) {
+            buffer.append("? = ");
+            parametersCount--;
+        }
+
+        buffer.append("call ").append(name).append("(");
+        for (int i = 0; i < parametersCount; i++) {
+            buffer.append(i == 0 ? "?" : " ,?");
+        }
+
+        return buffer.append(")}").toString();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Class path scanner finding @StoredProcedure classes of a package and its
+ * sub packages, in directories and jar files.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class ClassScanner {
+
+    /**
+     * Hidden constructor.
+     */
+    private ClassScanner() {
+    }
+
+    /**
+     * Find the @StoredProcedure classes of a package.
+     *
+     * @param packageName Package name.
+     * @param loader      Class loader.
+     * @return Annotated classes.
+     */
+    static List<Class<?>> scan(String packageName, ClassLoader loader) {
+
+        String path = packageName.replace('.', '/');
+        List<String> names = new ArrayList<>();
+        try {
+            Enumeration<URL> resources = loader.getResources(path);
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                if ("jar".equals(url.getProtocol())) {
+                    scanJar(((JarURLConnection) url.openConnection()).getJarFile(), path, names);
+                } else if ("file".equals(url.getProtocol())) {
+                    scanDirectory(new File(decode(url.getPath())), packageName, names);
+                }
+            }
+        } catch (IOException e) {
+            throw new ProcedureManagerException(e);
+        }
+
+        List<Class<?>> types = new ArrayList<>();
+        for (String name : names) {
+            try {
+                Class<?> type = Class.forName(name, false, loader);
+                if (type.isAnnotationPresent(StoredProcedure.class)) {
+                    types.add(type);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                // not loadable with this class loader, cannot be a callable entity
+            }
+        }
+
+        return types;
+    }
+
+    /**
+     * Collect the class names of a directory tree.
+     *
+     * @param directory   Package directory.
+     * @param packageName Package name.
+     * @param names       Class names.
+     */
+    private static void scanDirectory(File directory, String packageName, List<String> names) {
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                scanDirectory(file, packageName + "." + name, names);
+            } else if (name.endsWith(".class")) {
+                names.add(packageName + "." + name.substring(0, name.length() - ".class".length()));
+            }
+        }
+    }
+
+    /**
+     * Collect the class names of a package in a jar file.
+     *
+     * @param jar   Jar file.
+     * @param path  Package path.
+     * @param names Class names.
+     */
+    private static void scanJar(JarFile jar, String path, List<String> names) {
+
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.startsWith(path + "/") && name.endsWith(".class")) {
+                names.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+            }
+        }
+    }
+
+    /**
+     * Decode a file URL path.
+     *
+     * @param path URL path.
+     * @return File path.
+     */
+    private static String decode(String path) {
+        try {
+            return URLDecoder.decode(path, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.annotations.enums.TransactionOperation;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.i18n.I18n;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread safe ProcedureManager and TransactionManager API backed by a
+ * DataSource. Each call borrows a connection from the DataSource and
+ * returns it when the call completes. A transaction binds its connection
+ * to the calling thread from <code>begin()</code> until <code>end()</code>,
+ * so all calls of the transaction use the same connection.
+ * <p>
+ * The entity resolver is shared by all threads and the manager itself
+ * holds no per-call state, so a single instance can serve any number of
+ * concurrent callers.
+ * <p>
+ * Borrowed connections are returned to the DataSource after each call, so
+ * statements cannot be cached across calls and the statement cache size
+ * option is rejected; use the statement pooling of the DataSource instead.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+class ConcurrentProcedureManagerImpl extends AbstractProcedureManager {
+
+    /* Connections source. */
+    private final DataSource source;
+
+    /* Transaction connection bound to the calling thread. */
+    private final ThreadLocal<Connection> transaction = new ThreadLocal<>();
+
+    /* Connections of the active transactions of all threads. */
+    private final Set<Connection> transactions = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * Construct a concurrent ProcedureManager instance using a DataSource.
+     *
+     * @param source DataSource object.
+     * @param config Configuration options.
+     */
+    ConcurrentProcedureManagerImpl(DataSource source, ProcedureManagerConfig config) {
+        this(source, new EntityResolver(), config);
+    }
+
+    /**
+     * Construct a concurrent ProcedureManager instance sharing an entity resolver.
+     *
+     * @param source   DataSource object.
+     * @param resolver Entity resolver.
+     * @param config   Configuration options.
+     */
+    ConcurrentProcedureManagerImpl(DataSource source, EntityResolver resolver, ProcedureManagerConfig config) {
+        this(source, resolver, config, config.getJmxName());
+    }
+
+    /**
+     * Construct a concurrent ProcedureManager instance sharing an entity
+     * resolver and exposing its metrics under the given name.
+     *
+     * @param source   DataSource object.
+     * @param resolver Entity resolver.
+     * @param config   Configuration options.
+     * @param jmxName  Metrics MXBean name or <code>null</code>.
+     */
+    ConcurrentProcedureManagerImpl(DataSource source, EntityResolver resolver, ProcedureManagerConfig config,
+                                   String jmxName) {
+        super(resolver, checked(config), config.getMaxInFlightCalls(), jmxName);
+        this.source = source;
+    }
+
+    /**
+     * Validate the configuration before the shared resources are created.
+     *
+     * @param config Configuration options.
+     * @return The configuration.
+     */
+    private static ProcedureManagerConfig checked(ProcedureManagerConfig config) {
+        if (config.getStatementCacheSize() > 0) {
+            throw new ProcedureManagerException(I18n.get("error.statement.cache"));
+        }
+        return config;
+    }
+
+    /**
+     * Get the transaction connection bound to the calling thread.
+     *
+     * @return JDBC Connection object or <code>null</code> outside a transaction.
+     */
+    @Override
+    public Connection getConnection() {
+        return transaction.get();
+    }
+
+    /**
+     * The DataSource is owned by the caller, only the default asynchronous
+     * executor, the metrics MXBean and the transaction connection of the
+     * calling thread, if any, are released.
+     */
+    @Override
+    public void close() {
+        closeResources();
+        Connection connection = transaction.get();
+        if (connection != null) {
+            endTransaction(connection);
+        }
+    }
+
+    /**
+     * Use the thread transaction connection or borrow a new connection.
+     *
+     * @return JDBC connection.
+     */
+    @Override
+    Connection acquire() {
+
+        Connection connection = transaction.get();
+        if (connection != null) {
+            return connection;
+        }
+
+        try {
+            return source.getConnection();
+        } catch (SQLException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Return a borrowed connection. A transaction connection stays bound
+     * until its transaction ends, whatever thread releases it, for example a
+     * stream closed on another thread than the thread of the call.
+     *
+     * @param connection JDBC connection.
+     */
+    @Override
+    void release(Connection connection) {
+        if (!transactions.contains(connection)) {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Unbind the transaction connection of the calling thread and return it.
+     *
+     * @param connection Transaction connection.
+     */
+    private void endTransaction(Connection connection) {
+        transaction.remove();
+        transactions.remove(connection);
+        closeConnection(connection);
+    }
+
+    /**
+     * Close a borrowed connection.
+     *
+     * @param connection JDBC connection.
+     */
+    private void closeConnection(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Call the function or stored procedure using the given connection.
+     * The connection is not retained by the manager.
+     *
+     * @param connection JDBC connection.
+     * @param pojo       Entity object.
+     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
+     * <code>false</code> if the first result is an update count or no result
+     */
+    @Override
+    public boolean call(Connection connection, Object pojo) {
+
+        // Null POJO entities are not allowed.
+        if (pojo == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.entity"));
+        }
+
+        // check database connection.
+        if (connection == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.connection"));
+        }
+
+        return execute(connection, pojo);
+    }
+
+    /**
+     * Start a new JDBC transaction bound to the calling thread.
+     */
+    @Override
+    public void begin() {
+        processTransaction(TransactionOperation.START);
+    }
+
+    /**
+     * Save changes.
+     */
+    @Override
+    public void commit() {
+        processTransaction(TransactionOperation.COMMIT);
+    }
+
+    /**
+     * Undo the changes.
+     */
+    @Override
+    public void rollback() {
+        processTransaction(TransactionOperation.ROLLBACK);
+    }
+
+    /**
+     * Stop the JDBC transaction and return its connection.
+     */
+    @Override
+    public void end() {
+        processTransaction(TransactionOperation.STOP);
+    }
+
+    /**
+     * A transaction is active while a connection is bound to the calling thread.
+     *
+     * @return <code>true</code> if calls of the thread run inside a transaction.
+     */
+    @Override
+    boolean isTransactionActive() {
+        return transaction.get() != null;
+    }
+
+    /**
+     * Change the auto-commit mode of a connection. Drivers keep the mode
+     * locally, so the round trip of an unchanged mode is skipped.
+     *
+     * @param connection JDBC connection.
+     * @param enabled    Auto-commit mode.
+     * @throws SQLException Database access error.
+     */
+    private static void setAutoCommit(Connection connection, boolean enabled) throws SQLException {
+        if (connection.getAutoCommit() != enabled) {
+            connection.setAutoCommit(enabled);
+        }
+    }
+
+    /**
+     * Process JDBC transaction of the calling thread.
+     *
+     * @param operation Transaction operation.
+     */
+    private void processTransaction(TransactionOperation operation) {
+
+        Connection connection = transaction.get();
+        if (operation == TransactionOperation.START) {
+            if (connection != null) {
+                throw new ProcedureManagerException(I18n.get("error.transaction.active"));
+            }
+            connection = acquire();
+            transaction.set(connection);
+            transactions.add(connection);
+        } else if (connection == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.transaction"));
+        }
+
+        try {
+            switch (operation) {
+                case START:
+                    setAutoCommit(connection, false);
+                    break;
+                case COMMIT:
+                    connection.commit();
+                    break;
+                case ROLLBACK:
+                    connection.rollback();
+                    break;
+                default:
+                    try {
+                        setAutoCommit(connection, true);
+                    } finally {
+                        endTransaction(connection);
+                    }
+                    break;
+            }
+        } catch (SQLException e) {
+            if (operation == TransactionOperation.START) {
+                endTransaction(connection);
+            }
+            throw new ProcedureManagerException(e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lifetime of a statement whose cursor and LOB OUT parameters are streamed.
+ * The statement stays open until all its cursor and LOB streams are closed,
+ * then it is closed and its connection released.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class CursorScope {
+
+    /* Statement owning the cursors. */
+    private final CallableStatement statement;
+
+    /* Cursor and LOB streams not closed yet. */
+    private final AtomicInteger open;
+
+    /* Connection release action, null if the connection is not owned. */
+    private final Runnable release;
+
+    /* Closed flag. */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Create a cursor scope.
+     *
+     * @param statement Statement owning the cursors.
+     * @param cursors   Number of cursor and LOB streams.
+     * @param release   Connection release action or <code>null</code>.
+     */
+    CursorScope(CallableStatement statement, int cursors, Runnable release) {
+        this.statement = statement;
+        this.open = new AtomicInteger(cursors);
+        this.release = release;
+    }
+
+    /**
+     * Stream the rows of a cursor. Rows are fetched on demand, as the stream
+     * is consumed.
+     *
+     * @param cursor    Cursor result set, <code>null</code> for a null cursor.
+     * @param mapper    Row mapper.
+     * @param fetchSize Fetch size, <code>0</code> uses the driver default.
+     * @param <T>       Row POJO type.
+     * @return Lazy stream of rows, closing the scope when all streams are closed.
+     * @throws SQLException Database access error.
+     */
+    <T> Stream<T> stream(ResultSet cursor, RowMapper<T> mapper, int fetchSize) throws SQLException {
+
+        if (cursor == null) {
+            return Stream.<T>empty().onClose(this::release);
+        }
+
+        if (fetchSize > 0) {
+            cursor.setFetchSize(fetchSize);
+        }
+
+        return StreamSupport.stream(new ResultSetSpliterator<>(cursor, mapper), false)
+                .onClose(() -> {
+                    try {
+                        cursor.close();
+                    } catch (SQLException e) {
+                        throw new ProcedureManagerException(e);
+                    } finally {
+                        release();
+                    }
+                });
+    }
+
+    /**
+     * Read a binary LOB while the statement is open.
+     *
+     * @param lob LOB stream, <code>null</code> for a null LOB.
+     * @return LOB stream closing the scope when all streams are closed, <code>null</code> for a null LOB.
+     */
+    InputStream stream(InputStream lob) {
+
+        if (lob == null) {
+            release();
+            return null;
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        return new FilterInputStream(lob) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (done.compareAndSet(false, true)) {
+                        release();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Read a character LOB while the statement is open.
+     *
+     * @param lob LOB stream, <code>null</code> for a null LOB.
+     * @return LOB stream closing the scope when all streams are closed, <code>null</code> for a null LOB.
+     */
+    Reader stream(Reader lob) {
+
+        if (lob == null) {
+            release();
+            return null;
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        return new FilterReader(lob) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (done.compareAndSet(false, true)) {
+                        release();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Release a closed cursor or LOB stream.
+     */
+    private void release() {
+        if (open.decrementAndGet() == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Close the statement and release its connection, once.
+     */
+    void close() {
+
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            throw new ProcedureManagerException(e);
+        } finally {
+            if (release != null) {
+                release.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline and cancel handle of one or more calls. The time left until the
+ * deadline is applied to each call with <code>setQueryTimeout</code>, so a
+ * deadline shared by consecutive calls bounds their total duration.
+ * {@link #cancel()} can be called from any thread, it cancels the
+ * statements running under the deadline and fails the calls started later.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class Deadline {
+
+    /* Deadline in System.nanoTime() units, meaningful only if bounded. */
+    private final long deadline;
+
+    /* false for a cancel handle without time limit. */
+    private final boolean bounded;
+
+    /* Statements running under the deadline. */
+    private final Set<Statement> running = ConcurrentHashMap.newKeySet();
+
+    /* Cancelled flag. */
+    private volatile boolean cancelled;
+
+    /**
+     * Create a deadline.
+     *
+     * @param deadline Deadline in System.nanoTime() units.
+     * @param bounded  <code>false</code> for no time limit.
+     */
+    private Deadline(long deadline, boolean bounded) {
+        this.deadline = deadline;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Create a deadline expiring after the given time.
+     *
+     * @param timeout Time until the deadline.
+     * @param unit    Time unit.
+     * @return Deadline.
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout), true);
+    }
+
+    /**
+     * Create a cancel handle without time limit.
+     *
+     * @return Deadline that never expires.
+     */
+    public static Deadline none() {
+        return new Deadline(0, false);
+    }
+
+    /**
+     * Time left until the deadline.
+     *
+     * @param unit Time unit.
+     * @return Time left, negative once expired, <code>Long.MAX_VALUE</code> without time limit.
+     */
+    public long remaining(TimeUnit unit) {
+        return bounded ? unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Check if the deadline has passed.
+     *
+     * @return <code>true</code> if expired.
+     */
+    public boolean isExpired() {
+        return bounded && deadline - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Cancel the calls running under the deadline and fail the next ones.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Statement statement : running) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                // the statement completed or the driver cannot cancel it.
+            }
+        }
+    }
+
+    /**
+     * Check if the deadline was cancelled.
+     *
+     * @return <code>true</code> if cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Register a statement about to run under the deadline.
+     *
+     * @param statement Statement.
+     * @return <code>false</code> if the deadline was cancelled meanwhile.
+     */
+    boolean attach(Statement statement) {
+        running.add(statement);
+        return !cancelled;
+    }
+
+    /**
+     * Unregister a completed statement.
+     *
+     * @param statement Statement.
+     */
+    void detach(Statement statement) {
+        running.remove(statement);
+    }
+}
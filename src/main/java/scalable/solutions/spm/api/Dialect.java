@@ -0,0 +1,77 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * SQL dialect of a database. A dialect generates the native call statement
+ * of a stored procedure or function, so the driver runs it as is instead of
+ * parsing and translating the JDBC escape syntax, and maps the SQL types of
+ * the OUT parameters to the types expected by the driver.
+ * <p>
+ * The GENERIC dialect is used unless one is set with
+ * {@link ProcedureManagerConfig#setDialect(Dialect)}, or detection from the
+ * database product name on the first call is enabled with
+ * {@link ProcedureManagerConfig#setDialectDetectionEnabled(boolean)}.
+ * Implementations MUST be thread safe.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ * @see StandardDialect
+ */
+public interface Dialect {
+
+    /**
+     * Build the call statement of a stored procedure or function.
+     *
+     * @param name            Stored procedure or function name.
+     * @param procedure       <code>true</code> for a procedure, <code>false</code> for a function.
+     * @param parametersCount Number of parameters, including the function result.
+     * @return Call statement, the JDBC escape syntax by default.
+     */
+    default String call(String name, boolean procedure, int parametersCount) {
+        return CallStatement.escape(name, procedure, parametersCount);
+    }
+
+    /**
+     * Map the SQL type of an OUT parameter to the type registered with the
+     * driver, for example <code>REF_CURSOR</code> to a vendor cursor type.
+     *
+     * @param type SQL type from {@link Types}.
+     * @return Registered SQL type, the given type by default.
+     */
+    default int outParameterType(int type) {
+        return type;
+    }
+
+    /**
+     * Compose the call statements of a pipeline into a single statement
+     * sent in one round trip. The placeholders of the calls keep their order.
+     *
+     * @param calls Call statements built by this dialect, in execution order.
+     * @return Single statement or <code>null</code> to run the calls one at a time.
+     */
+    default String block(List<String> calls) {
+        return null;
+    }
+}
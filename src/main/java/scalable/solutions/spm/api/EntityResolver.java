@@ -22,13 +22,23 @@ package scalable.solutions.spm.api;
 
 import scalable.solutions.spm.annotations.StoredProcedure;
 import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
 import scalable.solutions.spm.exception.ProcedureManagerException;
 import scalable.solutions.spm.i18n.I18n;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -43,9 +53,70 @@ class EntityResolver {
     /* Entities registry (cache) */
     private final Map<Class<?>, Entity> registry;
 
+    /* Row mappers registry (cache) */
+    private final Map<Class<?>, RowMapper<?>> rows;
+
+    /* SQL dialect of the call statements, null until detected */
+    private volatile Dialect dialect;
+
+    /* Pipeline of calls running one at a time */
+    private static final Entity SEQUENTIAL = new Entity();
+
+    /* Pipelines registry (cache) */
+    private final Map<List<Class<?>>, Entity> pipelines = new ConcurrentHashMap<>();
+
+    /* Record entities registry (cache) */
+    private final Map<Class<?>, Entity> records = new ConcurrentHashMap<>();
+
+    /* Generated binders by POJO class, by class loader, released with the class loader or under memory pressure */
+    private static final Map<ClassLoader, SoftReference<Map<Class<?>, GeneratedEntity>>> BINDERS = new WeakHashMap<>();
+
     /* Default constructor. */
     EntityResolver() {
         this.registry = new ConcurrentHashMap<>();
+        this.rows = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the SQL dialect of the call statements.
+     *
+     * @return SQL dialect or <code>null</code> if not yet detected.
+     */
+    Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Set the SQL dialect of the call statements. Entities resolved with
+     * another dialect are discarded.
+     *
+     * @param dialect SQL dialect.
+     */
+    void setDialect(Dialect dialect) {
+        if (this.dialect != dialect) {
+            this.dialect = dialect;
+            registry.clear();
+            pipelines.clear();
+            records.clear();
+        }
+    }
+
+    /**
+     * Build the call statement of a stored procedure or function using the
+     * SQL dialect, or the JDBC escape syntax if no dialect is set.
+     *
+     * @param name            Stored procedure or function name.
+     * @param procedure       <code>true</code> for a procedure.
+     * @param parametersCount Number of parameters.
+     * @param escape          JDBC escape call statement, <code>null</code> to build it.
+     * @return Call statement.
+     */
+    private String callStatement(String name, boolean procedure, int parametersCount, String escape) {
+        Dialect current = dialect;
+        if (current == null || current == StandardDialect.GENERIC) {
+            return escape != null ? escape : CallStatement.escape(name, procedure, parametersCount);
+        }
+        return current.call(name, procedure, parametersCount);
     }
 
     /**
@@ -77,40 +148,191 @@ class EntityResolver {
     }
 
     /**
-     * Build an SQL-92 call statement for a stored procedure or function.
+     * Get the compile time generated binder of a POJO class.
      *
-     * @param procedure       StoredProcedure metadata.
-     * @param parametersCount Number of parameters.
-     * @return Generated call statement as string.
+     * @param type POJO class.
+     * @return Generated binder or <code>null</code> if the class was not processed.
      */
-    private String callStatementString(StoredProcedure procedure, int parametersCount) {
+    private static GeneratedEntity getGeneratedEntity(Class<?> type) {
 
-        StringBuilder buffer = new StringBuilder("{");
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
 
-        if (!procedure.procedure()) {
-            buffer.append("? = ");
-            parametersCount--;
+        Map<Class<?>, GeneratedEntity> found;
+        synchronized (BINDERS) {
+            SoftReference<Map<Class<?>, GeneratedEntity>> cached = BINDERS.get(loader);
+            found = cached != null ? cached.get() : null;
+            if (found == null) {
+                found = loadBinders(loader);
+                BINDERS.put(loader, new SoftReference<>(found));
+            }
         }
+        return found.get(type);
+    }
 
-        buffer.append("call ").append(procedure.name()).append("(");
-        for (int i = 0; i < parametersCount; i++) {
-            buffer.append(i == 0 ? "?" : " ,?");
+    /**
+     * Load the generated binders registered as service providers visible
+     * from a class loader.
+     *
+     * @param loader Class loader.
+     * @return Generated binders by POJO class.
+     */
+    private static Map<Class<?>, GeneratedEntity> loadBinders(ClassLoader loader) {
+
+        Map<Class<?>, GeneratedEntity> found = new HashMap<>();
+        Iterator<GeneratedEntity> providers = ServiceLoader.load(GeneratedEntity.class, loader).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    break;
+                }
+                GeneratedEntity binder = providers.next();
+                found.put(binder.type(), binder);
+            } catch (ServiceConfigurationError e) {
+                // stale registration of a removed class, its POJO falls back to reflection
+            }
+        }
+
+        return Collections.unmodifiableMap(found);
+    }
+
+    /**
+     * Validate the parameter indexes of an entity. Indexes MUST be unique and
+     * numbered from 1 and the result of a function MUST be the OUT parameter 1.
+     *
+     * @param type       POJO class.
+     * @param procedure  <code>true</code> for a procedure.
+     * @param indexes    Parameter indexes.
+     * @param directions Parameter directions.
+     */
+    private void validate(Class<?> type, boolean procedure, int[] indexes, Direction[] directions) {
+
+        boolean[] seen = new boolean[indexes.length + 1];
+        for (int index : indexes) {
+            if (index < 1 || index > indexes.length) {
+                throw new ProcedureManagerException(I18n.get("error.parameter.index",
+                        type.getName(), index, indexes.length));
+            }
+            if (seen[index]) {
+                throw new ProcedureManagerException(I18n.get("error.parameter.duplicate",
+                        type.getName(), index));
+            }
+            seen[index] = true;
         }
 
-        return buffer.append(")}").toString();
+        if (!procedure) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i] == 1 && directions[i] == Direction.OUT) {
+                    return;
+                }
+            }
+            throw new ProcedureManagerException(I18n.get("error.function.result", type.getName()));
+        }
     }
 
     /**
-     * Create a new entity.
+     * Create a new entity. The POJO class is compiled once into parameter
+     * binders, split into the IN and OUT binding sequences. A compile time
+     * generated binder provides the annotation attributes and the field
+     * accessors when present, otherwise the annotations are read using
+     * reflection.
      *
      * @param type POJO instance class.
      * @return A new entity instance.
      */
     private Entity createEntity(Class<?> type) {
 
+        Entity entity;
+        GeneratedEntity generated = getGeneratedEntity(type);
+        if (generated != null) {
+            ParameterBinder[] parameters = new ParameterBinder[generated.indexes().length];
+            for (int i = 0; i < parameters.length; i++) {
+                parameters[i] = new ParameterBinder(generated, i);
+            }
+            entity = createEntity(generated.name(), generated.procedure(), callStatement(generated.name(),
+                    generated.procedure(), parameters.length, generated.sql()), parameters);
+            entity.cacheable = generated.cacheable();
+            entity.ttl = generated.ttl();
+            entity.singleFlight = generated.singleFlight();
+            entity.timeout = generated.timeout();
+            entity.readOnly = generated.readOnly();
+        } else {
+            StoredProcedure procedure = getProcedureName(type);
+            List<Field> fields = getProcedureParameters(type);
+
+            ParameterBinder[] parameters = fields.stream().map(ParameterBinder::new).toArray(ParameterBinder[]::new);
+            validate(type, procedure.procedure(),
+                    Arrays.stream(parameters).mapToInt(binder -> binder.index).toArray(),
+                    Arrays.stream(parameters).map(binder -> binder.direction).toArray(Direction[]::new));
+
+            entity = createEntity(procedure.name(), procedure.procedure(),
+                    callStatement(procedure.name(), procedure.procedure(), parameters.length, null), parameters);
+            entity.cacheable = procedure.cacheable();
+            entity.ttl = procedure.ttl();
+            entity.singleFlight = procedure.singleFlight();
+            entity.timeout = procedure.timeout();
+            entity.readOnly = procedure.readOnly();
+        }
+
+        return entity;
+    }
+
+    /**
+     * Create a new entity from its parameter binders.
+     *
+     * @param name       Stored procedure name.
+     * @param procedure  <code>true</code> for a procedure.
+     * @param sql        Call statement.
+     * @param parameters Parameter binders.
+     * @return A new entity instance.
+     */
+    private Entity createEntity(String name, boolean procedure, String sql, ParameterBinder[] parameters) {
+
         Entity entity = new Entity();
-        entity.fields = getProcedureParameters(type);
-        entity.sql = callStatementString(getProcedureName(type), entity.fields.size());
+        entity.name = name;
+        entity.procedure = procedure;
+        entity.sql = sql;
+        entity.parameters = parameters;
+        entity.in = Arrays.stream(parameters)
+                .filter(binder -> binder.direction != Direction.OUT)
+                .toArray(ParameterBinder[]::new);
+        entity.out = Arrays.stream(parameters)
+                .filter(binder -> binder.direction != Direction.IN)
+                .toArray(ParameterBinder[]::new);
+        Dialect current = dialect;
+        entity.outTypes = Arrays.stream(entity.out)
+                .mapToInt(binder -> current != null ? current.outParameterType(binder.type) : binder.type)
+                .toArray();
+        entity.cursors = Arrays.stream(parameters)
+                .filter(binder -> binder.kind == ParameterBinder.Kind.CURSOR)
+                .toArray(ParameterBinder[]::new);
+
+        for (ParameterBinder cursor : entity.cursors) {
+            if (cursor.direction != Direction.OUT || cursor.rowType == null) {
+                throw new ProcedureManagerException(I18n.get("error.cursor.parameter", name, cursor.index));
+            }
+        }
+
+        entity.lobs = Arrays.stream(entity.out)
+                .filter(binder -> binder.kind == ParameterBinder.Kind.BINARY_STREAM
+                        || binder.kind == ParameterBinder.Kind.CHARACTER_STREAM)
+                .toArray(ParameterBinder[]::new);
+        entity.streaming = entity.cursors.length + entity.lobs.length > 0;
+
+        for (ParameterBinder binder : parameters) {
+            if (binder.kind == ParameterBinder.Kind.ARRAY && (binder.typeName == null || binder.rowType == null)) {
+                throw new ProcedureManagerException(I18n.get("error.array.parameter", name, binder.index));
+            }
+        }
+
+        for (ParameterBinder lob : entity.lobs) {
+            if (lob.javaType != InputStream.class && lob.javaType != Reader.class) {
+                throw new ProcedureManagerException(I18n.get("error.lob.parameter", name, lob.index));
+            }
+        }
+
         return entity;
     }
 
@@ -118,20 +340,115 @@ class EntityResolver {
      * Extract entity properties. Entity properties are cached.
      *
      * @param pojo POJO entity.
-     * @return Entity fields and SQL statement.
+     * @return Entity binders and SQL statement.
      */
     Entity resolve(Object pojo) {
+        return resolve(pojo.getClass());
+    }
+
+    /**
+     * Extract entity properties of a POJO class. Entity properties are cached.
+     *
+     * @param type POJO class.
+     * @return Entity binders and SQL statement.
+     */
+    Entity resolve(Class<?> type) {
+        return registry.computeIfAbsent(type, this::createEntity);
+    }
+
+    /**
+     * Resolve a pipeline of calls composed into a single statement by the
+     * SQL dialect. Each part is the entity of a call bound to its own
+     * placeholders of the composed statement. Pipelines are cached.
+     *
+     * @param types POJO classes of the calls, in execution order.
+     * @return Pipeline entity or <code>null</code> if the calls MUST run one at a time.
+     */
+    Entity resolvePipeline(List<Class<?>> types) {
+        Entity pipeline = pipelines.computeIfAbsent(types, this::createPipeline);
+        return pipeline != SEQUENTIAL ? pipeline : null;
+    }
 
-        Class<?> type = pojo.getClass();
-        Entity entity = registry.get(type);
+    /**
+     * Compose the calls of a pipeline. The pipeline timeout is the sum of
+     * the call timeouts.
+     *
+     * @param types POJO classes of the calls.
+     * @return Pipeline entity or SEQUENTIAL if the dialect cannot compose the calls.
+     */
+    private Entity createPipeline(List<Class<?>> types) {
 
-        if (entity == null) {
-            // create and register a new entity
-            entity = createEntity(type);
-            registry.put(type, entity);
+        Entity[] entities = types.stream().map(this::resolve).toArray(Entity[]::new);
+        Dialect current = dialect;
+        String sql = current == null || Arrays.stream(entities).anyMatch(entity -> entity.streaming) ? null
+                : current.block(Arrays.stream(entities).map(entity -> entity.sql).collect(Collectors.toList()));
+        if (sql == null) {
+            return SEQUENTIAL;
         }
 
-        return entity;
+        Entity pipeline = new Entity();
+        pipeline.name = Arrays.stream(entities).map(entity -> entity.name).collect(Collectors.joining("+"));
+        pipeline.sql = sql;
+        pipeline.parts = new Entity[entities.length];
+        int offset = 0;
+        for (int i = 0; i < entities.length; i++) {
+            int shift = offset;
+            ParameterBinder[] parameters = Arrays.stream(entities[i].parameters)
+                    .map(binder -> new ParameterBinder(binder, shift))
+                    .toArray(ParameterBinder[]::new);
+            pipeline.parts[i] = createEntity(entities[i].name, entities[i].procedure, sql, parameters);
+            pipeline.timeout += entities[i].timeout;
+            offset += parameters.length;
+        }
+        return pipeline;
+    }
+
+    /**
+     * Resolve the record entity of an IN only POJO class. A record entity
+     * binds the IN parameter values from an <code>Object[]</code> record, in
+     * the order of the IN binders of the POJO entity. Records are cached.
+     *
+     * @param type POJO class.
+     * @return Record entity.
+     */
+    Entity resolveRecord(Class<?> type) {
+        return records.computeIfAbsent(type, this::createRecord);
+    }
+
+    /**
+     * Create a record entity.
+     *
+     * @param type POJO class.
+     * @return Record entity.
+     */
+    private Entity createRecord(Class<?> type) {
+
+        Entity entity = resolve(type);
+        if (entity.out.length > 0 || Arrays.stream(entity.in).anyMatch(binder ->
+                binder.kind == ParameterBinder.Kind.BINARY_STREAM || binder.kind == ParameterBinder.Kind.CHARACTER_STREAM)) {
+            throw new ProcedureManagerException(I18n.get("error.write.behind", type.getName()));
+        }
+
+        ParameterBinder[] parameters = new ParameterBinder[entity.in.length];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = entity.in[i].record(i);
+        }
+
+        Entity record = createEntity(entity.name, entity.procedure, entity.sql, parameters);
+        record.timeout = entity.timeout;
+        return record;
+    }
+
+    /**
+     * Get the row mapper of a row POJO class. Row mappers are cached.
+     *
+     * @param type Row POJO class.
+     * @param <T>  Row POJO type.
+     * @return Row mapper.
+     */
+    @SuppressWarnings("unchecked")
+    <T> RowMapper<T> resolveRows(Class<T> type) {
+        return (RowMapper<T>) rows.computeIfAbsent(type, RowMapper::new);
     }
 
     /**
@@ -141,7 +458,49 @@ class EntityResolver {
         /* SQL statement */
         String sql;
 
-        /* Entity fields */
-        List<Field> fields;
+        /* Stored procedure name */
+        String name;
+
+        /* Procedure or function */
+        boolean procedure;
+
+        /* All parameter binders */
+        ParameterBinder[] parameters;
+
+        /* IN and INOUT parameter binders */
+        ParameterBinder[] in;
+
+        /* OUT and INOUT parameter binders */
+        ParameterBinder[] out;
+
+        /* SQL types of the OUT parameters registered with the driver, by out position */
+        int[] outTypes;
+
+        /* Cursor OUT parameter binders, also in out */
+        ParameterBinder[] cursors;
+
+        /* LOB stream OUT parameter binders, also in out */
+        ParameterBinder[] lobs;
+
+        /* Cursor or LOB OUT parameters read while the statement stays open */
+        boolean streaming;
+
+        /* Cache the call results */
+        boolean cacheable;
+
+        /* Cached results time to live, in milliseconds */
+        long ttl;
+
+        /* Share the calls in flight */
+        boolean singleFlight;
+
+        /* Call timeout, in milliseconds */
+        long timeout;
+
+        /* Read only procedure, may run on a replica */
+        boolean readOnly;
+
+        /* Calls composed into a pipeline statement, null for a single call */
+        Entity[] parts;
     }
 }
@@ -0,0 +1,311 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.annotations.enums.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Compile time generated entity binder. The annotation processor generates
+ * an implementation for each @StoredProcedure class, named after the class
+ * with the {@link #BINDER_SUFFIX} suffix, in the same package, and registers
+ * it as a <code>ServiceLoader</code> provider. The entity resolver uses the
+ * generated binder of a class instead of reflection when present, the
+ * annotation attributes are generated with the binder.
+ * <p>
+ * Parameters are addressed by their position in the arrays returned by
+ * {@link #indexes()}, {@link #types()}, {@link #directions()} and
+ * {@link #javaTypes()}. The primitive accessors read and write primitive
+ * fields without boxing, the default implementations delegate to
+ * {@link #get(Object, int)} and {@link #set(Object, int, Object)}.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public interface GeneratedEntity {
+
+    /* Generated binder class name suffix. */
+    String BINDER_SUFFIX = "_SpBinder";
+
+    /**
+     * Bound @StoredProcedure class.
+     *
+     * @return  see above.
+     */
+    Class<?> type();
+
+    /**
+     * Stored procedure or function name.
+     *
+     * @return  see above.
+     */
+    String name();
+
+    /**
+     * Procedure or Function attribute.
+     *
+     * @return  <code>true</code> - procedure
+     *          <code>false</code> - function.
+     */
+    boolean procedure();
+
+    /**
+     * Call statement in JDBC escape syntax.
+     *
+     * @return  see above.
+     */
+    String sql();
+
+    /**
+     * Cache the call results, see {@link scalable.solutions.spm.annotations.StoredProcedure#cacheable()}.
+     *
+     * @return  see above.
+     */
+    default boolean cacheable() {
+        return false;
+    }
+
+    /**
+     * Cached results time to live, in milliseconds.
+     *
+     * @return  see above.
+     */
+    default long ttl() {
+        return 0;
+    }
+
+    /**
+     * Share the calls in flight, see {@link scalable.solutions.spm.annotations.StoredProcedure#singleFlight()}.
+     *
+     * @return  see above.
+     */
+    default boolean singleFlight() {
+        return false;
+    }
+
+    /**
+     * Call timeout, in milliseconds.
+     *
+     * @return  see above.
+     */
+    default long timeout() {
+        return 0;
+    }
+
+    /**
+     * Read only procedure, see {@link scalable.solutions.spm.annotations.StoredProcedure#readOnly()}.
+     *
+     * @return  see above.
+     */
+    default boolean readOnly() {
+        return false;
+    }
+
+    /**
+     * Parameter indexes.
+     *
+     * @return  see above.
+     */
+    int[] indexes();
+
+    /**
+     * Parameter SQL types.
+     *
+     * @return  see above.
+     */
+    int[] types();
+
+    /**
+     * Parameter directions.
+     *
+     * @return  see above.
+     */
+    Direction[] directions();
+
+    /**
+     * Parameter field types. Binders that do not declare the field types are
+     * bound with <code>setObject</code> and <code>getObject</code>.
+     *
+     * @return  see above.
+     */
+    default Class<?>[] javaTypes() {
+        Class<?>[] types = new Class<?>[indexes().length];
+        Arrays.fill(types, Object.class);
+        return types;
+    }
+
+    /**
+     * Row POJO classes of the cursor parameters and element classes of the
+     * array parameters, <code>null</code> for the other parameters.
+     *
+     * @return  see above.
+     */
+    default Class<?>[] rowTypes() {
+        return new Class<?>[indexes().length];
+    }
+
+    /**
+     * SQL type names of the parameters, <code>null</code> for the parameters
+     * not declaring a type name.
+     *
+     * @return  see above.
+     */
+    default String[] typeNames() {
+        return new String[indexes().length];
+    }
+
+    /**
+     * Read a parameter value.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   parameter
+     *          Parameter position.
+     *
+     * @return  Parameter value.
+     */
+    Object get(Object pojo, int parameter);
+
+    /**
+     * Write an OUT or INOUT parameter value.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   parameter
+     *          Parameter position.
+     * @param   value
+     *          Parameter value.
+     */
+    void set(Object pojo, int parameter, Object value);
+
+    /**
+     * Read a <code>int</code> parameter value.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   parameter
+     *          Parameter position.
+     *
+     * @return  Parameter value.
+     */
+    default int getInt(Object pojo, int parameter) {
+        return (Integer) get(pojo, parameter);
+    }
+
+    /**
+     * Write a <code>int</code> OUT or INOUT parameter value.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   parameter
+     *          Parameter position.
+     * @param   value
+     *          Parameter value.
+     */
+    default void setInt(Object pojo, int parameter, int value) {
+        set(pojo, parameter, value);
+    }
+
+    /**
+     * Read a <code>long</code> parameter value.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   parameter
+     *          Parameter position.
+     *
+     * @return  Parameter value.
+     */
+    default long getLong(Object pojo, int parameter) {
+        return (Long) get(pojo, parameter);
+    }
+
+    /**
+     * Write a <code>long</code> OUT or INOUT parameter value.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   parameter
+     *          Parameter position.
+     * @param   value
+     *          Parameter value.
+     */
+    default void setLong(Object pojo, int parameter, long value) {
+        set(pojo, parameter, value);
+    }
+
+    /**
+     * Read a <code>double</code> parameter value.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   parameter
+     *          Parameter position.
+     *
+     * @return  Parameter value.
+     */
+    default double getDouble(Object pojo, int parameter) {
+        return (Double) get(pojo, parameter);
+    }
+
+    /**
+     * Write a <code>double</code> OUT or INOUT parameter value.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   parameter
+     *          Parameter position.
+     * @param   value
+     *          Parameter value.
+     */
+    default void setDouble(Object pojo, int parameter, double value) {
+        set(pojo, parameter, value);
+    }
+
+    /**
+     * Read a <code>boolean</code> parameter value.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   parameter
+     *          Parameter position.
+     *
+     * @return  Parameter value.
+     */
+    default boolean getBoolean(Object pojo, int parameter) {
+        return (Boolean) get(pojo, parameter);
+    }
+
+    /**
+     * Write a <code>boolean</code> OUT or INOUT parameter value.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   parameter
+     *          Parameter position.
+     * @param   value
+     *          Parameter value.
+     */
+    default void setBoolean(Object pojo, int parameter, boolean value) {
+        set(pojo, parameter, value);
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.i18n.I18n;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Memory mapped ring journal of the write behind records. A record is
+ * appended before its call is queued and released once the call completed,
+ * so the records still in the journal after a crash are the calls to replay.
+ * <p>
+ * File layout: a 64 bytes header holding the magic number, the sequence and
+ * the offset of the oldest unreleased record, followed by the records. A
+ * record is an <code>int</code> length, the <code>int</code> CRC32 of the
+ * payload, the <code>long</code> sequence and the payload. Sequences are
+ * consecutive, so a recovery scan stops at the first stale or torn record.
+ * Records are written in the OS page cache, they survive a process crash
+ * and, with sync enabled, a system crash.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class Journal {
+
+    /* Journal file magic number. */
+    private static final int MAGIC = 0x53504A31;
+
+    /* Header offset of the oldest unreleased record sequence. */
+    private static final int HEAD_SEQUENCE = 8;
+
+    /* Header offset of the oldest unreleased record offset. */
+    private static final int HEAD_OFFSET = 16;
+
+    /* Offset of the first record. */
+    private static final int DATA = 64;
+
+    /* Record length, CRC32 and sequence. */
+    private static final int RECORD_HEADER = 16;
+
+    /* Length of the marker sending the readers back to the first record. */
+    private static final int WRAP = -1;
+
+    /* Journal file. */
+    private final FileChannel channel;
+
+    /* Mapped journal file. */
+    private final MappedByteBuffer buffer;
+
+    /* Journal size in bytes. */
+    private final int capacity;
+
+    /* Force the records to the storage device on each append. */
+    private final boolean sync;
+
+    /* Offsets of the unreleased records by sequence. */
+    private final TreeMap<Long, Integer> pending = new TreeMap<>();
+
+    /* Payloads of the records found by the recovery scan, by sequence. */
+    private final Map<Long, byte[]> recovered = new LinkedHashMap<>();
+
+    /* Sequence of the next record. */
+    private long nextSequence;
+
+    /* Offset of the next record. */
+    private int tail;
+
+    /**
+     * Open or create a journal and recover its unreleased records.
+     *
+     * @param path Journal file.
+     * @param size Journal size in bytes, an existing larger journal keeps its size.
+     * @param sync <code>true</code> to force each record to the storage device.
+     */
+    Journal(Path path, int size, boolean sync) {
+
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.capacity = (int) Math.max(size, Math.min(channel.size(), Integer.MAX_VALUE));
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new ProcedureManagerException(e);
+        }
+        this.sync = sync;
+
+        int magic = buffer.getInt(0);
+        if (magic == 0) {
+            buffer.putInt(0, MAGIC);
+            writeHead(1, DATA);
+        } else if (magic != MAGIC) {
+            close();
+            throw new ProcedureManagerException(I18n.get("error.journal.invalid", path));
+        }
+
+        recover();
+    }
+
+    /**
+     * Scan the records from the header head, collecting the consecutive
+     * records not yet released.
+     */
+    private void recover() {
+
+        long headSequence = buffer.getLong(HEAD_SEQUENCE);
+        long offset = buffer.getLong(HEAD_OFFSET);
+        int position = offset >= DATA && offset < capacity ? (int) offset : DATA;
+        long previous = -1;
+        nextSequence = headSequence;
+        tail = position;
+
+        for (int visited = 0; visited < capacity; ) {
+            if (capacity - position < RECORD_HEADER || buffer.getInt(position) == WRAP) {
+                visited += capacity - position;
+                position = DATA;
+                continue;
+            }
+
+            int length = buffer.getInt(position);
+            long sequence = buffer.getLong(position + 8);
+            if (length <= 0 || length > capacity - position - RECORD_HEADER
+                    || (previous >= 0 && sequence != previous + 1)) {
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(position + RECORD_HEADER);
+            source.get(payload);
+            if (crc(payload) != buffer.getInt(position + 4)) {
+                break;
+            }
+
+            // records older than the head were released before a torn head update
+            if (sequence >= headSequence) {
+                pending.put(sequence, position);
+                recovered.put(sequence, payload);
+                nextSequence = sequence + 1;
+                tail = position + RECORD_HEADER + length;
+            }
+            previous = sequence;
+            visited += RECORD_HEADER + length;
+            position += RECORD_HEADER + length;
+        }
+
+        if (!pending.isEmpty()) {
+            writeHead(pending.firstKey(), pending.firstEntry().getValue());
+        }
+    }
+
+    /**
+     * Get the payloads of the records to replay.
+     *
+     * @return Recovered payloads by sequence, in sequence order.
+     */
+    Map<Long, byte[]> recovered() {
+        return recovered;
+    }
+
+    /**
+     * Append a record.
+     *
+     * @param payload Record payload.
+     * @return Record sequence or <code>-1</code> if the journal is full.
+     */
+    synchronized long append(byte[] payload) {
+
+        int size = RECORD_HEADER + payload.length;
+        if (size > capacity - DATA - 1) {
+            throw new ProcedureManagerException(I18n.get("error.journal.record", size, capacity));
+        }
+
+        if (pending.isEmpty()) {
+            tail = DATA;
+        }
+
+        int head = pending.isEmpty() ? DATA : pending.firstEntry().getValue();
+        int position = tail;
+        if (pending.isEmpty() || position > head) {
+            if (capacity - position < size) {
+                // wrap around, the head MUST stay ahead of the tail
+                if (head - DATA <= size) {
+                    return -1;
+                }
+                if (capacity - position >= RECORD_HEADER) {
+                    buffer.putInt(position, WRAP);
+                }
+                position = DATA;
+            }
+        } else if (head - position <= size) {
+            return -1;
+        }
+
+        long sequence = nextSequence++;
+        ByteBuffer target = buffer.duplicate();
+        target.position(position + RECORD_HEADER);
+        target.put(payload);
+        buffer.putLong(position + 8, sequence);
+        buffer.putInt(position + 4, crc(payload));
+        buffer.putInt(position, payload.length);
+
+        if (pending.isEmpty()) {
+            writeHead(sequence, position);
+        }
+        pending.put(sequence, position);
+        tail = position + size;
+
+        if (sync) {
+            buffer.force();
+        }
+        return sequence;
+    }
+
+    /**
+     * Release a record whose call completed. The head moves to the oldest
+     * record still pending.
+     *
+     * @param sequence Record sequence.
+     */
+    synchronized void release(long sequence) {
+
+        boolean head = !pending.isEmpty() && pending.firstKey() == sequence;
+        pending.remove(sequence);
+        if (head) {
+            Map.Entry<Long, Integer> first = pending.firstEntry();
+            if (first != null) {
+                writeHead(first.getKey(), first.getValue());
+            } else {
+                writeHead(nextSequence, tail);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Wait until a record is released.
+     *
+     * @param millis Maximum wait time.
+     * @throws InterruptedException Interrupted while waiting.
+     */
+    synchronized void awaitRelease(long millis) throws InterruptedException {
+        wait(millis);
+    }
+
+    /**
+     * Write the header head. The sequence is written first, so a torn update
+     * leaves an older offset the recovery scan skips forward from.
+     *
+     * @param sequence Oldest unreleased record sequence.
+     * @param offset   Oldest unreleased record offset.
+     */
+    private void writeHead(long sequence, int offset) {
+        buffer.putLong(HEAD_SEQUENCE, sequence);
+        buffer.putLong(HEAD_OFFSET, offset);
+    }
+
+    /**
+     * Compute the checksum of a payload.
+     *
+     * @param payload Record payload.
+     * @return CRC32 checksum.
+     */
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Flush and close the journal file.
+     */
+    synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+}
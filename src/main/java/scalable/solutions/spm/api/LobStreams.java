@@ -0,0 +1,186 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sources of LOB IN parameters. <code>InputStream</code> and
+ * <code>Reader</code> fields are streamed as they are, <code>ByteBuffer</code>
+ * fields are read in place and <code>Path</code> fields are memory mapped,
+ * so the payload is never copied on the heap. Character LOBs bound from
+ * bytes are decoded as UTF-8.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class LobStreams {
+
+    /* Maximum size of a single file mapping. */
+    private static final long SEGMENT = 1L << 30;
+
+    /**
+     * Hidden constructor.
+     */
+    private LobStreams() {
+    }
+
+    /**
+     * Length in bytes of a LOB source.
+     *
+     * @param value InputStream, ByteBuffer or Path.
+     * @return Length in bytes, <code>-1</code> if unknown.
+     * @throws IOException File access error.
+     */
+    static long length(Object value) throws IOException {
+
+        if (value instanceof ByteBuffer) {
+            return ((ByteBuffer) value).remaining();
+        }
+        if (value instanceof Path) {
+            return Files.size((Path) value);
+        }
+        return -1;
+    }
+
+    /**
+     * Binary stream of a LOB source.
+     *
+     * @param value InputStream, ByteBuffer or Path.
+     * @return Binary stream.
+     * @throws IOException File access error.
+     */
+    static InputStream binary(Object value) throws IOException {
+
+        if (value instanceof ByteBuffer) {
+            return new ByteBufferInputStream(((ByteBuffer) value).duplicate());
+        }
+        if (value instanceof Path) {
+            return map((Path) value);
+        }
+        return (InputStream) value;
+    }
+
+    /**
+     * Character stream of a LOB source.
+     *
+     * @param value Reader, ByteBuffer or Path.
+     * @return Character stream.
+     * @throws IOException File access error.
+     */
+    static Reader characters(Object value) throws IOException {
+
+        if (value instanceof Reader) {
+            return (Reader) value;
+        }
+        return new InputStreamReader(binary(value), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Map a file in read only segments. The file is closed once mapped, the
+     * mappings stay valid until they are garbage collected.
+     *
+     * @param path File path.
+     * @return Stream of the file content.
+     * @throws IOException File access error.
+     */
+    private static InputStream map(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<InputStream> segments = new ArrayList<>();
+            for (long position = 0; position < size; position += SEGMENT) {
+                segments.add(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, Math.min(SEGMENT, size - position))));
+            }
+
+            if (segments.size() == 1) {
+                return segments.get(0);
+            }
+            return segments.isEmpty() ? new ByteBufferInputStream(ByteBuffer.allocate(0))
+                    : new SequenceInputStream(Collections.enumeration(segments));
+        }
+    }
+
+    /**
+     * Input stream reading the remaining bytes of a buffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        /* Source buffer, positioned on the next byte. */
+        private final ByteBuffer buffer;
+
+        /**
+         * Read a buffer from its position to its limit.
+         *
+         * @param buffer Source buffer.
+         */
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long count) {
+
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,651 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.NClob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/**
+ * Precompiled binder of a single stored procedure parameter.
+ * The annotation values are extracted once and the field is accessed
+ * through method handles, so no reflection is done on the call path.
+ * <p>
+ * The JDBC accessors are selected from the field type and the SQL type:
+ * <code>int</code>, <code>long</code>, <code>double</code> and
+ * <code>boolean</code> fields are bound with the primitive setters and
+ * getters without boxing, strings and decimals with their typed accessors,
+ * and any other mapping with <code>setObject</code>/<code>getObject</code>.
+ * <code>Stream</code> fields are cursor OUT parameters, streamed by the
+ * manager. <code>ARRAY</code> parameters of <code>Collection</code> and
+ * array fields are bound with <code>setArray</code>/<code>getArray</code>.
+ * LOB parameters of <code>InputStream</code>, <code>Reader</code>,
+ * <code>Path</code> and <code>ByteBuffer</code> fields are streamed, LOB
+ * OUT parameters are read lazily by the manager.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class ParameterBinder {
+
+    /**
+     * JDBC accessors used by a parameter.
+     */
+    enum Kind {
+        INT, LONG, DOUBLE, BOOLEAN, STRING, DECIMAL, CURSOR, ARRAY, BINARY_STREAM, CHARACTER_STREAM, OBJECT
+    }
+
+    /* Erased getter type: (Object)Object */
+    private static final MethodType GETTER_TYPE =
+            MethodType.methodType(Object.class, Object.class);
+
+    /* Erased setter type: (Object, Object)void */
+    private static final MethodType SETTER_TYPE =
+            MethodType.methodType(void.class, Object.class, Object.class);
+
+    /* GeneratedEntity.get(Object, int) */
+    private static final MethodHandle GENERATED_GETTER;
+
+    /* GeneratedEntity.set(Object, int, Object) */
+    private static final MethodHandle GENERATED_SETTER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            GENERATED_GETTER = lookup.findVirtual(GeneratedEntity.class, "get",
+                    MethodType.methodType(Object.class, Object.class, int.class));
+            GENERATED_SETTER = lookup.findVirtual(GeneratedEntity.class, "set",
+                    MethodType.methodType(void.class, Object.class, int.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /* Parameter index. */
+    final int index;
+
+    /* Parameter SQL type. */
+    final int type;
+
+    /* Parameter direction. */
+    final Direction direction;
+
+    /* Field type. */
+    final Class<?> javaType;
+
+    /* JDBC accessors. */
+    final Kind kind;
+
+    /* Row POJO class of a cursor parameter or element class of an array, null for other parameters. */
+    final Class<?> rowType;
+
+    /* SQL type name of a user defined or array type, null if not declared. */
+    final String typeName;
+
+    /* Primitive field bound without boxing. */
+    private final boolean primitive;
+
+    /* Field getter, (Object)primitive for primitive fields. */
+    private final MethodHandle getter;
+
+    /* Field setter, only for OUT and INOUT parameters. */
+    private final MethodHandle setter;
+
+    /* Array mapper of an array parameter, null for other parameters. */
+    private final ArrayMapper array;
+
+    /**
+     * Compile a binder for a @StoredProcedureParameter annotated field.
+     *
+     * @param field Annotated field.
+     */
+    ParameterBinder(Field field) {
+
+        StoredProcedureParameter param = field.getAnnotation(StoredProcedureParameter.class);
+        this.index = param.index();
+        this.type = param.type();
+        this.direction = param.direction();
+        this.javaType = field.getType();
+        this.kind = kind(field.getType(), type);
+        this.primitive = field.getType().isPrimitive() && kind != Kind.OBJECT;
+        this.typeName = param.typeName().isEmpty() ? null : param.typeName();
+        if (kind == Kind.ARRAY && field.getType().isArray()) {
+            this.rowType = field.getType().getComponentType();
+        } else if (kind == Kind.CURSOR || kind == Kind.ARRAY) {
+            this.rowType = param.rowType() != void.class ? param.rowType() : typeArgument(field);
+        } else {
+            this.rowType = null;
+        }
+        this.array = array(javaType);
+
+        try {
+            field.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> erased = primitive ? field.getType() : Object.class;
+            this.getter = lookup.unreflectGetter(field)
+                    .asType(MethodType.methodType(erased, Object.class));
+            this.setter = direction == Direction.IN ? null
+                    : lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, erased));
+        } catch (IllegalAccessException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Bind a parameter of a compile time generated binder.
+     *
+     * @param generated Generated binder.
+     * @param parameter Parameter position.
+     */
+    ParameterBinder(GeneratedEntity generated, int parameter) {
+
+        this.javaType = generated.javaTypes()[parameter];
+        this.index = generated.indexes()[parameter];
+        this.type = generated.types()[parameter];
+        this.direction = generated.directions()[parameter];
+        this.kind = kind(javaType, type);
+        this.primitive = javaType.isPrimitive() && kind != Kind.OBJECT;
+        this.rowType = kind != Kind.CURSOR && kind != Kind.ARRAY ? null : generated.rowTypes()[parameter];
+        this.typeName = generated.typeNames()[parameter];
+        this.array = array(javaType);
+
+        if (primitive) {
+            String name = Character.toUpperCase(javaType.getName().charAt(0)) + javaType.getName().substring(1);
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                MethodHandle get = lookup.findVirtual(GeneratedEntity.class, "get" + name,
+                        MethodType.methodType(javaType, Object.class, int.class));
+                this.getter = MethodHandles.insertArguments(get.bindTo(generated), 1, parameter);
+                if (direction == Direction.IN) {
+                    this.setter = null;
+                } else {
+                    MethodHandle set = lookup.findVirtual(GeneratedEntity.class, "set" + name,
+                            MethodType.methodType(void.class, Object.class, int.class, javaType));
+                    this.setter = MethodHandles.insertArguments(set.bindTo(generated), 1, parameter);
+                }
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new ProcedureManagerException(e);
+            }
+        } else {
+            this.getter = MethodHandles.insertArguments(GENERATED_GETTER.bindTo(generated), 1, parameter);
+            this.setter = direction == Direction.IN ? null
+                    : MethodHandles.insertArguments(GENERATED_SETTER.bindTo(generated), 1, parameter);
+        }
+    }
+
+    /**
+     * Copy a binder to another parameter position, used when several calls
+     * share the placeholders of a single statement.
+     *
+     * @param binder Source binder.
+     * @param offset Number of placeholders preceding the call.
+     */
+    ParameterBinder(ParameterBinder binder, int offset) {
+        this(binder, binder.index + offset, binder.getter, binder.setter);
+    }
+
+    /**
+     * Copy a binder using other field accessors.
+     *
+     * @param binder Source binder.
+     * @param index  Parameter index.
+     * @param getter Field getter.
+     * @param setter Field setter, <code>null</code> for IN parameters.
+     */
+    private ParameterBinder(ParameterBinder binder, int index, MethodHandle getter, MethodHandle setter) {
+        this.index = index;
+        this.type = binder.type;
+        this.direction = binder.direction;
+        this.javaType = binder.javaType;
+        this.kind = binder.kind;
+        this.rowType = binder.rowType;
+        this.typeName = binder.typeName;
+        this.primitive = binder.primitive;
+        this.getter = getter;
+        this.setter = setter;
+        this.array = binder.array;
+    }
+
+    /**
+     * Copy an IN binder reading its value from an <code>Object[]</code>
+     * record instead of the POJO field, used to replay journaled calls.
+     *
+     * @param position Value position in the record.
+     * @return Record binder.
+     */
+    ParameterBinder record(int position) {
+        MethodHandle value = MethodHandles.insertArguments(
+                MethodHandles.arrayElementGetter(Object[].class), 1, position);
+        return new ParameterBinder(this, index, value.asType(getter.type()), null);
+    }
+
+    /**
+     * Compile the array mapper of an array parameter.
+     *
+     * @param javaType Field type.
+     * @return Array mapper, <code>null</code> for other parameters or an unknown element class.
+     */
+    private ArrayMapper array(Class<?> javaType) {
+        return kind != Kind.ARRAY || rowType == null ? null
+                : new ArrayMapper(javaType, rowType, typeName, direction != Direction.IN);
+    }
+
+    /**
+     * Read the field value, boxing primitive values.
+     *
+     * @param pojo Stored procedure entity.
+     * @return Field value.
+     */
+    Object get(Object pojo) {
+        try {
+            return getter.invoke(pojo);
+        } catch (Throwable e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Write the field value, unboxing primitive values.
+     *
+     * @param pojo  Stored procedure entity.
+     * @param value New field value.
+     */
+    void set(Object pojo, Object value) {
+        try {
+            setter.invoke(pojo, value);
+        } catch (Throwable e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Select the JDBC accessors of a field. The typed accessors are used only
+     * when the SQL type is compatible with the field type.
+     *
+     * @param javaType Field type.
+     * @param sqlType  Parameter SQL type.
+     * @return JDBC accessors.
+     */
+    static Kind kind(Class<?> javaType, int sqlType) {
+
+        if (javaType == Stream.class) {
+            return Kind.CURSOR;
+        }
+
+        if (sqlType == Types.ARRAY && (javaType.isArray() || Collection.class.isAssignableFrom(javaType))) {
+            return Kind.ARRAY;
+        }
+
+        boolean bytes = InputStream.class.isAssignableFrom(javaType);
+        boolean chars = Reader.class.isAssignableFrom(javaType);
+        if (bytes || chars || Path.class.isAssignableFrom(javaType) || ByteBuffer.class.isAssignableFrom(javaType)) {
+            if (!chars && binaryLob(sqlType)) {
+                return Kind.BINARY_STREAM;
+            }
+            return !bytes && characterLob(sqlType) ? Kind.CHARACTER_STREAM : Kind.OBJECT;
+        }
+
+        if (javaType == int.class || javaType == Integer.class) {
+            return numeric(sqlType) ? Kind.INT : Kind.OBJECT;
+        }
+        if (javaType == long.class || javaType == Long.class) {
+            return numeric(sqlType) ? Kind.LONG : Kind.OBJECT;
+        }
+        if (javaType == double.class || javaType == Double.class) {
+            return numeric(sqlType) ? Kind.DOUBLE : Kind.OBJECT;
+        }
+        if (javaType == boolean.class || javaType == Boolean.class) {
+            return sqlType == Types.BOOLEAN || sqlType == Types.BIT ? Kind.BOOLEAN : Kind.OBJECT;
+        }
+        if (javaType == String.class) {
+            switch (sqlType) {
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.LONGVARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                case Types.LONGNVARCHAR:
+                    return Kind.STRING;
+                default:
+                    return Kind.OBJECT;
+            }
+        }
+        if (javaType == BigDecimal.class) {
+            return sqlType == Types.DECIMAL || sqlType == Types.NUMERIC ? Kind.DECIMAL : Kind.OBJECT;
+        }
+
+        return Kind.OBJECT;
+    }
+
+    /**
+     * Row class of a <code>Stream&lt;T&gt;</code> field or element class of a
+     * <code>Collection&lt;T&gt;</code> field.
+     *
+     * @param field Cursor field.
+     * @return Type argument class or <code>null</code> if not declared.
+     */
+    private static Class<?> typeArgument(Field field) {
+
+        Type type = field.getGenericType();
+        if (type instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (argument instanceof Class) {
+                return (Class<?>) argument;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the result set of a cursor OUT parameter, using the JDBC 4.1 typed
+     * getter when the driver supports it.
+     *
+     * @param statement Executed statement.
+     * @return Cursor result set or <code>null</code> for a null cursor.
+     * @throws SQLException Database access error.
+     */
+    ResultSet cursor(CallableStatement statement) throws SQLException {
+
+        try {
+            return statement.getObject(index, ResultSet.class);
+        } catch (SQLFeatureNotSupportedException | AbstractMethodError e) {
+            return (ResultSet) statement.getObject(index);
+        }
+    }
+
+    /**
+     * Get the stream of a LOB OUT parameter. Binary and character LOBs are
+     * read lazily from the database while the statement is open, other
+     * binary types are read in memory.
+     *
+     * @param statement Executed statement.
+     * @return InputStream, Reader or <code>null</code> for a null LOB.
+     * @throws SQLException Database access error.
+     */
+    Object lob(CallableStatement statement) throws SQLException {
+
+        if (kind == Kind.BINARY_STREAM) {
+            if (type == Types.BLOB) {
+                Blob blob = statement.getBlob(index);
+                return blob != null ? blob.getBinaryStream() : null;
+            }
+            byte[] bytes = statement.getBytes(index);
+            return bytes != null ? new ByteArrayInputStream(bytes) : null;
+        }
+
+        switch (type) {
+            case Types.CLOB:
+                Clob clob = statement.getClob(index);
+                return clob != null ? clob.getCharacterStream() : null;
+            case Types.NCLOB:
+                NClob nclob = statement.getNClob(index);
+                return nclob != null ? nclob.getCharacterStream() : null;
+            default:
+                return statement.getCharacterStream(index);
+        }
+    }
+
+    /**
+     * Binary LOB SQL types.
+     *
+     * @param sqlType SQL type.
+     * @return <code>true</code> for a binary type.
+     */
+    private static boolean binaryLob(int sqlType) {
+        return sqlType == Types.BLOB || sqlType == Types.BINARY
+                || sqlType == Types.VARBINARY || sqlType == Types.LONGVARBINARY;
+    }
+
+    /**
+     * Character LOB SQL types.
+     *
+     * @param sqlType SQL type.
+     * @return <code>true</code> for a character type.
+     */
+    private static boolean characterLob(int sqlType) {
+        return sqlType == Types.CLOB || sqlType == Types.CHAR || sqlType == Types.VARCHAR
+                || sqlType == Types.LONGVARCHAR || national(sqlType);
+    }
+
+    /**
+     * National character SQL types.
+     *
+     * @param sqlType SQL type.
+     * @return <code>true</code> for a national character type.
+     */
+    private static boolean national(int sqlType) {
+        return sqlType == Types.NCLOB || sqlType == Types.NCHAR
+                || sqlType == Types.NVARCHAR || sqlType == Types.LONGNVARCHAR;
+    }
+
+    /**
+     * Numeric SQL types.
+     *
+     * @param sqlType SQL type.
+     * @return <code>true</code> for a numeric type.
+     */
+    private static boolean numeric(int sqlType) {
+
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Set the IN parameter value of a statement from the field.
+     * A <code>null</code> field value is bound with <code>setNull</code>.
+     * Array parameters are bound with {@link #bind(CallableStatement, Object, ArrayAdapter)}.
+     *
+     * @param statement CallableStatement object.
+     * @param pojo      Stored procedure entity.
+     * @throws SQLException Database access error.
+     */
+    void bind(CallableStatement statement, Object pojo) throws SQLException {
+
+        try {
+            if (primitive) {
+                switch (kind) {
+                    case INT:
+                        statement.setInt(index, (int) getter.invokeExact(pojo));
+                        return;
+                    case LONG:
+                        statement.setLong(index, (long) getter.invokeExact(pojo));
+                        return;
+                    case DOUBLE:
+                        statement.setDouble(index, (double) getter.invokeExact(pojo));
+                        return;
+                    default:
+                        statement.setBoolean(index, (boolean) getter.invokeExact(pojo));
+                        return;
+                }
+            }
+
+            Object value = (Object) getter.invokeExact(pojo);
+            if (value == null) {
+                statement.setNull(index, type);
+                return;
+            }
+
+            switch (kind) {
+                case INT:
+                    statement.setInt(index, (Integer) value);
+                    break;
+                case LONG:
+                    statement.setLong(index, (Long) value);
+                    break;
+                case DOUBLE:
+                    statement.setDouble(index, (Double) value);
+                    break;
+                case BOOLEAN:
+                    statement.setBoolean(index, (Boolean) value);
+                    break;
+                case STRING:
+                    statement.setString(index, (String) value);
+                    break;
+                case DECIMAL:
+                    statement.setBigDecimal(index, (BigDecimal) value);
+                    break;
+                case BINARY_STREAM:
+                    long length = LobStreams.length(value);
+                    if (length < 0) {
+                        statement.setBinaryStream(index, LobStreams.binary(value));
+                    } else {
+                        statement.setBinaryStream(index, LobStreams.binary(value), length);
+                    }
+                    break;
+                case CHARACTER_STREAM:
+                    if (national(type)) {
+                        statement.setNCharacterStream(index, LobStreams.characters(value));
+                    } else {
+                        statement.setCharacterStream(index, LobStreams.characters(value));
+                    }
+                    break;
+                default:
+                    statement.setObject(index, value);
+            }
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Set the <code>ARRAY</code> IN parameter value of a statement from a
+     * Collection or array field.
+     *
+     * @param statement CallableStatement object.
+     * @param pojo      Stored procedure entity.
+     * @param adapter   Array adapter.
+     * @throws SQLException Database access error.
+     */
+    void bind(CallableStatement statement, Object pojo, ArrayAdapter adapter) throws SQLException {
+
+        Object value = get(pojo);
+        if (value == null) {
+            statement.setNull(index, type);
+        } else {
+            statement.setArray(index, array.toArray(statement.getConnection(), adapter, value));
+        }
+    }
+
+    /**
+     * Read the OUT parameter value of a statement into the field. A SQL
+     * <code>NULL</code> sets wrapper and reference fields to <code>null</code>
+     * and primitive fields to the JDBC default value.
+     *
+     * @param statement CallableStatement object.
+     * @param pojo      Stored procedure entity.
+     * @throws SQLException Database access error.
+     */
+    void fetch(CallableStatement statement, Object pojo) throws SQLException {
+
+        try {
+            if (primitive) {
+                switch (kind) {
+                    case INT:
+                        setter.invokeExact(pojo, statement.getInt(index));
+                        return;
+                    case LONG:
+                        setter.invokeExact(pojo, statement.getLong(index));
+                        return;
+                    case DOUBLE:
+                        setter.invokeExact(pojo, statement.getDouble(index));
+                        return;
+                    default:
+                        setter.invokeExact(pojo, statement.getBoolean(index));
+                        return;
+                }
+            }
+
+            Object value;
+            switch (kind) {
+                case INT:
+                    int i = statement.getInt(index);
+                    value = statement.wasNull() ? null : i;
+                    break;
+                case LONG:
+                    long l = statement.getLong(index);
+                    value = statement.wasNull() ? null : l;
+                    break;
+                case DOUBLE:
+                    double d = statement.getDouble(index);
+                    value = statement.wasNull() ? null : d;
+                    break;
+                case BOOLEAN:
+                    boolean b = statement.getBoolean(index);
+                    value = statement.wasNull() ? null : b;
+                    break;
+                case STRING:
+                    value = statement.getString(index);
+                    break;
+                case DECIMAL:
+                    value = statement.getBigDecimal(index);
+                    break;
+                case ARRAY:
+                    value = array.toValue(statement.getArray(index));
+                    break;
+                default:
+                    value = statement.getObject(index);
+            }
+            setter.invokeExact(pojo, value);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+}
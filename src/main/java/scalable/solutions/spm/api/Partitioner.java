@@ -0,0 +1,48 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import java.util.Objects;
+
+/**
+ * Map shard keys to shards. Implementations MUST be thread safe and return
+ * the same shard for equal keys.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+@FunctionalInterface
+public interface Partitioner {
+
+    /**
+     * Hash partitioner, spreads the keys over the shards by their hash code.
+     */
+    Partitioner HASH = (key, shards) -> Math.floorMod(Objects.hashCode(key), shards);
+
+    /**
+     * Select the shard of a key.
+     *
+     * @param key    Shard key value, never <code>null</code>.
+     * @param shards Number of shards.
+     * @return Shard index from <code>0</code> to <code>shards - 1</code>.
+     */
+    int partition(Object key, int shards);
+}
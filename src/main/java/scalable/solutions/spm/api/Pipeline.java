@@ -0,0 +1,102 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.i18n.I18n;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Queue of stored procedure and function calls sent together. When the SQL
+ * dialect can compose the calls into a single statement, for example an
+ * Oracle anonymous block, the whole pipeline runs in one round trip,
+ * otherwise the calls run one at a time on the same connection. The OUT
+ * parameters of every queued POJO are set when {@link #execute()} returns.
+ * <p>
+ * A composed pipeline is a single statement; run the pipeline inside a
+ * transaction when the calls MUST succeed or fail together on every
+ * database. Pipelines are not thread safe.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class Pipeline {
+
+    /* Owner manager. */
+    private final AbstractProcedureManager manager;
+
+    /* Queued calls. */
+    private final List<Object> calls = new ArrayList<>();
+
+    /**
+     * Create an empty pipeline.
+     *
+     * @param manager Owner manager.
+     */
+    Pipeline(AbstractProcedureManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Queue a call.
+     *
+     * @param pojo @StoredProcedure POJO without cursor or LOB stream OUT parameters.
+     * @return This pipeline.
+     */
+    public Pipeline add(Object pojo) {
+
+        // Null POJO entities are not allowed.
+        if (pojo == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.entity"));
+        }
+
+        calls.add(pojo);
+        return this;
+    }
+
+    /**
+     * Number of queued calls.
+     *
+     * @return Queued calls.
+     */
+    public int size() {
+        return calls.size();
+    }
+
+    /**
+     * Run the queued calls in order and set their OUT parameters. The queue
+     * is cleared, even if a call fails, so the pipeline can be reused.
+     */
+    public void execute() {
+
+        if (calls.isEmpty()) {
+            return;
+        }
+
+        try {
+            manager.callPipeline(calls);
+        } finally {
+            calls.clear();
+        }
+    }
+}
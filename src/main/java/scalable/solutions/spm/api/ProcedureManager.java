@@ -20,7 +20,13 @@
  */
 package scalable.solutions.spm.api;
 
+import scalable.solutions.spm.metrics.ProcedureStatistics;
+
 import java.sql.Connection;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * ProcedureManager API.
@@ -56,6 +62,23 @@ public interface ProcedureManager {
      */
     TransactionManager getTransactionManager();
 
+    /**
+     * Call metrics snapshot, see <code>ProcedureManagerConfig.setMetricsEnabled</code>.
+     *
+     * @return  Call counts, error counts and phase latencies by stored
+     *          procedure name, empty if metrics are disabled.
+     */
+    Map<String, ProcedureStatistics> getMetrics();
+
+    /**
+     * Results cache of the @StoredProcedure(cacheable = true) procedures,
+     * see <code>ProcedureManagerConfig.setResultCacheSize</code>.
+     *
+     * @return  Result cache, used to invalidate results and read the cache
+     *          statistics.
+     */
+    ResultCache getResultCache();
+
     /**
      * Call a stored procedure or a function
      *
@@ -81,4 +104,134 @@ public interface ProcedureManager {
      *          count or there is no result
      */
     boolean call(Connection connection, Object pojo);
+
+    /**
+     * Call a stored procedure or a function within a deadline. The time left
+     * is applied with <code>setQueryTimeout</code> and the call can be
+     * cancelled from another thread with {@link Deadline#cancel()}. Calls
+     * exceeding the deadline fail with a <code>ProcedureTimeoutException</code>.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   deadline
+     *          Call deadline and cancel handle.
+     *
+     * @return  <code>true</code> if the first result is a <code>ResultSet</code>
+     *          object; <code>false</code> if the first result is an update
+     *          count or there is no result
+     */
+    boolean call(Object pojo, Deadline deadline);
+
+    /**
+     * Call a stored procedure or a function asynchronously. The caller blocks
+     * only while the maximum number of calls in flight is reached.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   <T>
+     *          Entity type.
+     *
+     * @return  Future completed with the entity once its OUT parameters are
+     *          bound, or exceptionally with the call error.
+     */
+    <T> CompletableFuture<T> callAsync(T pojo);
+
+    /**
+     * Call IN only stored procedures for a collection of entities using JDBC
+     * batches. Entities of the same class are grouped and sent in batches of
+     * the configured batch size.
+     *
+     * @param   pojos
+     *          Entity instances. Entities with OUT or INOUT parameters are rejected.
+     *
+     * @return  Update counts, one for each entity in iteration order.
+     */
+    int[] callBatch(Collection<?> pojos);
+
+    /**
+     * Call IN only stored procedures for a collection of entities using JDBC
+     * batches of the given size.
+     *
+     * @param   pojos
+     *          Entity instances. Entities with OUT or INOUT parameters are rejected.
+     * @param   batchSize
+     *          Maximum number of calls sent in a single batch.
+     *
+     * @return  Update counts, one for each entity in iteration order.
+     */
+    int[] callBatch(Collection<?> pojos, int batchSize);
+
+    /**
+     * Create a pipeline of calls sent together, in a single round trip when
+     * the SQL dialect can compose them into one statement.
+     *
+     * @return  Empty pipeline.
+     */
+    Pipeline pipeline();
+
+    /**
+     * Call a stored procedure or a function and stream the rows of its first
+     * result set as @ResultSetColumn annotated row POJOs. Rows are fetched
+     * lazily using the configured fetch size. The stream MUST be closed to
+     * release the statement and the connection; the OUT parameters are
+     * bound when the stream is closed after all rows were consumed.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   rowType
+     *          Row POJO class.
+     * @param   <T>
+     *          Row POJO type.
+     *
+     * @return  Lazy stream of rows.
+     */
+    <T> Stream<T> stream(Object pojo, Class<T> rowType);
+
+    /**
+     * Call a stored procedure or a function and stream the rows of its first
+     * result set using the given fetch size.
+     *
+     * @param   pojo
+     *          Entity instance.
+     * @param   rowType
+     *          Row POJO class.
+     * @param   fetchSize
+     *          Number of rows fetched in a single round trip, <code>0</code>
+     *          uses the driver default.
+     * @param   <T>
+     *          Row POJO type.
+     *
+     * @return  Lazy stream of rows.
+     */
+    <T> Stream<T> stream(Object pojo, Class<T> rowType, int fetchSize);
+
+    /**
+     * Resolve the entity metadata of the given @StoredProcedure classes in
+     * parallel and optionally prepare their call statements, so the first
+     * calls do not pay for it. Statements are prepared only into the
+     * statement cache of the current connection of a single connection
+     * manager, a connection given later to {@link #call(Connection, Object)}
+     * starts with an empty cache. Managers without a statement cache or
+     * without a current connection skip the preparation and report it.
+     *
+     * @param   types
+     *          @StoredProcedure classes.
+     * @param   prepare
+     *          <code>true</code> to prepare the call statements.
+     *
+     * @return  Warm up duration, resolved classes and failures.
+     */
+    WarmUpReport warmUp(Collection<Class<?>> types, boolean prepare);
+
+    /**
+     * Warm up all the @StoredProcedure classes of a package and its sub packages.
+     *
+     * @param   packageName
+     *          Package name.
+     * @param   prepare
+     *          <code>true</code> to prepare the call statements.
+     *
+     * @return  Warm up duration, resolved classes and failures.
+     */
+    WarmUpReport warmUp(String packageName, boolean prepare);
 }
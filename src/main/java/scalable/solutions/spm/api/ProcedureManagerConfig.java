@@ -0,0 +1,652 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.annotations.enums.BackpressurePolicy;
+import scalable.solutions.spm.annotations.enums.ReplicaSelection;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.i18n.I18n;
+
+import java.util.concurrent.Executor;
+
+/**
+ * ProcedureManager configuration options.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class ProcedureManagerConfig {
+
+    /* Maximum number of cached statements per connection, 0 disables the cache. */
+    private int statementCacheSize;
+
+    /* Default number of calls sent in a single JDBC batch. */
+    private int batchSize = 1000;
+
+    /* Default result set fetch size, 0 uses the driver default. */
+    private int fetchSize;
+
+    /* Executor of asynchronous calls, null for the default executor. */
+    private Executor executor;
+
+    /* Maximum number of asynchronous calls in flight. */
+    private int maxInFlightCalls = 64;
+
+    /* Record call metrics. */
+    private boolean metricsEnabled;
+
+    /* Metrics MXBean name, null if not registered. */
+    private String jmxName;
+
+    /* Maximum number of cached results of cacheable procedures, 0 disables the cache. */
+    private int resultCacheSize = 1024;
+
+    /* Maximum number of retries of a transaction failed with a transient error. */
+    private int transactionRetries = 3;
+
+    /* Base delay in milliseconds between transaction retries. */
+    private long retryBackoff = 50;
+
+    /* Maximum delay in milliseconds between transaction retries. */
+    private long maxRetryBackoff = 2000;
+
+    /* Factory of the ARRAY and struct values of array parameters. */
+    private ArrayAdapter arrayAdapter = ArrayAdapter.STANDARD;
+
+    /* Replica selection policy of routing managers. */
+    private ReplicaSelection replicaSelection = ReplicaSelection.ROUND_ROBIN;
+
+    /* Consecutive connection failures ejecting a replica. */
+    private int replicaFailureThreshold = 3;
+
+    /* Time in milliseconds an ejected replica stays out of rotation. */
+    private long replicaEjectionTime = 30000;
+
+    /* SQL dialect of the call statements, null for the GENERIC dialect or to detect it. */
+    private Dialect dialect;
+
+    /* Detect the SQL dialect from the database on the first call when no dialect is set. */
+    private boolean dialectDetectionEnabled;
+
+    /* Maximum number of write behind calls not yet completed. */
+    private int writeBehindCapacity = 10000;
+
+    /* Number of write behind worker threads. */
+    private int writeBehindWorkers = 1;
+
+    /* Retries of a write behind batch with growing delays, before retrying with the maximum delay. */
+    private int writeBehindRetries = 3;
+
+    /* Policy of a full write behind queue. */
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+
+    /* Write behind journal size in bytes. */
+    private int journalSize = 64 * 1024 * 1024;
+
+    /* Force each write behind record to the storage device. */
+    private boolean journalSync;
+
+    /**
+     * Maximum number of <code>CallableStatement</code> objects cached per
+     * connection. Cached statements are reused across calls of the same
+     * stored procedure and closed when evicted or when the manager is closed.
+     * Concurrent managers borrow a new connection for each call and rely on
+     * the statement pooling of their DataSource instead, they reject a non
+     * zero statement cache size.
+     *
+     * @return Statement cache size, <code>0</code> if caching is disabled.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Set the statement cache size.
+     *
+     * @param statementCacheSize Statement cache size, <code>0</code> disables caching.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 0) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "statementCacheSize", statementCacheSize));
+        }
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    /**
+     * Default number of calls sent in a single JDBC batch by
+     * <code>callBatch</code>.
+     *
+     * @return Batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the default batch size.
+     *
+     * @param batchSize Batch size, at least 1.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "batchSize", batchSize));
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Default number of rows fetched from the database in a single round
+     * trip when streaming result sets.
+     *
+     * @return Fetch size, <code>0</code> uses the driver default.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Set the default result set fetch size.
+     *
+     * @param fetchSize Fetch size, <code>0</code> uses the driver default.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setFetchSize(int fetchSize) {
+        if (fetchSize < 0) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "fetchSize", fetchSize));
+        }
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Executor of asynchronous calls. When not set the calls run on virtual
+     * threads (JDK 21 and later) or on a pool of daemon threads owned by the
+     * manager.
+     *
+     * @return Executor or <code>null</code> for the default executor.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the executor of asynchronous calls.
+     *
+     * @param executor Executor or <code>null</code> for the default executor.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Maximum number of asynchronous calls in flight per concurrent manager.
+     * Callers of <code>callAsync</code> block while the bound is reached.
+     * Single connection managers always run one asynchronous call at a time.
+     *
+     * @return Maximum number of calls in flight.
+     */
+    public int getMaxInFlightCalls() {
+        return maxInFlightCalls;
+    }
+
+    /**
+     * Set the maximum number of asynchronous calls in flight.
+     *
+     * @param maxInFlightCalls Maximum number of calls in flight, at least 1.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setMaxInFlightCalls(int maxInFlightCalls) {
+        if (maxInFlightCalls < 1) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "maxInFlightCalls", maxInFlightCalls));
+        }
+        this.maxInFlightCalls = maxInFlightCalls;
+        return this;
+    }
+
+    /**
+     * Record the call counts, error counts and latency histograms of the
+     * prepare, bind, execute and OUT bind phases for each stored procedure.
+     * Recording is lock free and cheap enough to stay enabled in production.
+     *
+     * @return <code>true</code> if metrics are recorded.
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Enable or disable the call metrics.
+     *
+     * @param metricsEnabled <code>true</code> to record call metrics.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+        return this;
+    }
+
+    /**
+     * Name of the metrics MXBean,
+     * <code>scalable.solutions.spm:type=ProcedureManager,name=&lt;jmxName&gt;</code>.
+     *
+     * @return MXBean name or <code>null</code> if the metrics are not exposed.
+     */
+    public String getJmxName() {
+        return jmxName;
+    }
+
+    /**
+     * Expose the call metrics as a platform MXBean. Requires metrics enabled.
+     * The MXBean is unregistered when the manager is closed.
+     *
+     * @param jmxName MXBean name or <code>null</code>.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setJmxName(String jmxName) {
+        this.jmxName = jmxName;
+        return this;
+    }
+
+    /**
+     * Maximum number of results of @StoredProcedure(cacheable = true) calls
+     * kept by the manager. The least recently used results are evicted.
+     *
+     * @return Result cache size, <code>0</code> if caching is disabled.
+     */
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    /**
+     * Set the result cache size.
+     *
+     * @param resultCacheSize Result cache size, <code>0</code> disables caching.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setResultCacheSize(int resultCacheSize) {
+        if (resultCacheSize < 0) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "resultCacheSize", resultCacheSize));
+        }
+        this.resultCacheSize = resultCacheSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of times inTransaction() runs again a unit of work failed
+     * with a deadlock, a serialization failure or a lost connection.
+     *
+     * @return Transaction retries, <code>0</code> if failed transactions are not retried.
+     */
+    public int getTransactionRetries() {
+        return transactionRetries;
+    }
+
+    /**
+     * Set the maximum number of transaction retries.
+     *
+     * @param transactionRetries Transaction retries, <code>0</code> disables retries.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setTransactionRetries(int transactionRetries) {
+        if (transactionRetries < 0) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "transactionRetries", transactionRetries));
+        }
+        this.transactionRetries = transactionRetries;
+        return this;
+    }
+
+    /**
+     * Base delay between transaction retries. The delay doubles on every
+     * retry and a random delay up to this bound is used, so the competing
+     * transactions do not collide again.
+     *
+     * @return Base retry delay in milliseconds.
+     */
+    public long getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    /**
+     * Set the base delay between transaction retries.
+     *
+     * @param retryBackoff Base retry delay in milliseconds.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setRetryBackoff(long retryBackoff) {
+        if (retryBackoff < 0) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "retryBackoff", retryBackoff));
+        }
+        this.retryBackoff = retryBackoff;
+        return this;
+    }
+
+    /**
+     * Maximum delay between transaction retries.
+     *
+     * @return Maximum retry delay in milliseconds.
+     */
+    public long getMaxRetryBackoff() {
+        return maxRetryBackoff;
+    }
+
+    /**
+     * Set the maximum delay between transaction retries.
+     *
+     * @param maxRetryBackoff Maximum retry delay in milliseconds.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setMaxRetryBackoff(long maxRetryBackoff) {
+        if (maxRetryBackoff < 0) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "maxRetryBackoff", maxRetryBackoff));
+        }
+        this.maxRetryBackoff = maxRetryBackoff;
+        return this;
+    }
+
+    /**
+     * Adapter creating the values of <code>ARRAY</code> parameters bound
+     * from <code>Collection</code> and array fields.
+     *
+     * @return Array adapter.
+     */
+    public ArrayAdapter getArrayAdapter() {
+        return arrayAdapter;
+    }
+
+    /**
+     * Set the array adapter, for example to create vendor specific arrays.
+     *
+     * @param arrayAdapter Array adapter or <code>null</code> for the JDBC standard adapter.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setArrayAdapter(ArrayAdapter arrayAdapter) {
+        this.arrayAdapter = arrayAdapter != null ? arrayAdapter : ArrayAdapter.STANDARD;
+        return this;
+    }
+
+    /**
+     * Policy used by routing managers to select the replica of a read only call.
+     *
+     * @return Replica selection policy.
+     */
+    public ReplicaSelection getReplicaSelection() {
+        return replicaSelection;
+    }
+
+    /**
+     * Set the replica selection policy.
+     *
+     * @param replicaSelection Replica selection policy or <code>null</code> for round robin.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setReplicaSelection(ReplicaSelection replicaSelection) {
+        this.replicaSelection = replicaSelection != null ? replicaSelection : ReplicaSelection.ROUND_ROBIN;
+        return this;
+    }
+
+    /**
+     * Number of consecutive connection failures after which a replica is
+     * ejected and its calls sent to the other replicas or the primary.
+     *
+     * @return Replica failure threshold.
+     */
+    public int getReplicaFailureThreshold() {
+        return replicaFailureThreshold;
+    }
+
+    /**
+     * Set the replica failure threshold.
+     *
+     * @param replicaFailureThreshold Consecutive failures, at least 1.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setReplicaFailureThreshold(int replicaFailureThreshold) {
+        if (replicaFailureThreshold < 1) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "replicaFailureThreshold", replicaFailureThreshold));
+        }
+        this.replicaFailureThreshold = replicaFailureThreshold;
+        return this;
+    }
+
+    /**
+     * Time an ejected replica stays out of rotation. The first call after
+     * this time probes the replica again.
+     *
+     * @return Ejection time in milliseconds.
+     */
+    public long getReplicaEjectionTime() {
+        return replicaEjectionTime;
+    }
+
+    /**
+     * Set the replica ejection time.
+     *
+     * @param replicaEjectionTime Ejection time in milliseconds.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setReplicaEjectionTime(long replicaEjectionTime) {
+        if (replicaEjectionTime < 0) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "replicaEjectionTime", replicaEjectionTime));
+        }
+        this.replicaEjectionTime = replicaEjectionTime;
+        return this;
+    }
+
+    /**
+     * SQL dialect used to build the call statements.
+     *
+     * @return SQL dialect or <code>null</code> for the GENERIC dialect or a detected one.
+     */
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Set the SQL dialect, for example {@link StandardDialect#GENERIC} to
+     * keep the JDBC escape syntax or a custom dialect.
+     *
+     * @param dialect SQL dialect or <code>null</code> for the GENERIC dialect or a detected one.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setDialect(Dialect dialect) {
+        this.dialect = dialect;
+        return this;
+    }
+
+    /**
+     * Check if the SQL dialect is detected from the database.
+     *
+     * @return <code>true</code> if dialect detection is enabled.
+     */
+    public boolean isDialectDetectionEnabled() {
+        return dialectDetectionEnabled;
+    }
+
+    /**
+     * Enable the detection of the SQL dialect from the database product
+     * name, done on the first call when no dialect is set. Disabled by
+     * default, the calls use the JDBC escape syntax of the GENERIC dialect.
+     *
+     * @param dialectDetectionEnabled <code>true</code> to detect the dialect.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setDialectDetectionEnabled(boolean dialectDetectionEnabled) {
+        this.dialectDetectionEnabled = dialectDetectionEnabled;
+        return this;
+    }
+
+    /**
+     * Maximum number of write behind calls queued or running. The
+     * backpressure policy applies when the queue is full.
+     *
+     * @return Write behind queue capacity.
+     */
+    public int getWriteBehindCapacity() {
+        return writeBehindCapacity;
+    }
+
+    /**
+     * Set the write behind queue capacity.
+     *
+     * @param writeBehindCapacity Queue capacity, at least 1.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setWriteBehindCapacity(int writeBehindCapacity) {
+        if (writeBehindCapacity < 1) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "writeBehindCapacity", writeBehindCapacity));
+        }
+        this.writeBehindCapacity = writeBehindCapacity;
+        return this;
+    }
+
+    /**
+     * Number of threads draining the write behind queue in JDBC batches.
+     *
+     * @return Write behind workers.
+     */
+    public int getWriteBehindWorkers() {
+        return writeBehindWorkers;
+    }
+
+    /**
+     * Set the number of write behind workers.
+     *
+     * @param writeBehindWorkers Worker threads, at least 1.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setWriteBehindWorkers(int writeBehindWorkers) {
+        if (writeBehindWorkers < 1) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "writeBehindWorkers", writeBehindWorkers));
+        }
+        this.writeBehindWorkers = writeBehindWorkers;
+        return this;
+    }
+
+    /**
+     * Number of retries of a write behind batch failed with a transient or
+     * connection error using growing transaction retry delays. Later retries
+     * wait the maximum retry backoff, until the database recovers; such
+     * batches are never dropped.
+     *
+     * @return Write behind retries.
+     */
+    public int getWriteBehindRetries() {
+        return writeBehindRetries;
+    }
+
+    /**
+     * Set the number of write behind retries with growing delays.
+     *
+     * @param writeBehindRetries Retries, <code>0</code> waits the maximum backoff from the first retry.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setWriteBehindRetries(int writeBehindRetries) {
+        if (writeBehindRetries < 0) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option",
+                    "writeBehindRetries", writeBehindRetries));
+        }
+        this.writeBehindRetries = writeBehindRetries;
+        return this;
+    }
+
+    /**
+     * Policy applied when the write behind queue or its journal is full.
+     *
+     * @return Backpressure policy.
+     */
+    public BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    /**
+     * Set the backpressure policy.
+     *
+     * @param backpressurePolicy Backpressure policy or <code>null</code> to block.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setBackpressurePolicy(BackpressurePolicy backpressurePolicy) {
+        this.backpressurePolicy = backpressurePolicy != null ? backpressurePolicy : BackpressurePolicy.BLOCK;
+        return this;
+    }
+
+    /**
+     * Size of the memory mapped write behind journal.
+     *
+     * @return Journal size in bytes.
+     */
+    public int getJournalSize() {
+        return journalSize;
+    }
+
+    /**
+     * Set the write behind journal size.
+     *
+     * @param journalSize Journal size in bytes, at least 4096.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setJournalSize(int journalSize) {
+        if (journalSize < 4096) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option", "journalSize", journalSize));
+        }
+        this.journalSize = journalSize;
+        return this;
+    }
+
+    /**
+     * Force each write behind record to the storage device. Records always
+     * survive a process crash, a forced record also survives a system crash
+     * at the cost of a device write per call.
+     *
+     * @return <code>true</code> if the journal is synchronous.
+     */
+    public boolean isJournalSync() {
+        return journalSync;
+    }
+
+    /**
+     * Enable or disable the synchronous journal.
+     *
+     * @param journalSync <code>true</code> to force each record to the storage device.
+     * @return This configuration.
+     */
+    public ProcedureManagerConfig setJournalSync(boolean journalSync) {
+        this.journalSync = journalSync;
+        return this;
+    }
+}
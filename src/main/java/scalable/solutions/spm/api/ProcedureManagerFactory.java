@@ -23,11 +23,16 @@ package scalable.solutions.spm.api;
 import scalable.solutions.spm.annotations.JDBC;
 import scalable.solutions.spm.exception.ProcedureManagerException;
 import scalable.solutions.spm.i18n.I18n;
+import scalable.solutions.spm.pool.ConnectionPool;
 
 import javax.sql.DataSource;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Factory class to create ProcedureManager instances.
@@ -37,6 +42,9 @@ import java.sql.SQLException;
  */
 public final class ProcedureManagerFactory {
 
+    /* Connection pools of @JDBC annotated classes. */
+    private static final Map<Class<?>, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+
     /**
      * Hidden constructor.
      */
@@ -59,14 +67,124 @@ public final class ProcedureManagerFactory {
      * @return ProcedureManager instance.
      */
     public static ProcedureManager createInstance(DataSource source) {
+        return createInstance(source, new ProcedureManagerConfig());
+    }
+
+    /**
+     * Create a new instance of ProcedureManager.
+     *
+     * @param source DataSource object.
+     * @param config Configuration options.
+     * @return ProcedureManager instance.
+     */
+    public static ProcedureManager createInstance(DataSource source, ProcedureManagerConfig config) {
 
         try {
-            return new ProcedureManagerImpl(source.getConnection());
+            return new ProcedureManagerImpl(source.getConnection(), config);
         } catch (SQLException e) {
             throw new ProcedureManagerException(e);
         }
     }
 
+    /**
+     * Create a thread safe instance of ProcedureManager. Calls borrow a
+     * connection from the DataSource and transactions are bound to the
+     * calling thread, so a single instance can be shared by all threads.
+     *
+     * @param source DataSource object, usually a connection pool.
+     * @return ProcedureManager instance.
+     */
+    public static ProcedureManager createConcurrentInstance(DataSource source) {
+        return createConcurrentInstance(source, new ProcedureManagerConfig());
+    }
+
+    /**
+     * Create a thread safe instance of ProcedureManager.
+     *
+     * @param source DataSource object, usually a connection pool.
+     * @param config Configuration options.
+     * @return ProcedureManager instance.
+     */
+    public static ProcedureManager createConcurrentInstance(DataSource source, ProcedureManagerConfig config) {
+        return new ConcurrentProcedureManagerImpl(source, config);
+    }
+
+    /**
+     * Create a thread safe instance of ProcedureManager routing the calls of
+     * read only procedures to the replicas and all other calls to the primary.
+     *
+     * @param primary  Primary DataSource.
+     * @param replicas Replica DataSources.
+     * @return ProcedureManager instance.
+     */
+    public static ProcedureManager createRoutingInstance(DataSource primary, List<DataSource> replicas) {
+        return createRoutingInstance(primary, replicas, new ProcedureManagerConfig());
+    }
+
+    /**
+     * Create a thread safe instance of ProcedureManager routing the calls of
+     * read only procedures to the replicas and all other calls to the primary.
+     *
+     * @param primary  Primary DataSource.
+     * @param replicas Replica DataSources.
+     * @param config   Configuration options.
+     * @return ProcedureManager instance.
+     */
+    public static ProcedureManager createRoutingInstance(DataSource primary, List<DataSource> replicas,
+                                                         ProcedureManagerConfig config) {
+        return new RoutingProcedureManagerImpl(primary, replicas, config);
+    }
+
+    /**
+     * Create a sharded manager over identically shaped shard databases,
+     * routing calls by the hash of their @ShardKey field.
+     *
+     * @param shards Shard DataSources, in shard index order.
+     * @return ShardedProcedureManager instance.
+     */
+    public static ShardedProcedureManager createShardedInstance(List<DataSource> shards) {
+        return createShardedInstance(shards, Partitioner.HASH, new ProcedureManagerConfig());
+    }
+
+    /**
+     * Create a sharded manager over identically shaped shard databases.
+     *
+     * @param shards      Shard DataSources, in shard index order.
+     * @param partitioner Maps the @ShardKey values to shard indexes.
+     * @param config      Configuration options of the shard managers.
+     * @return ShardedProcedureManager instance.
+     */
+    public static ShardedProcedureManager createShardedInstance(List<DataSource> shards, Partitioner partitioner,
+                                                                ProcedureManagerConfig config) {
+        return new ShardedProcedureManager(shards, partitioner, config);
+    }
+
+    /**
+     * Create a write behind queue of IN only procedure calls journaled in a
+     * memory mapped file. Calls left in the journal are replayed.
+     *
+     * @param source  DataSource object, usually a connection pool.
+     * @param journal Journal file.
+     * @return WriteBehindQueue instance.
+     */
+    public static WriteBehindQueue createWriteBehindQueue(DataSource source, Path journal) {
+        return createWriteBehindQueue(source, journal, new ProcedureManagerConfig());
+    }
+
+    /**
+     * Create a write behind queue of IN only procedure calls journaled in a
+     * memory mapped file. Calls left in the journal are replayed.
+     *
+     * @param source  DataSource object, usually a connection pool.
+     * @param journal Journal file.
+     * @param config  Configuration options.
+     * @return WriteBehindQueue instance.
+     */
+    public static WriteBehindQueue createWriteBehindQueue(DataSource source, Path journal,
+                                                          ProcedureManagerConfig config) {
+        return new WriteBehindQueue(source, journal, config);
+    }
+
     /**
      * Create a new instance of ProcedureManager from a JDBC connection.
      *
@@ -78,23 +196,52 @@ public final class ProcedureManagerFactory {
         return new ProcedureManagerImpl(connection);
     }
 
+    /**
+     * Create a new instance of ProcedureManager from a JDBC connection.
+     *
+     * @param connection JDBC connection.
+     * @param config     Configuration options.
+     * @return ProcedureManager instance.
+     */
+    public static ProcedureManager createInstance(Connection connection, ProcedureManagerConfig config) {
+
+        return new ProcedureManagerImpl(connection, config);
+    }
+
     /**
      * Create a new instance of ProcedureManager from a @JDBC annotated class.
+     * The manager connection is borrowed from the connection pool of the class
+     * unless pooling is disabled, and returned when the manager is closed.
      *
      * @param jdbcClass @JDBC annotated class.
      * @return ProcedureManager instance.
      */
     public static ProcedureManager createInstance(Class<?> jdbcClass) {
+        return createInstance(jdbcClass, new ProcedureManagerConfig());
+    }
+
+    /**
+     * Create a new instance of ProcedureManager from a @JDBC annotated class.
+     *
+     * @param jdbcClass @JDBC annotated class.
+     * @param config    Configuration options.
+     * @return ProcedureManager instance.
+     */
+    public static ProcedureManager createInstance(Class<?> jdbcClass, ProcedureManagerConfig config) {
 
         if (jdbcClass.isAnnotationPresent(JDBC.class)) {
             try {
                 JDBC jdbc = jdbcClass.getAnnotation(JDBC.class);
+                if (jdbc.maxPoolSize() > 0) {
+                    return new ProcedureManagerImpl(getConnectionPool(jdbcClass).getConnection(), config);
+                }
+
                 Class.forName(jdbc.driver());
 
                 Connection connection = DriverManager.getConnection(jdbc.url(),
                         jdbc.username(), jdbc.password());
 
-                return new ProcedureManagerImpl(connection);
+                return new ProcedureManagerImpl(connection, config);
             } catch (ClassNotFoundException | SQLException e) {
                 throw new ProcedureManagerException(e);
             }
@@ -102,4 +249,66 @@ public final class ProcedureManagerFactory {
             throw new ProcedureManagerException(I18n.get("error.no.annotation", "@JDBC"));
         }
     }
+
+    /**
+     * Create a thread safe instance of ProcedureManager from a @JDBC annotated
+     * class. Calls borrow connections from the connection pool of the class,
+     * so the class MUST enable pooling with a positive maxPoolSize.
+     *
+     * @param jdbcClass @JDBC annotated class.
+     * @return ProcedureManager instance.
+     */
+    public static ProcedureManager createConcurrentInstance(Class<?> jdbcClass) {
+        return createConcurrentInstance(jdbcClass, new ProcedureManagerConfig());
+    }
+
+    /**
+     * Create a thread safe instance of ProcedureManager from a @JDBC annotated
+     * class. Calls borrow connections from the connection pool of the class.
+     *
+     * @param jdbcClass @JDBC annotated class.
+     * @param config    Configuration options.
+     * @return ProcedureManager instance.
+     */
+    public static ProcedureManager createConcurrentInstance(Class<?> jdbcClass, ProcedureManagerConfig config) {
+        return new ConcurrentProcedureManagerImpl(getConnectionPool(jdbcClass), config);
+    }
+
+    /**
+     * Get the connection pool of a @JDBC annotated class. The pool is created
+     * on first use and shared by all managers of the class.
+     *
+     * @param jdbcClass @JDBC annotated class.
+     * @return Connection pool.
+     */
+    public static ConnectionPool getConnectionPool(Class<?> jdbcClass) {
+
+        if (!jdbcClass.isAnnotationPresent(JDBC.class)) {
+            throw new ProcedureManagerException(I18n.get("error.no.annotation", "@JDBC"));
+        }
+
+        return POOLS.computeIfAbsent(jdbcClass, type -> new ConnectionPool(type.getAnnotation(JDBC.class)));
+    }
+
+    /**
+     * Find the @StoredProcedure classes of a package and its sub packages
+     * using the context class loader, for example to warm up a manager.
+     *
+     * @param packageName Package name.
+     * @return @StoredProcedure classes.
+     */
+    public static List<Class<?>> findStoredProcedures(String packageName) {
+
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return ClassScanner.scan(packageName,
+                loader != null ? loader : ProcedureManagerFactory.class.getClassLoader());
+    }
+
+    /**
+     * Close the connection pools of all @JDBC annotated classes.
+     */
+    public static void shutdown() {
+        POOLS.values().forEach(ConnectionPool::close);
+        POOLS.clear();
+    }
 }
@@ -20,35 +20,38 @@
  */
 package scalable.solutions.spm.api;
 
-import scalable.solutions.spm.annotations.StoredProcedureParameter;
 import scalable.solutions.spm.annotations.enums.TransactionOperation;
 import scalable.solutions.spm.exception.ProcedureManagerException;
 import scalable.solutions.spm.i18n.I18n;
 
-import java.lang.reflect.Field;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.List;
 
 /**
- * ProcedureManager and TransactionManager API.
+ * ProcedureManager and TransactionManager API bound to a single JDBC
+ * connection. Instances are not thread safe, asynchronous calls run one at
+ * a time.
  *
  * @author Marius Gligor
  * @version 6.0
  */
-class ProcedureManagerImpl implements ProcedureManager, TransactionManager {
-
-    /* Entity resolver instance. */
-    private final EntityResolver resolver = new EntityResolver();
+class ProcedureManagerImpl extends AbstractProcedureManager {
 
     /* The JDBC Connection object */
     private Connection connection;
 
+    /* Statement cache of the current connection, null if caching is disabled. */
+    private StatementCache statementCache;
+
+    /* true between begin() and end() on the current connection. */
+    private boolean transaction;
+
     /**
      * Default constructor.
      */
     ProcedureManagerImpl() {
+        this(null, new ProcedureManagerConfig());
     }
 
     /**
@@ -57,17 +60,19 @@ class ProcedureManagerImpl implements ProcedureManager, TransactionManager {
      * @param connection JDBC Connection object.
      */
     ProcedureManagerImpl(Connection connection) {
-        this.connection = connection;
+        this(connection, new ProcedureManagerConfig());
     }
 
     /**
-     * Library version.
+     * Construct a ProcedureManager instance using a JDBC Connection and
+     * configuration options.
      *
-     * @return see above.
+     * @param connection JDBC Connection object.
+     * @param config     Configuration options.
      */
-    @Override
-    public String version() {
-        return I18n.get("pojo.sp.version");
+    ProcedureManagerImpl(Connection connection, ProcedureManagerConfig config) {
+        super(new EntityResolver(), config, 1);
+        this.connection = connection;
     }
 
     /**
@@ -85,149 +90,131 @@ class ProcedureManagerImpl implements ProcedureManager, TransactionManager {
      */
     @Override
     public void close() {
+        closeResources();
         if (connection != null) {
             try {
+                closeStatementCache();
                 connection.close();
             } catch (SQLException e) {
                 throw new ProcedureManagerException(e);
             } finally {
                 connection = null;
+                transaction = false;
             }
         }
     }
 
     /**
-     * Get TransactionManager API.
+     * Close the cached statements of the current connection.
      *
-     * @return TransactionManager interface.
+     * @throws SQLException Database access error.
      */
-    @Override
-    public TransactionManager getTransactionManager() {
-        return this;
+    private void closeStatementCache() throws SQLException {
+        if (statementCache != null) {
+            try {
+                statementCache.close();
+            } finally {
+                statementCache = null;
+            }
+        }
     }
 
     /**
-     * Register the input/output parameters before the call.
+     * The manager connection is used by all calls.
      *
-     * @param statement CallableStatement object.
-     * @param pojo      Stored procedure entity.
-     * @param fields    List of fields.
-     * @throws SQLException           Database access error.
-     * @throws IllegalAccessException Reflection error.
+     * @return JDBC connection.
      */
-    private void bindInputParameters(CallableStatement statement, Object pojo,
-                                     List<Field> fields) throws SQLException, IllegalAccessException {
-
-        for (Field field : fields) {
-            StoredProcedureParameter param =
-                    field.getAnnotation(StoredProcedureParameter.class);
+    @Override
+    Connection acquire() {
 
-            switch (param.direction()) {
-                case IN:
-                    field.setAccessible(true);
-                    statement.setObject(param.index(), field.get(pojo));
-                    break;
-                case OUT:
-                    statement.registerOutParameter(param.index(), param.type());
-                    break;
-                case INOUT:
-                    field.setAccessible(true);
-                    statement.setObject(param.index(), field.get(pojo));
-                    statement.registerOutParameter(param.index(), param.type());
-                    break;
-                default:
-                    break;
-            }
+        // check database connection.
+        if (connection == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.connection"));
         }
+
+        return connection;
     }
 
     /**
-     * Register the output parameters after call.
+     * The manager connection stays open until the manager is closed.
      *
-     * @param statement CallableStatement object.
-     * @param pojo      Stored procedure entity.
-     * @param fields    List of fields.
-     * @throws SQLException           Database access error.
-     * @throws IllegalAccessException Reflection error.
+     * @param connection JDBC connection.
      */
-    private void bindOutputParameters(CallableStatement statement, Object pojo,
-                                      List<Field> fields) throws IllegalAccessException, SQLException {
-
-        for (Field field : fields) {
-            StoredProcedureParameter param = field.getAnnotation(StoredProcedureParameter.class);
-            switch (param.direction()) {
-                case OUT:
-                case INOUT:
-                    field.setAccessible(true);
-                    field.set(pojo, statement.getObject(param.index()));
-                    break;
-                default:
-                    break;
-            }
-        }
+    @Override
+    void release(Connection connection) {
     }
 
     /**
-     * Call the function or stored procedure.
+     * Prepare a call statement, reusing a cached statement when available.
      *
      * @param connection JDBC connection.
-     * @param pojo       Entity object.
-     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
-     * <code>false</code> if the first result is an update count or no result
+     * @param sql        Call statement SQL.
+     * @return Callable statement.
+     * @throws SQLException Database access error.
      */
     @Override
-    public boolean call(Connection connection, Object pojo) {
+    CallableStatement prepare(Connection connection, String sql) throws SQLException {
 
-        this.connection = connection;
-        return call(pojo);
+        if (config.getStatementCacheSize() == 0) {
+            return connection.prepareCall(sql);
+        }
+
+        if (statementCache == null || statementCache.getConnection() != connection) {
+            closeStatementCache();
+            statementCache = new StatementCache(connection, config.getStatementCacheSize());
+        }
+
+        return statementCache.prepare(sql);
     }
 
     /**
-     * Call a function or stored procedure.
+     * Release a call statement, returning it to the statement cache or closing it.
      *
-     * @param pojo POJO entity.
-     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
-     * <code>false</code> if the first result is an update count or no result
+     * @param connection JDBC connection.
+     * @param sql        Call statement SQL.
+     * @param statement  Callable statement.
+     * @param reusable   <code>false</code> if the call failed.
+     * @throws SQLException Database access error.
      */
     @Override
-    public boolean call(Object pojo) {
+    void release(Connection connection, String sql, CallableStatement statement,
+                 boolean reusable) throws SQLException {
 
-        // Null POJO entities are not allowed.
-        if (pojo == null) {
-            throw new ProcedureManagerException(I18n.get("error.no.entity"));
+        if (statementCache != null && statementCache.getConnection() == connection) {
+            statementCache.release(sql, statement, reusable);
+        } else {
+            statement.close();
         }
-
-        // check database connection.
-        if (connection == null) {
-            throw new ProcedureManagerException(I18n.get("error.no.connection"));
-        }
-
-        return execute(pojo);
     }
 
     /**
-     * Execute JDBC statement.
+     * Check if prepared call statements are kept for the next calls. Only
+     * the statement cache of the current connection is warmed up, a manager
+     * without a current connection has nothing to warm up.
      *
-     * @param pojo Stored procedure object.
-     * @return <code>true</code> success. <code>false</code> error.
+     * @return <code>true</code> if the statement cache is enabled and a connection is set.
      */
-    private boolean execute(Object pojo) {
-
-        boolean result;
+    @Override
+    boolean cachesStatements() {
+        return config.getStatementCacheSize() > 0 && connection != null;
+    }
 
-        // resolve entity
-        EntityResolver.Entity entity = resolver.resolve(pojo);
+    /**
+     * Call the function or stored procedure.
+     *
+     * @param connection JDBC connection.
+     * @param pojo       Entity object.
+     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
+     * <code>false</code> if the first result is an update count or no result
+     */
+    @Override
+    public boolean call(Connection connection, Object pojo) {
 
-        // call procedure
-        try (CallableStatement statement = connection.prepareCall(entity.sql)) {
-            bindInputParameters(statement, pojo, entity.fields);
-            result = statement.execute();
-            bindOutputParameters(statement, pojo, entity.fields);
-        } catch (SQLException | IllegalAccessException e) {
-            throw new ProcedureManagerException(e);
+        if (this.connection != connection) {
+            this.connection = connection;
+            transaction = false;
         }
-
-        return result;
+        return call(pojo);
     }
 
     /**
@@ -262,6 +249,34 @@ class ProcedureManagerImpl implements ProcedureManager, TransactionManager {
         processTransaction(TransactionOperation.STOP);
     }
 
+    /**
+     * A transaction is active between begin() and end() on the current
+     * connection, a connection given with auto-commit off is not a
+     * transaction started by the manager.
+     *
+     * @return <code>true</code> if calls run inside a transaction.
+     */
+    @Override
+    boolean isTransactionActive() {
+        if (connection == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.connection"));
+        }
+        return transaction;
+    }
+
+    /**
+     * Change the connection auto-commit mode. Drivers keep the mode locally,
+     * so the round trip of an unchanged mode is skipped.
+     *
+     * @param enabled Auto-commit mode.
+     * @throws SQLException Database access error.
+     */
+    private void setAutoCommit(boolean enabled) throws SQLException {
+        if (connection.getAutoCommit() != enabled) {
+            connection.setAutoCommit(enabled);
+        }
+    }
+
     /**
      * Process JDBC transaction.
      *
@@ -275,7 +290,8 @@ class ProcedureManagerImpl implements ProcedureManager, TransactionManager {
         try {
             switch (operation) {
                 case START:
-                    connection.setAutoCommit(false);
+                    setAutoCommit(false);
+                    transaction = true;
                     break;
                 case COMMIT:
                     connection.commit();
@@ -284,7 +300,8 @@ class ProcedureManagerImpl implements ProcedureManager, TransactionManager {
                     connection.rollback();
                     break;
                 default:
-                    connection.setAutoCommit(true);
+                    transaction = false;
+                    setAutoCommit(true);
                     break;
             }
         } catch (SQLException e) {
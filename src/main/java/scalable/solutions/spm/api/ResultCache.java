@@ -0,0 +1,400 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the results of @StoredProcedure(cacheable = true) calls,
+ * keyed by the procedure name, the POJO class and the IN parameter values.
+ * A hit copies the cached OUT parameter values into the POJO without a
+ * database call. Arrays, collections and dates are copied in and out of the
+ * cache, so callers modifying them do not change the cached results.
+ * <p>
+ * The cache is split in segments, each one a LRU map guarded by its own
+ * lock, so concurrent calls of different keys rarely contend. Results
+ * expire after the time to live of their procedure.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class ResultCache {
+
+    /* Maximum number of segments. */
+    private static final int SEGMENTS = 16;
+
+    /* Collection factories of the copies by collection class. */
+    private static final ClassValue<Supplier<Collection<Object>>> COLLECTIONS =
+            new ClassValue<Supplier<Collection<Object>>>() {
+                @Override
+                protected Supplier<Collection<Object>> computeValue(Class<?> type) {
+                    try {
+                        return ArrayMapper.collection(type);
+                    } catch (ProcedureManagerException e) {
+                        // unmodifiable and other collections without a public constructor.
+                        if (Set.class.isAssignableFrom(type)) {
+                            return LinkedHashSet::new;
+                        }
+                        return ArrayList::new;
+                    }
+                }
+            };
+
+    /* LRU segments. */
+    private final Segment[] segments;
+
+    /* Statistics counters. */
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Create a result cache.
+     *
+     * @param capacity Maximum number of cached results, <code>0</code> disables caching.
+     */
+    ResultCache(int capacity) {
+
+        int count = Math.min(SEGMENTS, capacity);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * Build the cache key of a call.
+     *
+     * @param entity Resolved entity.
+     * @param pojo   Stored procedure entity.
+     * @return Cache key, <code>null</code> if the procedure is not cacheable.
+     */
+    Key key(EntityResolver.Entity entity, Object pojo) {
+
+        if (!entity.cacheable || entity.streaming || segments.length == 0) {
+            return null;
+        }
+
+        return Key.of(entity.name, entity, pojo);
+    }
+
+    /**
+     * Copy the cached OUT values of a call into the POJO.
+     *
+     * @param key    Cache key.
+     * @param entity Resolved entity.
+     * @param pojo   Stored procedure entity.
+     * @return Cached call result or <code>null</code> on a miss.
+     */
+    Boolean load(Key key, EntityResolver.Entity entity, Object pojo) {
+
+        Result result = segment(key).get(key, System.nanoTime());
+        if (result == null) {
+            misses.increment();
+            return null;
+        }
+
+        for (int i = 0; i < result.values.length; i++) {
+            entity.out[i].set(pojo, copy(result.values[i]));
+        }
+
+        hits.increment();
+        return result.result;
+    }
+
+    /**
+     * Cache the OUT values of a completed call.
+     *
+     * @param key    Cache key.
+     * @param entity Resolved entity.
+     * @param pojo   Stored procedure entity.
+     * @param result Call result.
+     */
+    void store(Key key, EntityResolver.Entity entity, Object pojo, boolean result) {
+
+        Object[] values = new Object[entity.out.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = copy(entity.out[i].get(pojo));
+        }
+
+        long expires = entity.ttl > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(entity.ttl) : 0;
+        segment(key).put(key, new Result(result, values, expires));
+    }
+
+    /**
+     * Remove the cached results of a stored procedure, for example after
+     * the reference data it reads has been changed.
+     *
+     * @param name Stored procedure name.
+     */
+    public void invalidate(String name) {
+        for (Segment segment : segments) {
+            segment.removeIf(name);
+        }
+    }
+
+    /**
+     * Remove all the cached results.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Number of cached results.
+     *
+     * @return see above.
+     */
+    public int size() {
+
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Statistics snapshot.
+     *
+     * @return Hits, misses, evictions, expirations and size.
+     */
+    public ResultCacheStatistics getStatistics() {
+        return new ResultCacheStatistics(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size());
+    }
+
+    /**
+     * Copy a mutable parameter value: arrays and collections, element by
+     * element, and dates. Other values are returned as they are.
+     *
+     * @param value Parameter value.
+     * @return Value copy.
+     */
+    @SuppressWarnings("unchecked")
+    static Object copy(Object value) {
+
+        if (value instanceof Object[]) {
+            Object[] copy = ((Object[]) value).clone();
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = copy(copy[i]);
+            }
+            return copy;
+        }
+
+        if (value instanceof Collection) {
+            Collection<Object> copy = value.getClass() == TreeSet.class
+                    ? new TreeSet<>(((TreeSet<Object>) value).comparator())
+                    : COLLECTIONS.get(value.getClass()).get();
+            for (Object element : (Collection<?>) value) {
+                copy.add(copy(element));
+            }
+            return copy;
+        }
+
+        if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+
+        if (value != null && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return copy;
+        }
+
+        return value;
+    }
+
+    /**
+     * Segment of a key.
+     *
+     * @param key Cache key.
+     * @return LRU segment.
+     */
+    private Segment segment(Key key) {
+        int hash = key.hash ^ (key.hash >>> 16);
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    /**
+     * Cache key: procedure name, POJO class and IN parameter values.
+     * Also identifies the in flight calls of a single flight procedure.
+     */
+    static final class Key {
+
+        /* Stored procedure name. */
+        final String name;
+
+        /* POJO class, the OUT values of a name may be bound to different classes. */
+        private final Class<?> type;
+
+        /* IN parameter values. */
+        private final Object[] values;
+
+        /* Precomputed hash code. */
+        private final int hash;
+
+        Key(String name, Class<?> type, Object[] values) {
+            this.name = name;
+            this.type = type;
+            this.values = values;
+            this.hash = 31 * (31 * name.hashCode() + type.hashCode()) + Arrays.deepHashCode(values);
+        }
+
+        /**
+         * Key of a call: a name, the POJO class and the IN parameter values
+         * of the POJO, arrays, collections and dates copied.
+         *
+         * @param name   Procedure name or call statement.
+         * @param entity Resolved entity.
+         * @param pojo   Stored procedure entity.
+         * @return Call key.
+         */
+        static Key of(String name, EntityResolver.Entity entity, Object pojo) {
+
+            Object[] values = new Object[entity.in.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = copy(entity.in[i].get(pojo));
+            }
+
+            return new Key(name, pojo.getClass(), values);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) other;
+            return hash == key.hash && name.equals(key.name) && type == key.type
+                    && Arrays.deepEquals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Cached call result and OUT parameter values.
+     */
+    private static final class Result {
+
+        /* Call result. */
+        final boolean result;
+
+        /* OUT parameter values. */
+        final Object[] values;
+
+        /* Expiration time in nanoseconds, 0 if the result does not expire. */
+        final long expires;
+
+        Result(boolean result, Object[] values, long expires) {
+            this.result = result;
+            this.values = values;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * LRU segment guarded by its own lock.
+     */
+    private final class Segment {
+
+        /* Results in access order. */
+        private final LinkedHashMap<Key, Result> results;
+
+        Segment(int capacity) {
+            this.results = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Result get(Key key, long now) {
+
+            Result result = results.get(key);
+            if (result == null) {
+                return null;
+            }
+
+            if (result.expires != 0 && now - result.expires >= 0) {
+                results.remove(key);
+                expirations.increment();
+                return null;
+            }
+
+            return result;
+        }
+
+        synchronized void put(Key key, Result result) {
+            results.put(key, result);
+        }
+
+        synchronized void removeIf(String name) {
+            Iterator<Key> keys = results.keySet().iterator();
+            while (keys.hasNext()) {
+                if (keys.next().name.equals(name)) {
+                    keys.remove();
+                }
+            }
+        }
+
+        synchronized void clear() {
+            results.clear();
+        }
+
+        synchronized int size() {
+            return results.size();
+        }
+    }
+}
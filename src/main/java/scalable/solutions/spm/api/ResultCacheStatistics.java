@@ -0,0 +1,128 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+/**
+ * Result cache statistics snapshot.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class ResultCacheStatistics {
+
+    /* Calls answered from the cache. */
+    private final long hits;
+
+    /* Calls of cacheable procedures sent to the database. */
+    private final long misses;
+
+    /* Results evicted to respect the cache size. */
+    private final long evictions;
+
+    /* Results expired after their time to live. */
+    private final long expirations;
+
+    /* Number of cached results. */
+    private final int size;
+
+    /**
+     * Construct a statistics snapshot.
+     *
+     * @param hits        Cache hits.
+     * @param misses      Cache misses.
+     * @param evictions   Evicted results.
+     * @param expirations Expired results.
+     * @param size        Cached results.
+     */
+    ResultCacheStatistics(long hits, long misses, long evictions, long expirations, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.size = size;
+    }
+
+    /**
+     * Calls answered from the cache.
+     *
+     * @return see above.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Calls of cacheable procedures sent to the database.
+     *
+     * @return see above.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Results evicted to respect the cache size.
+     *
+     * @return see above.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Results expired after their time to live.
+     *
+     * @return see above.
+     */
+    public long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * Number of cached results.
+     *
+     * @return see above.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Ratio of the calls answered from the cache.
+     *
+     * @return Hit ratio between 0 and 1, <code>0</code> before the first call.
+     */
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Statistics summary.
+     *
+     * @return see above.
+     */
+    @Override
+    public String toString() {
+        return "ResultCache{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", expirations=" + expirations + ", size=" + size + '}';
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Lazy spliterator over a result set. Each advance fetches and maps a
+ * single row, rows are never materialized in memory.
+ *
+ * @param <T> Row POJO type.
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+    /* Result set. */
+    private final ResultSet resultSet;
+
+    /* Row mapper. */
+    private final RowMapper<T> mapper;
+
+    /* Column indexes of the mapped fields. */
+    private final int[] columns;
+
+    /* All rows consumed. */
+    private boolean exhausted;
+
+    /**
+     * Create a spliterator over a result set.
+     *
+     * @param resultSet Result set.
+     * @param mapper    Row mapper.
+     * @throws SQLException Unknown column label.
+     */
+    ResultSetSpliterator(ResultSet resultSet, RowMapper<T> mapper) throws SQLException {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.resultSet = resultSet;
+        this.mapper = mapper;
+        this.columns = mapper.columns(resultSet);
+    }
+
+    /**
+     * Fetch and map the next row.
+     *
+     * @param action Row consumer.
+     * @return <code>false</code> when there are no more rows.
+     */
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+
+        if (exhausted) {
+            return false;
+        }
+
+        try {
+            if (!resultSet.next()) {
+                exhausted = true;
+                return false;
+            }
+            action.accept(mapper.map(resultSet, columns));
+            return true;
+        } catch (SQLException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * All rows consumed.
+     *
+     * @return see above.
+     */
+    boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Result set.
+     *
+     * @return see above.
+     */
+    ResultSet getResultSet() {
+        return resultSet;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.annotations.enums.ReplicaSelection;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.i18n.I18n;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread safe ProcedureManager routing calls across a primary database and
+ * its read replicas. Calls of read only procedures borrow a connection from
+ * a healthy replica, all other calls, batches and transactions use the
+ * primary. A thread with an active transaction keeps all its calls on the
+ * primary, so a transaction always reads its own writes.
+ * <p>
+ * A replica failing to provide a connection or failing calls with connection
+ * errors for a number of consecutive times is ejected and left out of
+ * rotation for the configured ejection time. The first failure after the
+ * ejection time ejects the replica again, a successful call restores it.
+ * Read only calls run on the primary while no replica is healthy.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+class RoutingProcedureManagerImpl extends ConcurrentProcedureManagerImpl {
+
+    /* Read replicas. */
+    private final Replica[] replicas;
+
+    /* Replicas of the borrowed replica connections. */
+    private final Map<Connection, Replica> borrowed = new ConcurrentHashMap<>();
+
+    /* Round robin position. */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /* Replica selection policy. */
+    private final ReplicaSelection selection;
+
+    /* Consecutive failures ejecting a replica. */
+    private final int failureThreshold;
+
+    /* Ejection time in nanoseconds. */
+    private final long ejectionTime;
+
+    /**
+     * Construct a routing ProcedureManager instance.
+     *
+     * @param primary  Primary DataSource.
+     * @param replicas Replica DataSources.
+     * @param config   Configuration options.
+     */
+    RoutingProcedureManagerImpl(DataSource primary, List<DataSource> replicas, ProcedureManagerConfig config) {
+        super(primary, config);
+        this.replicas = replicas.stream().map(Replica::new).toArray(Replica[]::new);
+        this.selection = config.getReplicaSelection();
+        this.failureThreshold = config.getReplicaFailureThreshold();
+        this.ejectionTime = TimeUnit.MILLISECONDS.toNanos(config.getReplicaEjectionTime());
+    }
+
+    /**
+     * Borrow a replica connection for read only calls outside a transaction,
+     * otherwise a primary connection.
+     *
+     * @param entity Resolved entity.
+     * @return JDBC connection.
+     */
+    @Override
+    Connection acquire(EntityResolver.Entity entity) {
+
+        if (!entity.readOnly || replicas.length == 0 || isTransactionActive()) {
+            return acquire();
+        }
+
+        // try each healthy replica at most once before falling back to the primary
+        for (int attempt = 0; attempt < replicas.length; attempt++) {
+            Replica replica = select();
+            if (replica == null) {
+                break;
+            }
+
+            replica.inFlight.incrementAndGet();
+            try {
+                Connection connection = replica.source.getConnection();
+                borrowed.put(connection, replica);
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                replica.inFlight.decrementAndGet();
+                failed(replica);
+            }
+        }
+
+        return acquire();
+    }
+
+    /**
+     * Select a healthy replica.
+     *
+     * @return Replica or <code>null</code> if all replicas are ejected.
+     */
+    private Replica select() {
+
+        long now = System.nanoTime();
+        int start = Math.floorMod(next.getAndIncrement(), replicas.length);
+        Replica selected = null;
+        for (int i = 0; i < replicas.length; i++) {
+            Replica replica = replicas[(start + i) % replicas.length];
+            if (!replica.isHealthy(now)) {
+                continue;
+            }
+            if (selection == ReplicaSelection.ROUND_ROBIN) {
+                return replica;
+            }
+            if (selected == null || replica.inFlight.get() < selected.inFlight.get()) {
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Return a borrowed connection.
+     *
+     * @param connection JDBC connection.
+     */
+    @Override
+    void release(Connection connection) {
+
+        Replica replica = borrowed.remove(connection);
+        if (replica != null) {
+            replica.inFlight.decrementAndGet();
+        }
+        super.release(connection);
+    }
+
+    /**
+     * Return a borrowed connection and update the health of its replica.
+     *
+     * @param connection JDBC connection.
+     * @param failure    Call error or <code>null</code> if the call succeeded.
+     */
+    @Override
+    void release(Connection connection, Throwable failure) {
+
+        Replica replica = borrowed.get(connection);
+        if (replica != null) {
+            if (failure == null) {
+                replica.failures.set(0);
+            } else if (TransientErrors.isConnectionFailure(failure)) {
+                failed(replica);
+            }
+        }
+        release(connection);
+    }
+
+    /**
+     * Record a replica failure, ejecting the replica once the failure
+     * threshold is reached.
+     *
+     * @param replica Failed replica.
+     */
+    private void failed(Replica replica) {
+        if (replica.failures.incrementAndGet() >= failureThreshold) {
+            replica.ejectedUntil = System.nanoTime() + ejectionTime;
+        }
+    }
+
+    /**
+     * Health state of a read replica.
+     */
+    private final class Replica {
+
+        /* Replica connections source. */
+        final DataSource source;
+
+        /* Calls running on the replica. */
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        /* Consecutive connection failures. */
+        final AtomicInteger failures = new AtomicInteger();
+
+        /* System.nanoTime() until the replica is ejected. */
+        volatile long ejectedUntil;
+
+        /**
+         * Construct a replica.
+         *
+         * @param source Replica DataSource.
+         */
+        Replica(DataSource source) {
+            if (source == null) {
+                throw new ProcedureManagerException(I18n.get("error.invalid.option", "replica", null));
+            }
+            this.source = source;
+        }
+
+        /**
+         * Check if the replica is in rotation.
+         *
+         * @param now Current System.nanoTime().
+         * @return <code>true</code> if the replica is not ejected.
+         */
+        boolean isHealthy(long now) {
+            return failures.get() < failureThreshold || now - ejectedUntil >= 0;
+        }
+    }
+}
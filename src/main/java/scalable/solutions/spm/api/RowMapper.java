@@ -0,0 +1,145 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.annotations.ResultSetColumn;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.i18n.I18n;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Precompiled mapper of result set rows to @ResultSetColumn annotated row POJOs.
+ *
+ * @param <T> Row POJO type.
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class RowMapper<T> {
+
+    /* Erased setter type: (Object, Object)void */
+    private static final MethodType SETTER_TYPE =
+            MethodType.methodType(void.class, Object.class, Object.class);
+
+    /* Row POJO type. */
+    private final Class<T> type;
+
+    /* No arguments constructor: ()Object */
+    private final MethodHandle constructor;
+
+    /* Column labels, null when mapped by index. */
+    private final String[] labels;
+
+    /* Column indexes, 0 when mapped by label. */
+    private final int[] indexes;
+
+    /* Field setters. */
+    private final MethodHandle[] setters;
+
+    /**
+     * Compile a row mapper for a row POJO class.
+     *
+     * @param type Row POJO class.
+     */
+    RowMapper(Class<T> type) {
+
+        Field[] fields = Arrays.stream(type.getDeclaredFields())
+                .filter(field -> field.isAnnotationPresent(ResultSetColumn.class))
+                .toArray(Field[]::new);
+
+        if (fields.length == 0) {
+            throw new ProcedureManagerException(I18n.get("error.no.annotation", "@ResultSetColumn"));
+        }
+
+        this.type = type;
+        this.labels = new String[fields.length];
+        this.indexes = new int[fields.length];
+        this.setters = new MethodHandle[fields.length];
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Constructor<T> init = type.getDeclaredConstructor();
+            init.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(init)
+                    .asType(MethodType.methodType(Object.class));
+
+            for (int i = 0; i < fields.length; i++) {
+                ResultSetColumn column = fields[i].getAnnotation(ResultSetColumn.class);
+                indexes[i] = column.index();
+                if (column.index() == 0) {
+                    labels[i] = column.name().isEmpty() ? fields[i].getName() : column.name();
+                }
+                fields[i].setAccessible(true);
+                setters[i] = lookup.unreflectSetter(fields[i]).asType(SETTER_TYPE);
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Resolve the column indexes of a result set, once per result set.
+     *
+     * @param resultSet Result set.
+     * @return Column index of each mapped field.
+     * @throws SQLException Unknown column label.
+     */
+    int[] columns(ResultSet resultSet) throws SQLException {
+
+        int[] columns = indexes.clone();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] == 0) {
+                columns[i] = resultSet.findColumn(labels[i]);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Map the current row.
+     *
+     * @param resultSet Result set positioned on a row.
+     * @param columns   Column indexes returned by {@link #columns(ResultSet)}.
+     * @return Row POJO.
+     * @throws SQLException Database access error.
+     */
+    T map(ResultSet resultSet, int[] columns) throws SQLException {
+
+        try {
+            Object row = (Object) constructor.invokeExact();
+            for (int i = 0; i < columns.length; i++) {
+                setters[i].invokeExact(row, resultSet.getObject(columns[i]));
+            }
+            return type.cast(row);
+        } catch (SQLException | ProcedureManagerException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+}
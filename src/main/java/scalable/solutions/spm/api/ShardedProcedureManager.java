@@ -0,0 +1,399 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.annotations.ShardKey;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.i18n.I18n;
+
+import javax.sql.DataSource;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Thread safe manager of identically shaped shard databases. A call is
+ * routed to the shard selected by the partitioner from the value of the
+ * POJO field annotated with {@link ShardKey}. Cross shard operations run on
+ * all shards in parallel, so their latency is close to the latency of the
+ * slowest shard instead of the sum of all shards.
+ * <p>
+ * Each shard is served by a concurrent ProcedureManager, all sharing the
+ * same resolved entities. Transactions are local to a shard, use the
+ * TransactionManager of {@link #shard(int)}. The metrics of a shard are
+ * exposed under the configured JMX name followed by "-" and the shard index.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class ShardedProcedureManager {
+
+    /* Shard managers. */
+    private final AbstractProcedureManager[] shards;
+
+    /* Shard key partitioner. */
+    private final Partitioner partitioner;
+
+    /* Erased getter type: (Object)Object */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /* Shard key field getters by POJO class. */
+    private final Map<Class<?>, MethodHandle> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Construct a sharded manager.
+     *
+     * @param sources     Shard DataSources, in shard index order.
+     * @param partitioner Shard key partitioner.
+     * @param config      Configuration options of the shard managers.
+     */
+    ShardedProcedureManager(List<DataSource> sources, Partitioner partitioner, ProcedureManagerConfig config) {
+
+        if (sources.isEmpty()) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option", "shards", sources));
+        }
+
+        EntityResolver resolver = new EntityResolver();
+        String jmxName = config.getJmxName();
+        List<AbstractProcedureManager> created = new ArrayList<>(sources.size());
+        try {
+            for (DataSource source : sources) {
+                created.add(new ConcurrentProcedureManagerImpl(source, resolver, config,
+                        jmxName != null ? jmxName + "-" + created.size() : null));
+            }
+        } catch (RuntimeException e) {
+            try {
+                close(created);
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        this.shards = created.toArray(new AbstractProcedureManager[0]);
+        this.partitioner = partitioner != null ? partitioner : Partitioner.HASH;
+    }
+
+    /**
+     * Number of shards.
+     *
+     * @return Shard count.
+     */
+    public int size() {
+        return shards.length;
+    }
+
+    /**
+     * Get the manager of a shard.
+     *
+     * @param index Shard index.
+     * @return Shard ProcedureManager.
+     */
+    public ProcedureManager shard(int index) {
+        return shards[index];
+    }
+
+    /**
+     * Get the manager of the shard owning a POJO.
+     *
+     * @param pojo @StoredProcedure POJO with a @ShardKey field.
+     * @return Shard ProcedureManager.
+     */
+    public ProcedureManager shardOf(Object pojo) {
+
+        // Null POJO entities are not allowed.
+        if (pojo == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.entity"));
+        }
+
+        Object key;
+        Class<?> type = pojo.getClass();
+        MethodHandle getter = keys.computeIfAbsent(type, ShardedProcedureManager::getShardKey);
+        try {
+            key = (Object) getter.invokeExact(pojo);
+        } catch (Throwable e) {
+            throw new ProcedureManagerException(e);
+        }
+
+        if (key == null) {
+            throw new ProcedureManagerException(I18n.get("error.shard.key", type.getName()));
+        }
+
+        int index = partitioner.partition(key, shards.length);
+        if (index < 0 || index >= shards.length) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option", "shard", index));
+        }
+        return shards[index];
+    }
+
+    /**
+     * Compile the getter of the @ShardKey field of a POJO class.
+     *
+     * @param type POJO class.
+     * @return Shard key getter: (Object)Object
+     */
+    private static MethodHandle getShardKey(Class<?> type) {
+
+        Field[] fields = Arrays.stream(type.getDeclaredFields())
+                .filter(field -> field.isAnnotationPresent(ShardKey.class))
+                .toArray(Field[]::new);
+        if (fields.length != 1) {
+            throw new ProcedureManagerException(I18n.get("error.shard.key", type.getName()));
+        }
+
+        try {
+            fields[0].setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(fields[0]).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Call a function or stored procedure on the shard of the POJO.
+     *
+     * @param pojo @StoredProcedure POJO with a @ShardKey field.
+     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
+     * <code>false</code> if the first result is an update count or no result
+     */
+    public boolean call(Object pojo) {
+        return shardOf(pojo).call(pojo);
+    }
+
+    /**
+     * Call a function or stored procedure asynchronously on the shard of the POJO.
+     *
+     * @param pojo @StoredProcedure POJO with a @ShardKey field.
+     * @param <T>  Entity type.
+     * @return Future completed with the POJO once its OUT parameters are set.
+     */
+    public <T> CompletableFuture<T> callAsync(T pojo) {
+        return shardOf(pojo).callAsync(pojo);
+    }
+
+    /**
+     * Stream the rows of a call on the shard of the POJO.
+     *
+     * @param pojo    @StoredProcedure POJO with a @ShardKey field.
+     * @param rowType Row POJO class.
+     * @param <T>     Row type.
+     * @return Lazy stream of rows, MUST be closed.
+     */
+    public <T> Stream<T> stream(Object pojo, Class<T> rowType) {
+        return shardOf(pojo).stream(pojo, rowType);
+    }
+
+    /**
+     * Call a function or stored procedure on all shards in parallel.
+     *
+     * @param factory Creates the POJO of a shard from the shard index.
+     * @param <T>     Entity type.
+     * @return Called POJOs in shard index order.
+     */
+    public <T> List<T> callAll(IntFunction<T> factory) {
+        return callAll(factory, Collectors.toList());
+    }
+
+    /**
+     * Call a function or stored procedure on all shards in parallel and
+     * merge the called POJOs, for example to sum their OUT parameters.
+     *
+     * @param factory   Creates the POJO of a shard from the shard index.
+     * @param collector Merges the called POJOs in shard index order.
+     * @param <T>       Entity type.
+     * @param <A>       Collector accumulation type.
+     * @param <R>       Merged result type.
+     * @return Merged result.
+     */
+    public <T, A, R> R callAll(IntFunction<T> factory, Collector<? super T, A, R> collector) {
+
+        List<T> pojos = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            pojos.add(factory.apply(i));
+        }
+
+        return scatter(index -> shards[index].callAsync(pojos.get(index)), null).stream().collect(collector);
+    }
+
+    /**
+     * Run a result set returning call on all shards in parallel and
+     * concatenate the rows in shard index order. The calls run eagerly,
+     * the rows are fetched on demand. Closing the stream closes the rows
+     * and releases the connections of all shards.
+     *
+     * @param factory Creates the POJO of a shard from the shard index.
+     * @param rowType Row POJO class.
+     * @param <T>     Row type.
+     * @return Lazy stream of the rows of all shards, MUST be closed.
+     */
+    public <T> Stream<T> streamAll(IntFunction<?> factory, Class<T> rowType) {
+
+        List<Object> pojos = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            pojos.add(factory.apply(i));
+        }
+
+        List<Stream<T>> streams = scatter(index -> shards[index].submit(
+                () -> shards[index].stream(pojos.get(index), rowType)), Stream::close);
+
+        return streams.stream().flatMap(Function.identity()).onClose(() -> close(streams));
+    }
+
+    /**
+     * Start a task on every shard and wait for all of them. When a task
+     * fails the results of the successful tasks are discarded and the first
+     * failure is thrown with the others suppressed.
+     *
+     * @param task    Starts the task of a shard index.
+     * @param discard Releases the result of a successful task, may be <code>null</code>.
+     * @param <T>     Task result type.
+     * @return Task results in shard index order.
+     */
+    private <T> List<T> scatter(IntFunction<CompletableFuture<T>> task, Consumer<T> discard) {
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.length);
+        RuntimeException failure = null;
+        for (int i = 0; i < shards.length && failure == null; i++) {
+            try {
+                futures.add(task.apply(i));
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                RuntimeException error = unwrap(e);
+                if (failure == null) {
+                    failure = error;
+                } else {
+                    failure.addSuppressed(error);
+                }
+            }
+        }
+
+        if (failure != null) {
+            if (discard != null) {
+                for (T result : results) {
+                    try {
+                        discard.accept(result);
+                    } catch (RuntimeException e) {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Get the error of a failed shard task.
+     *
+     * @param e Completion error.
+     * @return Task error.
+     */
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new ProcedureManagerException(cause);
+    }
+
+    /**
+     * Close the shard streams, closing all of them even if some fail.
+     *
+     * @param streams Shard streams.
+     */
+    private static void close(List<? extends Stream<?>> streams) {
+
+        RuntimeException failure = null;
+        for (Stream<?> stream : streams) {
+            try {
+                stream.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Close the shard managers, closing all of them even if some fail. The
+     * DataSources are owned by the caller.
+     */
+    public void close() {
+        close(Arrays.asList(shards));
+    }
+
+    /**
+     * Close shard managers, closing all of them even if some fail.
+     *
+     * @param managers Shard managers.
+     */
+    private static void close(Collection<AbstractProcedureManager> managers) {
+
+        RuntimeException failure = null;
+        for (AbstractProcedureManager manager : managers) {
+            try {
+                manager.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.exception.ProcedureTimeoutException;
+import scalable.solutions.spm.i18n.I18n;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Collapses concurrent identical calls of single flight procedures. The
+ * first caller of a call statement, POJO class and IN parameter values
+ * executes the call, the callers arriving while it is in flight wait for it
+ * and receive a copy of its OUT parameter values, or its failure, unless
+ * their own deadline expires first. Nothing is kept after the call completes.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class SingleFlight {
+
+    /* Maximum time between two checks of a waiting caller deadline, in milliseconds. */
+    private static final long POLL = 100;
+
+    /* Calls in flight by call statement, POJO class and IN parameter values. */
+    private final ConcurrentHashMap<ResultCache.Key, CompletableFuture<Outcome>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Execute a call or wait for the identical call in flight.
+     *
+     * @param entity   Resolved entity.
+     * @param pojo     Stored procedure entity.
+     * @param deadline Caller deadline or <code>null</code>.
+     * @param call     Database call, executed by the first caller only.
+     * @return <code>true</code> if the first result is a <code>ResultSet</code> object;
+     * <code>false</code> if the first result is an update count or no result
+     */
+    boolean call(EntityResolver.Entity entity, Object pojo, Deadline deadline, BooleanSupplier call) {
+
+        ResultCache.Key key = ResultCache.Key.of(entity.sql, entity, pojo);
+        CompletableFuture<Outcome> flight = new CompletableFuture<>();
+        CompletableFuture<Outcome> leader = flights.putIfAbsent(key, flight);
+        if (leader != null) {
+            return await(leader, entity, deadline).copy(entity, pojo);
+        }
+
+        try {
+            boolean result = call.getAsBoolean();
+            flight.complete(new Outcome(result, entity, pojo));
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Wait for a call in flight, until the caller deadline expires or is
+     * cancelled.
+     *
+     * @param flight   Call in flight.
+     * @param entity   Resolved entity.
+     * @param deadline Caller deadline or <code>null</code>.
+     * @return Call outcome.
+     */
+    private static Outcome await(CompletableFuture<Outcome> flight, EntityResolver.Entity entity,
+                                 Deadline deadline) {
+
+        try {
+            if (deadline == null) {
+                return flight.get();
+            }
+            while (true) {
+                if (deadline.isCancelled()) {
+                    throw new ProcedureManagerException(I18n.get("error.call.cancelled", entity.name));
+                }
+                long remaining = deadline.remaining(TimeUnit.MILLISECONDS);
+                if (remaining <= 0) {
+                    throw new ProcedureTimeoutException(I18n.get("error.call.timeout", entity.name));
+                }
+                try {
+                    return flight.get(Math.min(remaining, POLL), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // check the deadline again
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcedureManagerException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ProcedureManagerException(cause);
+        }
+    }
+
+    /**
+     * Result and OUT parameter values of a completed call.
+     */
+    private static final class Outcome {
+
+        /* Call result. */
+        private final boolean result;
+
+        /* OUT parameter values. */
+        private final Object[] values;
+
+        Outcome(boolean result, EntityResolver.Entity entity, Object pojo) {
+            this.result = result;
+            this.values = new Object[entity.out.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = entity.out[i].get(pojo);
+            }
+        }
+
+        /**
+         * Copy the OUT parameter values into a waiting caller POJO.
+         *
+         * @param entity Resolved entity.
+         * @param pojo   Stored procedure entity.
+         * @return Call result.
+         */
+        boolean copy(EntityResolver.Entity entity, Object pojo) {
+            for (int i = 0; i < values.length; i++) {
+                entity.out[i].set(pojo, ResultCache.copy(values[i]));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Built-in SQL dialects.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public enum StandardDialect implements Dialect {
+
+    /* JDBC escape syntax, understood by all drivers. */
+    GENERIC,
+
+    /* Oracle anonymous PL/SQL blocks and Oracle cursor type. */
+    ORACLE {
+        @Override
+        public String call(String name, boolean procedure, int parametersCount) {
+            StringBuilder buffer = new StringBuilder("BEGIN ");
+            if (!procedure) {
+                buffer.append("? := ");
+                parametersCount--;
+            }
+            return parameters(buffer.append(name), parametersCount).append("; END;").toString();
+        }
+
+        @Override
+        public int outParameterType(int type) {
+            return type == Types.REF_CURSOR ? ORACLE_CURSOR : type;
+        }
+
+        @Override
+        public String block(List<String> calls) {
+            StringBuilder buffer = new StringBuilder("BEGIN ");
+            for (String call : calls) {
+                // keep the statement between BEGIN and END; of each call block
+                buffer.append(call, "BEGIN ".length(), call.length() - "END;".length());
+            }
+            return buffer.append("END;").toString();
+        }
+    },
+
+    /*
+     * PostgreSQL CALL statement for procedures. Functions keep the escape
+     * syntax, translated by the driver into a SELECT of the function.
+     */
+    POSTGRESQL {
+        @Override
+        public String call(String name, boolean procedure, int parametersCount) {
+            return procedure ? parameters(new StringBuilder("CALL ").append(name), parametersCount).toString()
+                    : CallStatement.escape(name, false, parametersCount);
+        }
+
+        @Override
+        public int outParameterType(int type) {
+            return type == Types.REF_CURSOR ? Types.OTHER : type;
+        }
+    },
+
+    /* H2 native CALL statement. */
+    H2 {
+        @Override
+        public String call(String name, boolean procedure, int parametersCount) {
+            StringBuilder buffer = new StringBuilder();
+            if (!procedure) {
+                buffer.append("? = ");
+                parametersCount--;
+            }
+            return parameters(buffer.append("CALL ").append(name), parametersCount).toString();
+        }
+    };
+
+    /* oracle.jdbc.OracleTypes.CURSOR */
+    private static final int ORACLE_CURSOR = -10;
+
+    /**
+     * Append the parameter placeholders of a call.
+     *
+     * @param buffer          Call statement.
+     * @param parametersCount Number of placeholders.
+     * @return The call statement buffer.
+     */
+    private static StringBuilder parameters(StringBuilder buffer, int parametersCount) {
+        buffer.append('(');
+        for (int i = 0; i < parametersCount; i++) {
+            buffer.append(i == 0 ? "?" : ", ?");
+        }
+        return buffer.append(')');
+    }
+
+    /**
+     * Detect the dialect of a database from its product name.
+     *
+     * @param connection JDBC connection.
+     * @return Built-in dialect, {@link #GENERIC} for unknown databases.
+     */
+    public static StandardDialect detect(Connection connection) {
+
+        try {
+            DatabaseMetaData metaData = connection.getMetaData();
+            return metaData != null ? of(metaData.getDatabaseProductName()) : GENERIC;
+        } catch (SQLException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Get the dialect of a database product name.
+     *
+     * @param productName Database product name from <code>DatabaseMetaData</code>.
+     * @return Built-in dialect, {@link #GENERIC} for unknown databases.
+     */
+    public static StandardDialect of(String productName) {
+
+        if (productName == null) {
+            return GENERIC;
+        } else if (productName.startsWith("Oracle")) {
+            return ORACLE;
+        } else if (productName.startsWith("PostgreSQL")) {
+            return POSTGRESQL;
+        } else if (productName.equals("H2")) {
+            return H2;
+        }
+        return GENERIC;
+    }
+}
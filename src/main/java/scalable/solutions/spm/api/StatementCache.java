@@ -0,0 +1,175 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Bounded LRU cache of <code>CallableStatement</code> objects of a single
+ * JDBC connection, keyed by the call statement SQL.
+ * <p>
+ * A statement is checked out of the cache while in use and returned with
+ * its parameters cleared, so a statement is never shared by two calls.
+ * Evicted statements are closed.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class StatementCache {
+
+    /* Cached statements connection. */
+    private final Connection connection;
+
+    /* Maximum number of cached statements. */
+    private final int capacity;
+
+    /* Idle statements in LRU order. */
+    private final LinkedHashMap<String, CallableStatement> statements;
+
+    /**
+     * Create a statement cache for a JDBC connection.
+     *
+     * @param connection JDBC connection.
+     * @param capacity   Maximum number of cached statements.
+     */
+    StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Cached statements connection.
+     *
+     * @return JDBC connection.
+     */
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Check out a cached statement or prepare a new one.
+     *
+     * @param sql Call statement SQL.
+     * @return Callable statement, owned by the caller until released.
+     * @throws SQLException Database access error.
+     */
+    CallableStatement prepare(String sql) throws SQLException {
+
+        CallableStatement statement;
+        synchronized (this) {
+            statement = statements.remove(sql);
+        }
+
+        if (statement != null && !statement.isClosed()) {
+            return statement;
+        }
+
+        return connection.prepareCall(sql);
+    }
+
+    /**
+     * Return a statement to the cache.
+     *
+     * @param sql       Call statement SQL.
+     * @param statement Callable statement.
+     * @param reusable  <code>false</code> if the statement failed and must be closed.
+     * @throws SQLException Database access error.
+     */
+    void release(String sql, CallableStatement statement, boolean reusable) throws SQLException {
+
+        if (reusable) {
+            try {
+                statement.clearParameters();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+
+        List<CallableStatement> evicted = new ArrayList<>(1);
+        if (reusable) {
+            synchronized (this) {
+                CallableStatement previous = statements.put(sql, statement);
+                if (previous != null) {
+                    // a concurrent checkout of the same SQL was returned first
+                    statements.put(sql, previous);
+                    evicted.add(statement);
+                } else if (statements.size() > capacity) {
+                    Iterator<CallableStatement> eldest = statements.values().iterator();
+                    evicted.add(eldest.next());
+                    eldest.remove();
+                }
+            }
+        } else {
+            evicted.add(statement);
+        }
+
+        closeAll(evicted);
+    }
+
+    /**
+     * Close all cached statements.
+     *
+     * @throws SQLException Database access error.
+     */
+    void close() throws SQLException {
+
+        List<CallableStatement> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<>(statements.values());
+            statements.clear();
+        }
+
+        closeAll(evicted);
+    }
+
+    /**
+     * Close statements, reporting the first error after all have been closed.
+     *
+     * @param evicted Statements to close.
+     * @throws SQLException Database access error.
+     */
+    private static void closeAll(List<CallableStatement> evicted) throws SQLException {
+
+        SQLException error = null;
+        for (CallableStatement statement : evicted) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+}
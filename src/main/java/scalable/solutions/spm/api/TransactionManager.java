@@ -39,4 +39,7 @@ public interface TransactionManager {
 
     /* Undo changes */
     void rollback();
+
+    /* Run a unit of work in a transaction, retried on transient errors, nested in a savepoint if a transaction is active */
+    <T> T inTransaction(TransactionCallback<T> callback);
 }
@@ -0,0 +1,130 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+
+/**
+ * Classify database errors worth retrying the whole transaction for:
+ * deadlocks, serialization failures and lost connections. The SQLState is
+ * checked first, Oracle error codes cover the deadlock and serialization
+ * failures reported with a generic SQLState.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class TransientErrors {
+
+    /* SQLState class of the transaction rollback errors, 40001 serialization failure, 40P01 deadlock. */
+    private static final String TRANSACTION_ROLLBACK = "40";
+
+    /* SQLState class of the connection errors, 08006 connection failure, 08003 connection does not exist. */
+    private static final String CONNECTION_EXCEPTION = "08";
+
+    /* Oracle ORA-00060 deadlock, reported with the 61000 SQLState. */
+    private static final int ORACLE_DEADLOCK = 60;
+
+    /* Oracle ORA-08177 serialization failure, reported with the 72000 SQLState. */
+    private static final int ORACLE_SERIALIZATION = 8177;
+
+    /**
+     * Hidden constructor.
+     */
+    private TransientErrors() {
+    }
+
+    /**
+     * Check if an error, its causes or its chained exceptions are transient.
+     *
+     * @param error Transaction error.
+     * @return <code>true</code> if the transaction can be retried.
+     */
+    static boolean isTransient(Throwable error) {
+
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                for (SQLException e = (SQLException) cause; e != null; e = e.getNextException()) {
+                    if (isTransient(e)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if an error, its causes or its chained exceptions report a broken
+     * or unreachable database connection.
+     *
+     * @param error Call error.
+     * @return <code>true</code> if the database of the call looks unhealthy.
+     */
+    static boolean isConnectionFailure(Throwable error) {
+
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                for (SQLException e = (SQLException) cause; e != null; e = e.getNextException()) {
+                    String state = e.getSQLState();
+                    if (e instanceof SQLRecoverableException || e instanceof SQLTransientConnectionException
+                            || e instanceof SQLNonTransientConnectionException
+                            || (state != null && state.startsWith(CONNECTION_EXCEPTION))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check a single database error.
+     *
+     * @param e Database error.
+     * @return <code>true</code> if the error is transient.
+     */
+    private static boolean isTransient(SQLException e) {
+
+        // statement timeouts are not retried, the next attempt would most likely time out again.
+        if (e instanceof SQLTimeoutException) {
+            return false;
+        }
+
+        if (e instanceof SQLTransactionRollbackException || e instanceof SQLTransientException
+                || e instanceof SQLRecoverableException) {
+            return true;
+        }
+
+        String state = e.getSQLState();
+        if (state != null && (state.startsWith(TRANSACTION_ROLLBACK) || state.startsWith(CONNECTION_EXCEPTION))) {
+            return true;
+        }
+
+        return ("61000".equals(state) && e.getErrorCode() == ORACLE_DEADLOCK)
+                || ("72000".equals(state) && e.getErrorCode() == ORACLE_SERIALIZATION);
+    }
+}
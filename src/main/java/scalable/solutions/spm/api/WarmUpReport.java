@@ -0,0 +1,125 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a ProcedureManager warm up.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class WarmUpReport {
+
+    /* Warm up duration in milliseconds. */
+    private final long duration;
+
+    /* Resolved classes. */
+    private final List<Class<?>> resolved;
+
+    /* Number of prepared call statements. */
+    private final int prepared;
+
+    /* Statement preparation requested but skipped, the manager has no statement cache or connection. */
+    private final boolean preparationSkipped;
+
+    /* Classes that failed to resolve or prepare, and the errors. */
+    private final Map<Class<?>, Throwable> failures;
+
+    /**
+     * Construct a warm up report.
+     *
+     * @param duration Warm up duration in milliseconds.
+     * @param resolved Resolved classes.
+     * @param prepared Number of prepared call statements.
+     * @param preparationSkipped <code>true</code> if the statement preparation was skipped.
+     * @param failures Failed classes and errors.
+     */
+    WarmUpReport(long duration, List<Class<?>> resolved, int prepared, boolean preparationSkipped,
+                 Map<Class<?>, Throwable> failures) {
+        this.duration = duration;
+        this.resolved = Collections.unmodifiableList(resolved);
+        this.prepared = prepared;
+        this.preparationSkipped = preparationSkipped;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Warm up duration.
+     *
+     * @return Duration in milliseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Successfully resolved classes.
+     *
+     * @return see above.
+     */
+    public List<Class<?>> getResolved() {
+        return resolved;
+    }
+
+    /**
+     * Number of prepared call statements.
+     *
+     * @return see above.
+     */
+    public int getPrepared() {
+        return prepared;
+    }
+
+    /**
+     * Check if the statement preparation was requested but skipped because
+     * the manager has no statement cache or no current connection to keep
+     * the prepared statements.
+     *
+     * @return see above.
+     */
+    public boolean isPreparationSkipped() {
+        return preparationSkipped;
+    }
+
+    /**
+     * Classes that failed to resolve or to prepare their call statement.
+     *
+     * @return Failed classes and their errors.
+     */
+    public Map<Class<?>, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Report summary.
+     *
+     * @return see above.
+     */
+    @Override
+    public String toString() {
+        return "WarmUpReport{duration=" + duration + "ms, resolved=" + resolved.size()
+                + ", prepared=" + prepared + ", preparationSkipped=" + preparationSkipped + ", failures=" + failures.keySet() + "}";
+    }
+}
@@ -0,0 +1,745 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import scalable.solutions.spm.annotations.enums.BackpressurePolicy;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.i18n.I18n;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write behind queue of IN only stored procedure calls, for example audit
+ * or event logging procedures whose completion the caller does not wait for.
+ * <p>
+ * An enqueued call is appended to a memory mapped journal, then queued and
+ * drained by background workers in JDBC batches. Batches failed with a
+ * transient or connection error are retried until the database recovers,
+ * a batch failed permanently is replayed call by call so only the failing
+ * calls are dropped. A call leaves the journal once it completed or was
+ * dropped, so the calls found in the journal when the queue is created
+ * again, after a crash or a close during a database outage, are replayed.
+ * Calls are delivered at least once: a call may run again if the process
+ * stops between its execution and its journal release.
+ * <p>
+ * The number of calls not yet completed is bounded by the write behind
+ * capacity and by the journal size; the backpressure policy decides what
+ * happens to the calls enqueued beyond the bound.
+ * <p>
+ * Only null, primitive wrapper, String, BigDecimal, byte[] and java.sql
+ * date and time values are journaled, calls with other values are rejected.
+ * A replayed call whose IN parameters no longer match its POJO class is
+ * dropped.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class WriteBehindQueue {
+
+    /* Thread counter of the workers. */
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    /* Value tags of the journal records. */
+    private static final byte NULL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte STRING = 5;
+    private static final byte DECIMAL = 6;
+    private static final byte BYTES = 7;
+    private static final byte TIMESTAMP = 8;
+    private static final byte DATE = 9;
+    private static final byte TIME = 10;
+    private static final byte SHORT = 11;
+    private static final byte FLOAT = 12;
+    private static final byte BYTE = 13;
+
+    /* Manager running the calls. */
+    private final AbstractProcedureManager manager;
+
+    /* Journal of the calls not yet completed. */
+    private final Journal journal;
+
+    /* Queued calls. */
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+
+    /* Free places of calls not yet completed. */
+    private final Semaphore slots;
+
+    /* Full queue policy. */
+    private final BackpressurePolicy policy;
+
+    /* Maximum number of calls sent in a single batch. */
+    private final int batchSize;
+
+    /* Number of retries of a failed batch before waiting the maximum backoff between retries. */
+    private final int retries;
+
+    /* Worker threads. */
+    private final Thread[] workers;
+
+    /* Calls enqueued and not yet completed. */
+    private final AtomicLong outstanding = new AtomicLong();
+
+    /* Completed calls. */
+    private final AtomicLong completed = new AtomicLong();
+
+    /* Dropped calls. */
+    private final AtomicLong failed = new AtomicLong();
+
+    /* Last error of a dropped call. */
+    private volatile RuntimeException lastFailure;
+
+    /* No more calls are accepted. */
+    private volatile boolean closed;
+
+    /* The database was unavailable while closing, the calls left stay in the journal. */
+    private volatile boolean halted;
+
+    /* Enqueued calls are journaled and queued under the read lock, closed is set under the write lock. */
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+
+    /**
+     * Create a write behind queue and replay the calls left in its journal.
+     *
+     * @param source  DataSource of the calls.
+     * @param path    Journal file.
+     * @param config  Configuration options.
+     */
+    WriteBehindQueue(DataSource source, Path path, ProcedureManagerConfig config) {
+
+        this.manager = new ConcurrentProcedureManagerImpl(source, config);
+        this.journal = new Journal(path, config.getJournalSize(), config.isJournalSync());
+        this.policy = config.getBackpressurePolicy();
+        this.batchSize = config.getBatchSize();
+        this.retries = config.getWriteBehindRetries();
+
+        // replayed calls may exceed the capacity, new calls wait until they complete
+        Map<Long, byte[]> recovered = journal.recovered();
+        this.slots = new Semaphore(config.getWriteBehindCapacity() - recovered.size());
+        for (Map.Entry<Long, byte[]> entry : recovered.entrySet()) {
+            outstanding.incrementAndGet();
+            try {
+                Record record = decode(entry.getValue());
+                record.sequence = entry.getKey();
+                queue.add(record);
+            } catch (RuntimeException e) {
+                dropped(e);
+                complete(entry.getKey());
+            }
+        }
+        recovered.clear();
+
+        this.workers = new Thread[config.getWriteBehindWorkers()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(this::drain, "pojo-sp-write-behind-" + THREADS.incrementAndGet());
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Enqueue an IN only stored procedure call. The call is journaled before
+     * this method returns.
+     *
+     * @param pojo @StoredProcedure POJO with IN parameters only.
+     */
+    public void enqueue(Object pojo) {
+
+        // Null POJO entities are not allowed.
+        if (pojo == null) {
+            throw new ProcedureManagerException(I18n.get("error.no.entity"));
+        }
+
+        if (closed) {
+            throw new ProcedureManagerException(I18n.get("error.queue.closed"));
+        }
+
+        EntityResolver.Entity entity = manager.resolve(pojo);
+        EntityResolver.Entity recordEntity = manager.resolver.resolveRecord(pojo.getClass());
+        Object[] values = new Object[entity.in.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = entity.in[i].get(pojo);
+        }
+        Record record = new Record(recordEntity, values);
+        byte[] payload = encode(pojo.getClass().getName(), entity, values);
+
+        if (!acquire()) {
+            manager.call(pojo);
+            return;
+        }
+
+        try {
+            while (!offer(record, payload)) {
+                if (policy != BackpressurePolicy.BLOCK) {
+                    break;
+                }
+                journal.awaitRelease(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            slots.release();
+            throw new ProcedureManagerException(e);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+
+        if (record.sequence < 0) {
+            slots.release();
+            if (policy == BackpressurePolicy.REJECT) {
+                throw new ProcedureManagerException(I18n.get("error.queue.full"));
+            }
+            manager.call(pojo);
+        }
+    }
+
+    /**
+     * Journal and queue a call, unless the queue is closed. A call queued
+     * here is always drained by the workers before they stop.
+     *
+     * @param record  Queued call.
+     * @param payload Journal record payload.
+     * @return <code>true</code> if the call was queued, <code>false</code> if the journal is full.
+     */
+    private boolean offer(Record record, byte[] payload) {
+
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                throw new ProcedureManagerException(I18n.get("error.queue.closed"));
+            }
+
+            record.sequence = journal.append(payload);
+            if (record.sequence < 0) {
+                return false;
+            }
+            outstanding.incrementAndGet();
+            queue.add(record);
+            return true;
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+
+    /**
+     * Take a place in the queue according to the backpressure policy.
+     *
+     * @return <code>true</code> if a place was taken, <code>false</code> to run the call on the caller thread.
+     */
+    private boolean acquire() {
+
+        if (slots.tryAcquire()) {
+            return true;
+        }
+
+        switch (policy) {
+            case REJECT:
+                throw new ProcedureManagerException(I18n.get("error.queue.full"));
+            case CALLER_RUNS:
+                return false;
+            default:
+                try {
+                    while (!slots.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                        if (closed) {
+                            throw new ProcedureManagerException(I18n.get("error.queue.closed"));
+                        }
+                    }
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ProcedureManagerException(e);
+                }
+        }
+    }
+
+    /**
+     * Worker loop, drain the queue in batches until the queue is closed and
+     * empty, or closed while the database is unavailable.
+     */
+    private void drain() {
+
+        List<Record> batch = new ArrayList<>(batchSize);
+        while (!closed || (!queue.isEmpty() && !halted)) {
+            try {
+                Record first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // closing, drain the remaining calls
+                continue;
+            }
+            queue.drainTo(batch, batchSize - 1);
+
+            Map<EntityResolver.Entity, List<Record>> groups = new LinkedHashMap<>();
+            for (Record record : batch) {
+                groups.computeIfAbsent(record.entity, key -> new ArrayList<>()).add(record);
+            }
+            for (Map.Entry<EntityResolver.Entity, List<Record>> group : groups.entrySet()) {
+                write(group.getKey(), group.getValue());
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Run the calls of an entity in a batch, isolating the failing calls
+     * when the batch fails permanently, and release the completed and the
+     * dropped calls. Calls not run because the queue was closed during a
+     * database outage stay in the journal.
+     *
+     * @param entity  Record entity.
+     * @param records Calls of the entity.
+     */
+    private void write(EntityResolver.Entity entity, List<Record> records) {
+
+        try {
+            if (call(entity, records)) {
+                completed.addAndGet(records.size());
+                for (Record record : records) {
+                    complete(record.sequence);
+                }
+            }
+            return;
+        } catch (RuntimeException e) {
+            if (records.size() == 1) {
+                dropped(e);
+                complete(records.get(0).sequence);
+                return;
+            }
+        }
+
+        for (Record record : records) {
+            try {
+                if (!call(entity, Collections.singletonList(record))) {
+                    return;
+                }
+                completed.incrementAndGet();
+            } catch (RuntimeException e) {
+                dropped(e);
+            }
+            complete(record.sequence);
+        }
+    }
+
+    /**
+     * Run a batch. Transient and connection failures are retried with a
+     * growing delay, then with the maximum delay until the database
+     * recovers or the queue is closed.
+     *
+     * @param entity  Record entity.
+     * @param records Calls of the entity.
+     * @return <code>true</code> if the calls completed, <code>false</code> if the queue was closed first.
+     */
+    private boolean call(EntityResolver.Entity entity, List<Record> records) {
+
+        List<Object[]> values = new ArrayList<>(records.size());
+        for (Record record : records) {
+            values.add(record.values);
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                manager.callRecords(entity, values);
+                return true;
+            } catch (RuntimeException e) {
+                if (!TransientErrors.isTransient(e) && !TransientErrors.isConnectionFailure(e)) {
+                    throw e;
+                }
+                if (closed) {
+                    halted = true;
+                    return false;
+                }
+                manager.backoff(attempt < retries ? attempt : Integer.MAX_VALUE, e);
+            }
+        }
+    }
+
+    /**
+     * Record a dropped call.
+     *
+     * @param e Call error.
+     */
+    private void dropped(RuntimeException e) {
+        failed.incrementAndGet();
+        lastFailure = e;
+    }
+
+    /**
+     * Release a completed or dropped call.
+     *
+     * @param sequence Journal sequence of the call.
+     */
+    private void complete(long sequence) {
+        journal.release(sequence);
+        slots.release();
+        if (outstanding.decrementAndGet() == 0) {
+            synchronized (outstanding) {
+                outstanding.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until all the enqueued calls completed or were dropped.
+     *
+     * @param timeout Maximum wait time.
+     * @param unit    Wait time unit.
+     * @return <code>true</code> if no call is left, <code>false</code> on timeout.
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (outstanding) {
+            while (outstanding.get() > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    outstanding.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ProcedureManagerException(e);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Number of calls enqueued and not yet completed.
+     *
+     * @return Pending calls.
+     */
+    public long getPendingCount() {
+        return outstanding.get();
+    }
+
+    /**
+     * Number of completed calls.
+     *
+     * @return Completed calls.
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Number of calls dropped after a permanent failure or exhausted retries.
+     *
+     * @return Dropped calls.
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Error of the last dropped call.
+     *
+     * @return Last error or <code>null</code> if no call was dropped.
+     */
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Stop accepting calls, wait for the workers to drain the queue and
+     * close the journal. If the database is unavailable, the calls not yet
+     * completed stay in the journal and are replayed when the queue is
+     * created again. The DataSource is owned by the caller.
+     */
+    public void close() {
+
+        closing.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        try {
+            manager.close();
+        } finally {
+            journal.close();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Encode the journal record of a call.
+     *
+     * @param type   POJO class name.
+     * @param entity POJO entity.
+     * @param values IN parameter values.
+     * @return Record payload.
+     */
+    private static byte[] encode(String type, EntityResolver.Entity entity, Object[] values) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(type);
+            out.writeInt(values.length);
+            for (int i = 0; i < values.length; i++) {
+                out.writeInt(entity.in[i].index);
+                out.writeInt(entity.in[i].type);
+                if (!write(out, values[i])) {
+                    throw new ProcedureManagerException(I18n.get("error.queue.value", type,
+                            entity.in[i].index, values[i].getClass().getName()));
+                }
+            }
+        } catch (IOException e) {
+            throw new ProcedureManagerException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode a parameter value of a common JDBC type.
+     *
+     * @param out   Record output.
+     * @param value Parameter value.
+     * @return false if the value type cannot be journaled.
+     * @throws IOException Output error.
+     */
+    private static boolean write(DataOutputStream out, Object value) throws IOException {
+
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(DECIMAL);
+            out.writeInt(((BigDecimal) value).scale());
+            writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value.getClass() == Timestamp.class) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value.getClass() == java.sql.Date.class) {
+            out.writeByte(DATE);
+            out.writeLong(((java.sql.Date) value).getTime());
+        } else if (value.getClass() == Time.class) {
+            out.writeByte(TIME);
+            out.writeLong(((Time) value).getTime());
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write a length prefixed byte array.
+     *
+     * @param out   Record output.
+     * @param bytes Bytes.
+     * @throws IOException Output error.
+     */
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Decode a journal record.
+     *
+     * @param payload Record payload.
+     * @return Queued call.
+     */
+    private Record decode(byte[] payload) {
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            Class<?> type = Class.forName(in.readUTF(), false,
+                    loader != null ? loader : WriteBehindQueue.class.getClassLoader());
+
+            // The POJO class may have changed since the call was journaled.
+            EntityResolver.Entity entity = manager.resolve(type);
+            Object[] values = new Object[in.readInt()];
+            if (values.length != entity.in.length) {
+                throw new ProcedureManagerException(I18n.get("error.queue.record", type.getName()));
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (in.readInt() != entity.in[i].index || in.readInt() != entity.in[i].type) {
+                    throw new ProcedureManagerException(I18n.get("error.queue.record", type.getName()));
+                }
+                values[i] = read(in);
+            }
+            return new Record(manager.resolver.resolveRecord(type), values);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Decode a parameter value.
+     *
+     * @param in Record input.
+     * @return Parameter value.
+     * @throws IOException Corrupted record.
+     */
+    private static Object read(DataInputStream in) throws IOException {
+
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case STRING:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case DECIMAL:
+                int scale = in.readInt();
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            case BYTES:
+                return readBytes(in);
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case DATE:
+                return new java.sql.Date(in.readLong());
+            case TIME:
+                return new Time(in.readLong());
+            case SHORT:
+                return in.readShort();
+            case FLOAT:
+                return in.readFloat();
+            case BYTE:
+                return in.readByte();
+            default:
+                throw new IOException("tag " + tag);
+        }
+    }
+
+    /**
+     * Read a length prefixed byte array.
+     *
+     * @param in Record input.
+     * @return Bytes.
+     * @throws IOException Corrupted record.
+     */
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Queued call.
+     */
+    private static final class Record {
+
+        /* Record entity of the call. */
+        final EntityResolver.Entity entity;
+
+        /* IN parameter values. */
+        final Object[] values;
+
+        /* Journal sequence. */
+        long sequence;
+
+        /**
+         * Create a queued call.
+         *
+         * @param entity Record entity.
+         * @param values IN parameter values.
+         */
+        Record(EntityResolver.Entity entity, Object[] values) {
+            this.entity = entity;
+            this.values = values;
+        }
+    }
+}
@@ -49,4 +49,14 @@ public class ProcedureManagerException extends RuntimeException {
     public ProcedureManagerException(Throwable throwable) {
         super(throwable);
     }
+
+    /**
+     * Constructor.
+     *
+     * @param message   Exception text message.
+     * @param throwable Throwable object.
+     */
+    public ProcedureManagerException(String message, Throwable throwable) {
+        super(message, throwable);
+    }
 }
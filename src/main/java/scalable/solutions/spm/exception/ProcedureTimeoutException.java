@@ -0,0 +1,53 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.exception;
+
+/**
+ * ProcedureTimeoutException is thrown when a call exceeds its timeout or its
+ * deadline, so callers can tell slow calls from other failures.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class ProcedureTimeoutException extends ProcedureManagerException {
+
+    /* Serialization id. */
+    private static final long serialVersionUID = -2093851147316044731L;
+
+    /**
+     * Constructor.
+     *
+     * @param message Exception text message.
+     */
+    public ProcedureTimeoutException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param message   Exception text message.
+     * @param throwable Throwable object.
+     */
+    public ProcedureTimeoutException(String message, Throwable throwable) {
+        super(message, throwable);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free log-linear latency histogram, in the spirit of HdrHistogram.
+ * Values below 64 ns have their own bucket; above, every power of two
+ * range is split in 32 linear sub-buckets, so the recorded values keep a
+ * relative precision of about 3%. Values above 2^40 ns are clamped.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+final class LatencyHistogram {
+
+    /* Values with an exact bucket. */
+    private static final int LINEAR = 64;
+
+    /* Sub-buckets of a power of two range, as a shift. */
+    private static final int SUB_BITS = 5;
+
+    /* Sub-buckets of a power of two range. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /* Highest exponent tracked. */
+    private static final int MAX_EXPONENT = 40;
+
+    /* Lowest exponent using sub-buckets. */
+    private static final int MIN_EXPONENT = 6;
+
+    /* Number of buckets. */
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+    /* Bucket counts. */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /* Number of recorded values. */
+    private final LongAdder count = new LongAdder();
+
+    /* Sum of recorded values. */
+    private final LongAdder sum = new LongAdder();
+
+    /* Maximum recorded value. */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos Latency in nanoseconds.
+     */
+    void record(long nanos) {
+
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Bucket of a value.
+     *
+     * @param value Non negative value.
+     * @return Bucket index.
+     */
+    private static int bucket(long value) {
+
+        if (value < LINEAR) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+
+        int sub = (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return LINEAR + (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Representative value of a bucket, the middle of its range.
+     *
+     * @param bucket Bucket index.
+     * @return Value in nanoseconds.
+     */
+    private static long value(int bucket) {
+
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + MIN_EXPONENT;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + sub) * width + width / 2;
+    }
+
+    /**
+     * Statistics of the recorded values. The snapshot is not atomic, values
+     * recorded while it is taken may be partially included.
+     *
+     * @return see above.
+     */
+    LatencyStatistics snapshot() {
+
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        long n = count.sum();
+        return new LatencyStatistics(n, n == 0 ? 0 : sum.sum() / n, max.get(),
+                percentile(counts, total, 0.50), percentile(counts, total, 0.90),
+                percentile(counts, total, 0.99), percentile(counts, total, 0.999));
+    }
+
+    /**
+     * Value at a percentile.
+     *
+     * @param counts     Bucket counts.
+     * @param total      Total count.
+     * @param percentile Percentile between 0 and 1.
+     * @return Value in nanoseconds.
+     */
+    private static long percentile(long[] counts, long total, double percentile) {
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return value(i);
+            }
+        }
+
+        return value(counts.length - 1);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.metrics;
+
+/**
+ * Latency statistics snapshot. All values are in nanoseconds.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class LatencyStatistics {
+
+    /* Number of recorded values. */
+    private final long count;
+
+    /* Mean, maximum and percentile values. */
+    private final long mean;
+    private final long max;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+
+    /**
+     * Construct a latency snapshot.
+     *
+     * @param count Number of recorded values.
+     * @param mean  Mean value.
+     * @param max   Maximum value.
+     * @param p50   Median.
+     * @param p90   90th percentile.
+     * @param p99   99th percentile.
+     * @param p999  99.9th percentile.
+     */
+    LatencyStatistics(long count, long mean, long max, long p50, long p90, long p99, long p999) {
+        this.count = count;
+        this.mean = mean;
+        this.max = max;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+    }
+
+    /**
+     * Number of recorded values.
+     *
+     * @return see above.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Mean latency.
+     *
+     * @return see above.
+     */
+    public long getMean() {
+        return mean;
+    }
+
+    /**
+     * Maximum latency.
+     *
+     * @return see above.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Median latency.
+     *
+     * @return see above.
+     */
+    public long getP50() {
+        return p50;
+    }
+
+    /**
+     * 90th percentile latency.
+     *
+     * @return see above.
+     */
+    public long getP90() {
+        return p90;
+    }
+
+    /**
+     * 99th percentile latency.
+     *
+     * @return see above.
+     */
+    public long getP99() {
+        return p99;
+    }
+
+    /**
+     * 99.9th percentile latency.
+     *
+     * @return see above.
+     */
+    public long getP999() {
+        return p999;
+    }
+
+    /**
+     * Statistics summary.
+     *
+     * @return see above.
+     */
+    @Override
+    public String toString() {
+        return "{count=" + count + ", mean=" + mean + ", p50=" + p50 + ", p90=" + p90
+                + ", p99=" + p99 + ", p999=" + p999 + ", max=" + max + "}";
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.metrics;
+
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Call metrics of a ProcedureManager, by stored procedure name. Optionally
+ * exposed as a platform MXBean named
+ * <code>scalable.solutions.spm:type=ProcedureManager,name=&lt;name&gt;</code>.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class MetricsRegistry implements ProcedureMetricsMXBean {
+
+    /* Metrics by stored procedure name. */
+    private final Map<String, ProcedureMetrics> procedures = new ConcurrentHashMap<>();
+
+    /* JMX name, null if not registered. */
+    private volatile ObjectName objectName;
+
+    /**
+     * Get the metrics of a stored procedure.
+     *
+     * @param name Stored procedure name.
+     * @return Procedure metrics.
+     */
+    public ProcedureMetrics procedure(String name) {
+
+        ProcedureMetrics metrics = procedures.get(name);
+        return metrics != null ? metrics : procedures.computeIfAbsent(name, ProcedureMetrics::new);
+    }
+
+    /**
+     * Total number of calls.
+     *
+     * @return see above.
+     */
+    @Override
+    public long getTotalCalls() {
+        return getProcedures().values().stream().mapToLong(ProcedureStatistics::getCalls).sum();
+    }
+
+    /**
+     * Total number of failed calls.
+     *
+     * @return see above.
+     */
+    @Override
+    public long getTotalErrors() {
+        return getProcedures().values().stream().mapToLong(ProcedureStatistics::getErrors).sum();
+    }
+
+    /**
+     * Statistics snapshot by stored procedure name.
+     *
+     * @return see above.
+     */
+    @Override
+    public Map<String, ProcedureStatistics> getProcedures() {
+
+        Map<String, ProcedureStatistics> snapshot = new TreeMap<>();
+        procedures.forEach((name, metrics) -> snapshot.put(name, metrics.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * Discard all recorded metrics.
+     */
+    @Override
+    public void reset() {
+        procedures.clear();
+    }
+
+    /**
+     * Register this registry in the platform MBean server.
+     *
+     * @param name Manager name used in the JMX object name.
+     */
+    public void register(String name) {
+
+        try {
+            ObjectName object = new ObjectName("scalable.solutions.spm:type=ProcedureManager,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, object);
+            objectName = object;
+        } catch (JMException e) {
+            throw new ProcedureManagerException(e);
+        }
+    }
+
+    /**
+     * Remove this registry from the platform MBean server.
+     */
+    public void unregister() {
+
+        ObjectName object = objectName;
+        if (object != null) {
+            objectName = null;
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(object)) {
+                    server.unregisterMBean(object);
+                }
+            } catch (JMException e) {
+                throw new ProcedureManagerException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free call metrics of a single stored procedure: call and error
+ * counts and latency histograms of the prepare, bind, execute and OUT
+ * bind phases of a call.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class ProcedureMetrics {
+
+    /* Stored procedure name. */
+    private final String name;
+
+    /* Number of calls. */
+    private final LongAdder calls = new LongAdder();
+
+    /* Number of failed calls. */
+    private final LongAdder errors = new LongAdder();
+
+    /* Phase latencies. */
+    private final LatencyHistogram prepare = new LatencyHistogram();
+    private final LatencyHistogram bind = new LatencyHistogram();
+    private final LatencyHistogram execute = new LatencyHistogram();
+    private final LatencyHistogram outBind = new LatencyHistogram();
+
+    /**
+     * Create the metrics of a stored procedure.
+     *
+     * @param name Stored procedure name.
+     */
+    ProcedureMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record a successful call.
+     *
+     * @param prepareNanos Statement prepare time.
+     * @param bindNanos    Input binding time.
+     * @param executeNanos Execution time.
+     * @param outBindNanos Output binding time.
+     */
+    public void record(long prepareNanos, long bindNanos, long executeNanos, long outBindNanos) {
+        calls.increment();
+        prepare.record(prepareNanos);
+        bind.record(bindNanos);
+        execute.record(executeNanos);
+        outBind.record(outBindNanos);
+    }
+
+    /**
+     * Record a failed call.
+     */
+    public void error() {
+        calls.increment();
+        errors.increment();
+    }
+
+    /**
+     * Metrics snapshot.
+     *
+     * @return see above.
+     */
+    ProcedureStatistics snapshot() {
+        return new ProcedureStatistics(name, calls.sum(), errors.sum(), prepare.snapshot(),
+                bind.snapshot(), execute.snapshot(), outBind.snapshot());
+    }
+}
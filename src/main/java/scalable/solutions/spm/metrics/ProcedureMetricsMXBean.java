@@ -0,0 +1,58 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the ProcedureManager call metrics.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public interface ProcedureMetricsMXBean {
+
+    /**
+     * Total number of calls.
+     *
+     * @return see above.
+     */
+    long getTotalCalls();
+
+    /**
+     * Total number of failed calls.
+     *
+     * @return see above.
+     */
+    long getTotalErrors();
+
+    /**
+     * Statistics by stored procedure name.
+     *
+     * @return see above.
+     */
+    Map<String, ProcedureStatistics> getProcedures();
+
+    /**
+     * Discard all recorded metrics.
+     */
+    void reset();
+}
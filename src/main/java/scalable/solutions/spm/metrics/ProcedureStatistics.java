@@ -0,0 +1,141 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.metrics;
+
+/**
+ * Call statistics snapshot of a stored procedure.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public final class ProcedureStatistics {
+
+    /* Stored procedure name. */
+    private final String name;
+
+    /* Number of calls, including the failed calls. */
+    private final long calls;
+
+    /* Number of failed calls. */
+    private final long errors;
+
+    /* Phase latencies of the successful calls. */
+    private final LatencyStatistics prepare;
+    private final LatencyStatistics bind;
+    private final LatencyStatistics execute;
+    private final LatencyStatistics outBind;
+
+    /**
+     * Construct a statistics snapshot.
+     *
+     * @param name    Stored procedure name.
+     * @param calls   Number of calls.
+     * @param errors  Number of failed calls.
+     * @param prepare Statement prepare latency.
+     * @param bind    Input binding latency.
+     * @param execute Execution latency.
+     * @param outBind Output binding latency.
+     */
+    ProcedureStatistics(String name, long calls, long errors, LatencyStatistics prepare,
+                        LatencyStatistics bind, LatencyStatistics execute, LatencyStatistics outBind) {
+        this.name = name;
+        this.calls = calls;
+        this.errors = errors;
+        this.prepare = prepare;
+        this.bind = bind;
+        this.execute = execute;
+        this.outBind = outBind;
+    }
+
+    /**
+     * Stored procedure name.
+     *
+     * @return see above.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Number of calls, including the failed calls.
+     *
+     * @return see above.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Number of failed calls.
+     *
+     * @return see above.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Statement prepare latency.
+     *
+     * @return see above.
+     */
+    public LatencyStatistics getPrepare() {
+        return prepare;
+    }
+
+    /**
+     * Input binding latency.
+     *
+     * @return see above.
+     */
+    public LatencyStatistics getBind() {
+        return bind;
+    }
+
+    /**
+     * Execution latency.
+     *
+     * @return see above.
+     */
+    public LatencyStatistics getExecute() {
+        return execute;
+    }
+
+    /**
+     * Output binding latency.
+     *
+     * @return see above.
+     */
+    public LatencyStatistics getOutBind() {
+        return outBind;
+    }
+
+    /**
+     * Statistics summary.
+     *
+     * @return see above.
+     */
+    @Override
+    public String toString() {
+        return name + "{calls=" + calls + ", errors=" + errors + ", prepare=" + prepare
+                + ", bind=" + bind + ", execute=" + execute + ", outBind=" + outBind + "}";
+    }
+}
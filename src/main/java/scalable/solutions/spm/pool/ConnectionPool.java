@@ -0,0 +1,645 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.pool;
+
+import scalable.solutions.spm.annotations.JDBC;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.i18n.I18n;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lightweight JDBC connection pool configured by a @JDBC annotation.
+ * <p>
+ * Idle connections are reused in LIFO order and optionally validated on
+ * borrow. A daemon housekeeping thread closes connections idle for longer
+ * than the idle timeout, keeps the minimum pool size and reports borrowed
+ * connections held longer than the leak detection threshold. Closing a
+ * borrowed connection returns it to the pool, rolling back any pending
+ * transaction and restoring the connection settings changed by the
+ * borrower, so the next borrower gets the connection as it was opened.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    /* Pool logger. */
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    /* Housekeeping thread counter. */
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    /* Connection parameters. */
+    private final String url;
+    private final String username;
+    private final String password;
+
+    /* Pool options. */
+    private final int minPoolSize;
+    private final long acquireTimeout;
+    private final long idleTimeout;
+    private final boolean validateOnBorrow;
+    private final int validationTimeout;
+    private final long leakDetectionThreshold;
+
+    /* Borrow permits, one for each connection that can be handed out. */
+    private final Semaphore permits;
+
+    /* Idle connections, most recently used first. */
+    private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+
+    /* Borrowed connections. */
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+
+    /* Number of open physical connections. */
+    private final AtomicInteger total = new AtomicInteger();
+
+    /* Housekeeping thread. */
+    private final ScheduledExecutorService housekeeper;
+
+    /* Pool state. */
+    private volatile boolean closed;
+
+    /* DataSource login timeout. */
+    private volatile int loginTimeout;
+
+    /* DataSource log writer. */
+    private volatile PrintWriter logWriter;
+
+    /**
+     * Create a connection pool using the @JDBC annotation parameters.
+     *
+     * @param jdbc Connection and pool parameters.
+     */
+    public ConnectionPool(JDBC jdbc) {
+
+        if (jdbc.maxPoolSize() < 1) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option", "maxPoolSize", jdbc.maxPoolSize()));
+        }
+        if (jdbc.minPoolSize() < 0 || jdbc.minPoolSize() > jdbc.maxPoolSize()) {
+            throw new ProcedureManagerException(I18n.get("error.invalid.option", "minPoolSize", jdbc.minPoolSize()));
+        }
+
+        try {
+            Class.forName(jdbc.driver());
+        } catch (ClassNotFoundException e) {
+            throw new ProcedureManagerException(e);
+        }
+
+        this.url = jdbc.url();
+        this.username = jdbc.username();
+        this.password = jdbc.password();
+        this.minPoolSize = jdbc.minPoolSize();
+        this.acquireTimeout = jdbc.acquireTimeout();
+        this.idleTimeout = jdbc.idleTimeout();
+        this.validateOnBorrow = jdbc.validateOnBorrow();
+        this.validationTimeout = jdbc.validationTimeout();
+        this.leakDetectionThreshold = jdbc.leakDetectionThreshold();
+        this.permits = new Semaphore(jdbc.maxPoolSize(), true);
+
+        String name = "pojo-sp-pool-" + POOLS.incrementAndGet();
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long period = housekeepingPeriod();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+        fill();
+    }
+
+    /**
+     * Housekeeping period, a fraction of the smallest enabled timeout.
+     *
+     * @return Period in milliseconds.
+     */
+    private long housekeepingPeriod() {
+
+        long period = 30000;
+        if (idleTimeout > 0) {
+            period = Math.min(period, idleTimeout / 2);
+        }
+        if (leakDetectionThreshold > 0) {
+            period = Math.min(period, leakDetectionThreshold / 2);
+        }
+        return Math.max(period, 100);
+    }
+
+    /**
+     * Borrow a connection from the pool, waiting at most the acquire timeout.
+     *
+     * @return Pooled connection, returned to the pool when closed.
+     * @throws SQLException Pool closed, acquire timeout or database access error.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        if (closed) {
+            throw new SQLException(I18n.get("error.pool.closed"));
+        }
+
+        try {
+            if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(I18n.get("error.pool.timeout", acquireTimeout));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+
+        try {
+            PooledConnection pooled = new PooledConnection(take());
+            borrowed.add(pooled);
+            return pooled.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Pooled connections always use the @JDBC credentials.
+     *
+     * @param username User name.
+     * @param password Password.
+     * @return never.
+     * @throws SQLException always.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * Take a valid idle connection or open a new one.
+     *
+     * @return Physical connection.
+     * @throws SQLException Database access error.
+     */
+    private Connection take() throws SQLException {
+
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (!validateOnBorrow || isValid(candidate.connection)) {
+                return candidate.connection;
+            }
+            discard(candidate.connection);
+        }
+
+        return open();
+    }
+
+    /**
+     * Open a new physical connection.
+     *
+     * @return Physical connection.
+     * @throws SQLException Database access error.
+     */
+    private Connection open() throws SQLException {
+
+        total.incrementAndGet();
+        try {
+            return DriverManager.getConnection(url, username, password);
+        } catch (SQLException | RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Validate a physical connection.
+     *
+     * @param connection Physical connection.
+     * @return <code>true</code> if the connection is usable.
+     */
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Close a physical connection and remove it from the pool.
+     *
+     * @param connection Physical connection.
+     */
+    private void discard(Connection connection) {
+        total.decrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Return a borrowed connection to the pool.
+     *
+     * @param pooled Borrowed connection.
+     */
+    private void giveBack(PooledConnection pooled) {
+
+        borrowed.remove(pooled);
+        Connection connection = pooled.connection;
+        try {
+            if (closed || connection.isClosed()) {
+                discard(connection);
+            } else {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                pooled.restore();
+                idle.offerFirst(new IdleConnection(connection));
+                if (closed) {
+                    drain();
+                }
+            }
+        } catch (SQLException e) {
+            discard(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Close idle connections, report leaks and keep the minimum pool size.
+     */
+    private void housekeep() {
+
+        long now = System.currentTimeMillis();
+        if (idleTimeout > 0) {
+            Iterator<IdleConnection> oldest = idle.descendingIterator();
+            while (oldest.hasNext() && total.get() > minPoolSize) {
+                IdleConnection candidate = oldest.next();
+                if (now - candidate.since >= idleTimeout && idle.removeFirstOccurrence(candidate)) {
+                    discard(candidate.connection);
+                }
+            }
+        }
+
+        if (leakDetectionThreshold > 0) {
+            for (PooledConnection pooled : borrowed) {
+                long held = now - pooled.borrowedAt;
+                if (held >= leakDetectionThreshold && !pooled.reported) {
+                    pooled.reported = true;
+                    LOGGER.log(Level.WARNING, I18n.get("warn.pool.leak", held), pooled.origin);
+                }
+            }
+        }
+
+        fill();
+    }
+
+    /**
+     * Open idle connections up to the minimum pool size.
+     */
+    private void fill() {
+        while (!closed && total.get() < minPoolSize) {
+            try {
+                idle.offerLast(new IdleConnection(open()));
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, e.getMessage(), e);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Close all idle connections.
+     */
+    private void drain() {
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            discard(candidate.connection);
+        }
+    }
+
+    /**
+     * Close the pool. Idle connections are closed immediately, borrowed
+     * connections when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        drain();
+    }
+
+    /**
+     * Number of open physical connections.
+     *
+     * @return see above.
+     */
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    /**
+     * Number of idle connections.
+     *
+     * @return see above.
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * Number of borrowed connections.
+     *
+     * @return see above.
+     */
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    /**
+     * DataSource log writer, not used by the pool.
+     *
+     * @return Log writer.
+     */
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    /**
+     * Set the DataSource log writer.
+     *
+     * @param out Log writer.
+     */
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    /**
+     * Set the DataSource login timeout.
+     *
+     * @param seconds Login timeout.
+     */
+    @Override
+    public void setLoginTimeout(int seconds) {
+        this.loginTimeout = seconds;
+    }
+
+    /**
+     * DataSource login timeout.
+     *
+     * @return Login timeout in seconds.
+     */
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+
+    /**
+     * Pool logger.
+     *
+     * @return see above.
+     */
+    @Override
+    public Logger getParentLogger() {
+        return LOGGER;
+    }
+
+    /**
+     * Unwrap the pool.
+     *
+     * @param iface Wrapped interface.
+     * @param <T>   Wrapped type.
+     * @return This pool.
+     * @throws SQLException The pool does not implement the interface.
+     */
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException(iface.getName());
+    }
+
+    /**
+     * Check the pool type.
+     *
+     * @param iface Wrapped interface.
+     * @return <code>true</code> if the pool implements the interface.
+     */
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * Idle physical connection.
+     */
+    private static final class IdleConnection {
+
+        /* Physical connection. */
+        final Connection connection;
+
+        /* Idle since, in milliseconds. */
+        final long since = System.currentTimeMillis();
+
+        /**
+         * Wrap an idle connection.
+         *
+         * @param connection Physical connection.
+         */
+        IdleConnection(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * Borrowed connection. Closing the connection proxy returns the
+     * physical connection to the pool.
+     */
+    private final class PooledConnection implements InvocationHandler {
+
+        /* Physical connection. */
+        final Connection connection;
+
+        /* Connection proxy handed out to the caller. */
+        final Connection proxy;
+
+        /* Borrow time, in milliseconds. */
+        final long borrowedAt = System.currentTimeMillis();
+
+        /* Borrow location, only captured when leak detection is enabled. */
+        final Throwable origin;
+
+        /* Leak already reported. */
+        volatile boolean reported;
+
+        /* Proxy state. */
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        /* Settings changed by the borrower, saved before the first change. */
+        private Boolean readOnly;
+        private Integer isolation;
+        private boolean catalogChanged;
+        private String catalog;
+        private boolean schemaChanged;
+        private String schema;
+
+        /**
+         * Wrap a borrowed connection.
+         *
+         * @param connection Physical connection.
+         */
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.origin = leakDetectionThreshold > 0 ? new Exception("Connection borrowed") : null;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        /**
+         * Intercept <code>close()</code>, delegate everything else.
+         *
+         * @param proxy  Connection proxy.
+         * @param method Invoked method.
+         * @param args   Method arguments.
+         * @return Method result.
+         * @throws Throwable Method error.
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            switch (method.getName()) {
+                case "close":
+                    if (open.compareAndSet(true, false)) {
+                        giveBack(this);
+                    }
+                    return null;
+                case "isClosed":
+                    if (!open.get()) {
+                        return true;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + connection;
+                default:
+                    break;
+            }
+
+            if (!open.get()) {
+                throw new SQLException(I18n.get("error.connection.closed"));
+            }
+
+            save(method.getName());
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Save a connection setting before the borrower changes it for the
+         * first time. Settings never changed are not read nor restored.
+         *
+         * @param name Invoked method name.
+         * @throws SQLException Database access error.
+         */
+        private void save(String name) throws SQLException {
+
+            switch (name) {
+                case "setReadOnly":
+                    if (readOnly == null) {
+                        readOnly = connection.isReadOnly();
+                    }
+                    break;
+                case "setTransactionIsolation":
+                    if (isolation == null) {
+                        isolation = connection.getTransactionIsolation();
+                    }
+                    break;
+                case "setCatalog":
+                    if (!catalogChanged) {
+                        catalog = connection.getCatalog();
+                        catalogChanged = true;
+                    }
+                    break;
+                case "setSchema":
+                    if (!schemaChanged) {
+                        schema = connection.getSchema();
+                        schemaChanged = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Restore the connection settings changed by the borrower.
+         *
+         * @throws SQLException Database access error.
+         */
+        void restore() throws SQLException {
+
+            if (readOnly != null) {
+                connection.setReadOnly(readOnly);
+            }
+            if (isolation != null) {
+                connection.setTransactionIsolation(isolation);
+            }
+            if (catalogChanged) {
+                connection.setCatalog(catalog);
+            }
+            if (schemaChanged) {
+                connection.setSchema(schema);
+            }
+        }
+    }
+}
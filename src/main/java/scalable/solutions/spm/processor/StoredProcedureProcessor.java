@@ -0,0 +1,744 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.processor;
+
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
+import scalable.solutions.spm.api.CallStatement;
+import scalable.solutions.spm.api.GeneratedEntity;
+import scalable.solutions.spm.i18n.I18n;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Annotation processor generating a {@link GeneratedEntity} binder for each
+ * @StoredProcedure class. The binder holds the call statement and the
+ * parameter metadata and accesses the fields directly, or through the
+ * JavaBean accessors for private fields, so no reflection is needed at
+ * runtime. The binders are registered as <code>ServiceLoader</code>
+ * providers of {@link GeneratedEntity}. Classes the binder cannot access,
+ * like private nested classes, are bound using reflection at runtime.
+ * Invalid mappings fail the build.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+@SupportedAnnotationTypes({
+        "scalable.solutions.spm.annotations.StoredProcedure",
+        "scalable.solutions.spm.annotations.StoredProcedureParameter"})
+public class StoredProcedureProcessor extends AbstractProcessor {
+
+    /* Cursor parameter field type. */
+    private static final String CURSOR_TYPE = "java.util.stream.Stream";
+
+    /* Array parameter collection field type. */
+    private static final String COLLECTION_TYPE = "java.util.Collection";
+
+    /* Primitive types with boxing free accessors. */
+    private static final String[] PRIMITIVES = {"int", "long", "double", "boolean"};
+
+    /* Service provider configuration file of the binders. */
+    private static final String SERVICES = "META-INF/services/" + GeneratedEntity.class.getName();
+
+    /* Binders generated in all rounds. */
+    private final Set<String> binders = new TreeSet<>();
+
+    /* Annotated classes of the generated binders. */
+    private final List<Element> origins = new ArrayList<>();
+
+    /* A @StoredProcedure class was processed. */
+    private boolean processed;
+
+    /**
+     * Support the compiler source version.
+     *
+     * @return Latest supported source version.
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * Validate the annotated classes and generate their binders. The binders
+     * are registered once all rounds are processed.
+     *
+     * @param annotations Processed annotations.
+     * @param round       Round environment.
+     * @return <code>true</code>, the annotations are owned by this processor.
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+
+        for (Element element : round.getElementsAnnotatedWith(StoredProcedureParameter.class)) {
+            Element owner = element.getEnclosingElement();
+            if (owner.getAnnotation(StoredProcedure.class) == null) {
+                error(element, I18n.get("error.no.annotation", "@StoredProcedure"));
+            }
+        }
+
+        for (Element element : round.getElementsAnnotatedWith(StoredProcedure.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                processed = true;
+                process((TypeElement) element);
+            }
+        }
+
+        if (round.processingOver() && processed) {
+            register();
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the service provider configuration of the binders generated by
+     * this compilation, replacing the one of a previous build so the binders
+     * of removed or renamed classes are no longer registered.
+     */
+    private void register() {
+
+        FileObject services;
+        try {
+            services = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES,
+                    origins.toArray(new Element[0]));
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+            return;
+        }
+
+        try (PrintWriter out = new PrintWriter(services.openWriter())) {
+            binders.forEach(out::println);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * Validate a @StoredProcedure class and generate its binder.
+     *
+     * @param type Annotated class.
+     */
+    private void process(TypeElement type) {
+
+        StoredProcedure procedure = type.getAnnotation(StoredProcedure.class);
+        List<Parameter> parameters = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getAnnotation(StoredProcedureParameter.class) != null) {
+                parameters.add(new Parameter(type, field));
+            }
+        }
+
+        if (validate(type, procedure, parameters) && visible(type, parameters) && accessible(type, parameters)) {
+            generate(type, procedure, parameters);
+        }
+    }
+
+    /**
+     * Check that the binder, generated in the package of the class, can name
+     * the class and the types of its parameters. Private and local classes,
+     * and classes nested in them, are bound using reflection.
+     *
+     * @param type       Annotated class.
+     * @param parameters Annotated fields.
+     * @return <code>true</code> if all types are visible.
+     */
+    private boolean visible(TypeElement type, List<Parameter> parameters) {
+
+        if (visible(type) && parameters.stream().allMatch(parameter -> parameter.visible)) {
+            return true;
+        }
+
+        note(type, I18n.get("note.type.access", type.getQualifiedName()));
+        return false;
+    }
+
+    /**
+     * Check that a type can be named from its package.
+     *
+     * @param type Type.
+     * @return <code>true</code> if the type is visible.
+     */
+    private static boolean visible(TypeMirror type) {
+
+        TypeMirror component = type;
+        while (component.getKind() == TypeKind.ARRAY) {
+            component = ((ArrayType) component).getComponentType();
+        }
+
+        if (component.getKind() != TypeKind.DECLARED) {
+            return true;
+        }
+        return visible((TypeElement) ((DeclaredType) component).asElement());
+    }
+
+    /**
+     * Check that a class and its enclosing classes are neither private nor local.
+     *
+     * @param type Class.
+     * @return <code>true</code> if the class is visible.
+     */
+    private static boolean visible(TypeElement type) {
+
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            NestingKind nesting = ((TypeElement) element).getNestingKind();
+            if (element.getModifiers().contains(Modifier.PRIVATE)
+                    || nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Validate the parameter indexes. Indexes MUST be unique and numbered from
+     * 1 and the result of a function MUST be the OUT parameter 1.
+     *
+     * @param type       Annotated class.
+     * @param procedure  Stored procedure annotation.
+     * @param parameters Annotated fields.
+     * @return <code>true</code> if the mapping is valid.
+     */
+    private boolean validate(TypeElement type, StoredProcedure procedure, List<Parameter> parameters) {
+
+        boolean valid = true;
+        boolean result = false;
+        Parameter[] seen = new Parameter[parameters.size() + 1];
+        for (Parameter parameter : parameters) {
+            int index = parameter.annotation.index();
+            if (index < 1 || index > parameters.size()) {
+                error(parameter.field, I18n.get("error.parameter.index",
+                        type.getQualifiedName(), index, parameters.size()));
+                valid = false;
+            } else if (seen[index] != null) {
+                error(parameter.field, I18n.get("error.parameter.duplicate", type.getQualifiedName(), index));
+                valid = false;
+            } else {
+                seen[index] = parameter;
+            }
+
+            result |= index == 1 && parameter.annotation.direction() == Direction.OUT;
+        }
+
+        if (!procedure.procedure() && !result) {
+            error(type, I18n.get("error.function.result", type.getQualifiedName()));
+            valid = false;
+        }
+
+        for (Parameter parameter : parameters) {
+            if (parameter.cursor && (parameter.annotation.direction() != Direction.OUT || parameter.rowType == null)) {
+                error(parameter.field, I18n.get("error.cursor.parameter",
+                        type.getQualifiedName(), parameter.annotation.index()));
+                valid = false;
+            }
+            if (parameter.array && (parameter.annotation.typeName().isEmpty() || parameter.rowType == null)) {
+                error(parameter.field, I18n.get("error.array.parameter",
+                        type.getQualifiedName(), parameter.annotation.index()));
+                valid = false;
+            }
+        }
+
+        return valid;
+    }
+
+    /**
+     * Check that the binder can access all the parameters. Private fields
+     * need a non private getter, and a setter for OUT and INOUT parameters.
+     *
+     * @param type       Annotated class.
+     * @param parameters Annotated fields.
+     * @return <code>true</code> if all parameters are accessible.
+     */
+    private boolean accessible(TypeElement type, List<Parameter> parameters) {
+
+        boolean accessible = true;
+        for (Parameter parameter : parameters) {
+            if (parameter.getter == null) {
+                warning(parameter.field, I18n.get("warn.parameter.access",
+                        type.getQualifiedName(), parameter.field.getSimpleName(), "getter"));
+                accessible = false;
+            }
+            if (parameter.annotation.direction() != Direction.IN && parameter.setter == null) {
+                warning(parameter.field, I18n.get("warn.parameter.access",
+                        type.getQualifiedName(), parameter.field.getSimpleName(), "setter"));
+                accessible = false;
+            }
+        }
+
+        return accessible;
+    }
+
+    /**
+     * Generate the binder source file.
+     *
+     * @param type       Annotated class.
+     * @param procedure  Stored procedure annotation.
+     * @param parameters Annotated fields.
+     */
+    private void generate(TypeElement type, StoredProcedure procedure, List<Parameter> parameters) {
+
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binderName = binderName(type);
+        String pojo = processingEnv.getTypeUtils().erasure(type.asType()).toString();
+        boolean rows = parameters.stream().anyMatch(parameter -> parameter.rowType != null);
+        boolean typeNames = parameters.stream().anyMatch(parameter -> !parameter.annotation.typeName().isEmpty());
+        String qualifiedName = packageName.isEmpty() ? binderName : packageName + "." + binderName;
+
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(qualifiedName, type).openWriter())) {
+
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+
+            out.println("/**");
+            out.println(" * Generated binder of " + type.getQualifiedName() + ". Do not edit.");
+            out.println(" */");
+            out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            out.println("public final class " + binderName + " implements "
+                    + GeneratedEntity.class.getCanonicalName() + " {");
+            out.println();
+            out.println("    private static final int[] INDEXES = {"
+                    + join(parameters, parameter -> String.valueOf(parameter.annotation.index())) + "};");
+            out.println();
+            out.println("    private static final int[] TYPES = {"
+                    + join(parameters, parameter -> String.valueOf(parameter.annotation.type())) + "};");
+            out.println();
+            out.println("    private static final " + Direction.class.getCanonicalName() + "[] DIRECTIONS = {"
+                    + join(parameters, parameter -> Direction.class.getCanonicalName() + "."
+                    + parameter.annotation.direction()) + "};");
+            out.println();
+            out.println("    private static final Class<?>[] JAVA_TYPES = {"
+                    + join(parameters, parameter -> parameter.javaType + ".class") + "};");
+            out.println();
+            if (rows) {
+                out.println("    private static final Class<?>[] ROW_TYPES = {"
+                        + join(parameters, parameter -> parameter.rowType != null ? parameter.rowType + ".class" : "null")
+                        + "};");
+                out.println();
+            }
+            if (typeNames) {
+                out.println("    private static final String[] TYPE_NAMES = {"
+                        + join(parameters, parameter -> parameter.annotation.typeName().isEmpty() ? "null"
+                        : literal(parameter.annotation.typeName())) + "};");
+                out.println();
+            }
+            out.println("    @Override");
+            out.println("    public Class<?> type() {");
+            out.println("        return " + pojo + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public String name() {");
+            out.println("        return " + literal(procedure.name()) + ";");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public boolean procedure() {");
+            out.println("        return " + procedure.procedure() + ";");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public String sql() {");
+            out.println("        return " + literal(CallStatement.escape(procedure.name(),
+                    procedure.procedure(), parameters.size())) + ";");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public boolean cacheable() {");
+            out.println("        return " + procedure.cacheable() + ";");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public long ttl() {");
+            out.println("        return " + procedure.ttl() + "L;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public boolean singleFlight() {");
+            out.println("        return " + procedure.singleFlight() + ";");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public long timeout() {");
+            out.println("        return " + procedure.timeout() + "L;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public boolean readOnly() {");
+            out.println("        return " + procedure.readOnly() + ";");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public int[] indexes() {");
+            out.println("        return INDEXES.clone();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public int[] types() {");
+            out.println("        return TYPES.clone();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + Direction.class.getCanonicalName() + "[] directions() {");
+            out.println("        return DIRECTIONS.clone();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<?>[] javaTypes() {");
+            out.println("        return JAVA_TYPES.clone();");
+            out.println("    }");
+            out.println();
+            if (rows) {
+                out.println("    @Override");
+                out.println("    public Class<?>[] rowTypes() {");
+                out.println("        return ROW_TYPES.clone();");
+                out.println("    }");
+                out.println();
+            }
+            if (typeNames) {
+                out.println("    @Override");
+                out.println("    public String[] typeNames() {");
+                out.println("        return TYPE_NAMES.clone();");
+                out.println("    }");
+                out.println();
+            }
+            out.println("    @Override");
+            out.println("    public Object get(Object pojo, int parameter) {");
+            out.println("        " + pojo + " entity = (" + pojo + ") pojo;");
+            out.println("        switch (parameter) {");
+            for (int i = 0; i < parameters.size(); i++) {
+                out.println("            case " + i + ":");
+                out.println("                return entity." + parameters.get(i).getter + ";");
+            }
+            out.println("            default:");
+            out.println("                throw new IndexOutOfBoundsException(String.valueOf(parameter));");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void set(Object pojo, int parameter, Object value) {");
+            out.println("        " + pojo + " entity = (" + pojo + ") pojo;");
+            out.println("        switch (parameter) {");
+            for (int i = 0; i < parameters.size(); i++) {
+                Parameter parameter = parameters.get(i);
+                if (parameter.annotation.direction() != Direction.IN) {
+                    String value = "(" + parameter.javaType + ") value";
+                    out.println("            case " + i + ":");
+                    out.println("                entity." + String.format(parameter.setter, value) + ";");
+                    out.println("                return;");
+                }
+            }
+            out.println("            default:");
+            out.println("                throw new IndexOutOfBoundsException(String.valueOf(parameter));");
+            out.println("        }");
+            out.println("    }");
+            for (String primitive : PRIMITIVES) {
+                generate(out, pojo, primitive, parameters);
+            }
+            out.println("}");
+            binders.add(qualifiedName);
+            origins.add(type);
+        } catch (IOException e) {
+            error(type, e.getMessage());
+        }
+    }
+
+    /**
+     * Generate the accessors of the primitive fields of a type, reading and
+     * writing the fields without boxing. Other positions use the boxing
+     * default implementation.
+     *
+     * @param out        Source writer.
+     * @param pojo       Erased entity class name.
+     * @param primitive  Primitive type name.
+     * @param parameters Annotated fields.
+     */
+    private static void generate(PrintWriter out, String pojo, String primitive, List<Parameter> parameters) {
+
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (parameters.get(i).javaType.equals(primitive)) {
+                positions.add(i);
+            }
+        }
+
+        if (positions.isEmpty()) {
+            return;
+        }
+
+        String name = Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1);
+        String parent = GeneratedEntity.class.getCanonicalName() + ".super";
+
+        out.println();
+        out.println("    @Override");
+        out.println("    public " + primitive + " get" + name + "(Object pojo, int parameter) {");
+        out.println("        " + pojo + " entity = (" + pojo + ") pojo;");
+        out.println("        switch (parameter) {");
+        for (int i : positions) {
+            out.println("            case " + i + ":");
+            out.println("                return entity." + parameters.get(i).getter + ";");
+        }
+        out.println("            default:");
+        out.println("                return " + parent + ".get" + name + "(pojo, parameter);");
+        out.println("        }");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public void set" + name + "(Object pojo, int parameter, " + primitive + " value) {");
+        out.println("        " + pojo + " entity = (" + pojo + ") pojo;");
+        out.println("        switch (parameter) {");
+        for (int i : positions) {
+            Parameter parameter = parameters.get(i);
+            if (parameter.annotation.direction() != Direction.IN) {
+                out.println("            case " + i + ":");
+                out.println("                entity." + String.format(parameter.setter, "value") + ";");
+                out.println("                return;");
+            }
+        }
+        out.println("            default:");
+        out.println("                " + parent + ".set" + name + "(pojo, parameter, value);");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    /**
+     * Binder class name: the nested class names joined by '_' and the binder suffix.
+     *
+     * @param type Annotated class.
+     * @return Binder simple name.
+     */
+    private static String binderName(TypeElement type) {
+
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        Element owner = type.getEnclosingElement();
+        while (owner instanceof TypeElement) {
+            name.insert(0, '_').insert(0, owner.getSimpleName());
+            owner = owner.getEnclosingElement();
+        }
+
+        return name.append(GeneratedEntity.BINDER_SUFFIX).toString();
+    }
+
+    /**
+     * Join a parameter attribute as Java source.
+     *
+     * @param parameters Annotated fields.
+     * @param attribute  Attribute source expression.
+     * @return Comma separated values.
+     */
+    private static String join(List<Parameter> parameters, Function<Parameter, String> attribute) {
+        return parameters.stream().map(attribute).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Java string literal.
+     *
+     * @param value String value.
+     * @return Quoted and escaped literal.
+     */
+    private static String literal(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /**
+     * Report a compilation error.
+     *
+     * @param element Erroneous element.
+     * @param message Error message.
+     */
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * Report a compilation note.
+     *
+     * @param element Element.
+     * @param message Note message.
+     */
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+
+    /**
+     * Report a compilation warning.
+     *
+     * @param element Element.
+     * @param message Warning message.
+     */
+    private void warning(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+
+    /**
+     * Annotated field and its access expressions.
+     */
+    private final class Parameter {
+
+        /* Annotated field. */
+        final VariableElement field;
+
+        /* Parameter annotation. */
+        final StoredProcedureParameter annotation;
+
+        /* Erased field type. */
+        final String javaType;
+
+        /* Cursor OUT parameter mapped to a Stream field. */
+        final boolean cursor;
+
+        /* ARRAY parameter mapped to a Collection or array field. */
+        final boolean array;
+
+        /* Erased row type of a cursor or element type of an array, null if unknown or not applicable. */
+        final String rowType;
+
+        /* The field type and the row type can be named by the binder. */
+        final boolean visible;
+
+        /* Read expression, null if the field is not accessible. */
+        final String getter;
+
+        /* Write expression format, null if the field is not writable. */
+        final String setter;
+
+        /**
+         * Resolve the access expressions of a field.
+         *
+         * @param type  Annotated class.
+         * @param field Annotated field.
+         */
+        Parameter(TypeElement type, VariableElement field) {
+
+            this.field = field;
+            this.annotation = field.getAnnotation(StoredProcedureParameter.class);
+            this.javaType = processingEnv.getTypeUtils().erasure(field.asType()).toString();
+            this.cursor = CURSOR_TYPE.equals(javaType);
+            this.array = annotation.type() == java.sql.Types.ARRAY && (field.asType().getKind() == TypeKind.ARRAY
+                    || processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(field.asType()),
+                    processingEnv.getTypeUtils().erasure(processingEnv.getElementUtils()
+                            .getTypeElement(COLLECTION_TYPE).asType())));
+            TypeMirror row;
+            if (array && field.asType().getKind() == TypeKind.ARRAY) {
+                row = processingEnv.getTypeUtils().erasure(((ArrayType) field.asType()).getComponentType());
+            } else {
+                row = cursor || array ? rowType(field) : null;
+            }
+            this.rowType = row != null ? row.toString() : null;
+            this.visible = visible(field.asType()) && (row == null || visible(row));
+
+            String name = field.getSimpleName().toString();
+            if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+                this.getter = name;
+                this.setter = field.getModifiers().contains(Modifier.FINAL) ? null : name + " = %s";
+            } else {
+                String property = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                String get = accessor(type, "get" + property, 0);
+                if (get == null && field.asType().getKind() == TypeKind.BOOLEAN) {
+                    get = accessor(type, "is" + property, 0);
+                }
+                String set = accessor(type, "set" + property, 1);
+                this.getter = get == null ? null : get + "()";
+                this.setter = set == null ? null : set + "(%s)";
+            }
+        }
+
+        /**
+         * Row type of a cursor field or element type of a collection field:
+         * the rowType annotation attribute or the type argument of the field.
+         *
+         * @param field Cursor or collection field.
+         * @return Erased row type or <code>null</code> if not declared.
+         */
+        private TypeMirror rowType(VariableElement field) {
+
+            // class values are only available as type mirrors at compile time
+            TypeMirror row = null;
+            try {
+                annotation.rowType();
+            } catch (MirroredTypeException e) {
+                row = e.getTypeMirror();
+            }
+
+            if (row == null || row.getKind() == TypeKind.VOID) {
+                List<? extends TypeMirror> arguments = ((DeclaredType) field.asType()).getTypeArguments();
+                row = arguments.isEmpty() ? null : arguments.get(0);
+            }
+
+            return row != null && row.getKind() == TypeKind.DECLARED
+                    ? processingEnv.getTypeUtils().erasure(row) : null;
+        }
+
+        /**
+         * Find a non private accessor method.
+         *
+         * @param type       Annotated class.
+         * @param name       Method name.
+         * @param parameters Number of method parameters.
+         * @return Method name or <code>null</code> if not found.
+         */
+        private String accessor(TypeElement type, String name, int parameters) {
+
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                if (method.getSimpleName().contentEquals(name)
+                        && method.getParameters().size() == parameters
+                        && !method.getModifiers().contains(Modifier.PRIVATE)
+                        && !method.getModifiers().contains(Modifier.STATIC)) {
+                    return name;
+                }
+            }
+
+            return null;
+        }
+    }
+}
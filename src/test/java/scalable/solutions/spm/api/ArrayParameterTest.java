@@ -0,0 +1,310 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * ARRAY parameter binding tests against an embedded H2 database.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class ArrayParameterTest {
+
+    @StoredProcedure(name = "SUM_ARRAY", procedure = false)
+    private static final class SumArray {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER, direction = Direction.OUT)
+        private Integer sum;
+
+        @StoredProcedureParameter(index = 2, type = Types.ARRAY, typeName = "INTEGER")
+        private int[] values;
+    }
+
+    @StoredProcedure(name = "SUM_ARRAY", procedure = false)
+    private static final class SumList {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER, direction = Direction.OUT)
+        private Integer sum;
+
+        @StoredProcedureParameter(index = 2, type = Types.ARRAY, typeName = "INTEGER")
+        private List<Integer> values;
+    }
+
+    @StoredProcedure(name = "JOIN_ARRAY", procedure = false)
+    private static final class JoinArray {
+
+        @StoredProcedureParameter(index = 1, type = Types.VARCHAR, direction = Direction.OUT)
+        private String joined;
+
+        @StoredProcedureParameter(index = 2, type = Types.ARRAY, typeName = "VARCHAR")
+        private String[] values;
+    }
+
+    @StoredProcedure(name = "RANGE_ARRAY", procedure = false)
+    private static final class RangeArray {
+
+        @StoredProcedureParameter(index = 1, type = Types.ARRAY, direction = Direction.OUT, typeName = "INTEGER")
+        private int[] values;
+
+        @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+        private int count;
+    }
+
+    @StoredProcedure(name = "RANGE_ARRAY", procedure = false)
+    private static final class RangeLongs {
+
+        @StoredProcedureParameter(index = 1, type = Types.ARRAY, direction = Direction.OUT, typeName = "INTEGER")
+        private long[] values;
+
+        @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+        private int count;
+    }
+
+    @StoredProcedure(name = "RANGE_ARRAY", procedure = false)
+    private static final class RangeList {
+
+        @StoredProcedureParameter(index = 1, type = Types.ARRAY, direction = Direction.OUT, typeName = "INTEGER")
+        private List<Long> values;
+
+        @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+        private int count;
+    }
+
+    @StoredProcedure(name = "RANGE_ARRAY", procedure = false)
+    private static final class RangeSet {
+
+        @StoredProcedureParameter(index = 1, type = Types.ARRAY, direction = Direction.OUT, typeName = "INTEGER")
+        private Set<Double> values;
+
+        @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+        private int count;
+    }
+
+    @StoredProcedure(name = "SUM_ARRAY", procedure = false, cacheable = true)
+    private static final class CachedSum {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER, direction = Direction.OUT)
+        private Integer sum;
+
+        @StoredProcedureParameter(index = 2, type = Types.ARRAY, typeName = "INTEGER")
+        private List<Integer> values;
+    }
+
+    @StoredProcedure(name = "RANGE_ARRAY", procedure = false, cacheable = true)
+    private static final class CachedRange {
+
+        @StoredProcedureParameter(index = 1, type = Types.ARRAY, direction = Direction.OUT, typeName = "INTEGER")
+        private List<Long> values;
+
+        @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+        private int count;
+    }
+
+    /* Database connection. */
+    private Connection connection;
+
+    /* Manager under test. */
+    private ProcedureManager pm;
+
+    @Before
+    public void setUp() throws SQLException {
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:arrays");
+        try (Statement statement = connection.createStatement()) {
+            String prefix = ArrayParameterTest.class.getName() + ".";
+            statement.execute("CREATE ALIAS SUM_ARRAY FOR \"" + prefix + "sum\"");
+            statement.execute("CREATE ALIAS JOIN_ARRAY FOR \"" + prefix + "join\"");
+            statement.execute("CREATE ALIAS RANGE_ARRAY FOR \"" + prefix + "range\"");
+        }
+        pm = ProcedureManagerFactory.createInstance(connection);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    public static Integer sum(Integer[] values) {
+        return values == null ? null : Arrays.stream(values).mapToInt(Integer::intValue).sum();
+    }
+
+    public static String join(String[] values) {
+        return values == null ? null : String.join(",", values);
+    }
+
+    public static Integer[] range(int count) {
+
+        if (count < 0) {
+            return null;
+        }
+
+        Integer[] values = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i + 1;
+        }
+        return values;
+    }
+
+    @Test
+    public void primitiveArrayIsBoundAsArray() {
+
+        SumArray call = new SumArray();
+        call.values = new int[]{1, 2, 3, 4};
+        pm.call(call);
+
+        assertEquals(Integer.valueOf(10), call.sum);
+    }
+
+    @Test
+    public void collectionIsBoundAsArray() {
+
+        SumList call = new SumList();
+        call.values = Arrays.asList(5, 6, 7);
+        pm.call(call);
+
+        assertEquals(Integer.valueOf(18), call.sum);
+    }
+
+    @Test
+    public void objectArrayIsBoundWithItsTypeName() {
+
+        JoinArray call = new JoinArray();
+        call.values = new String[]{"a", "b", "c"};
+        pm.call(call);
+
+        assertEquals("a,b,c", call.joined);
+    }
+
+    @Test
+    public void emptyArrayIsBound() {
+
+        SumArray call = new SumArray();
+        call.values = new int[0];
+        pm.call(call);
+
+        assertEquals(Integer.valueOf(0), call.sum);
+    }
+
+    @Test
+    public void nullArrayIsBoundAsNull() {
+
+        SumArray call = new SumArray();
+        pm.call(call);
+
+        assertNull(call.sum);
+    }
+
+    @Test
+    public void outArrayIsConvertedToPrimitiveArray() {
+
+        RangeArray call = new RangeArray();
+        call.count = 3;
+        pm.call(call);
+
+        assertArrayEquals(new int[]{1, 2, 3}, call.values);
+    }
+
+    @Test
+    public void outArrayElementsAreWidenedToTheComponentType() {
+
+        RangeLongs call = new RangeLongs();
+        call.count = 3;
+        pm.call(call);
+
+        assertArrayEquals(new long[]{1L, 2L, 3L}, call.values);
+    }
+
+    @Test
+    public void outArrayElementsAreConvertedToTheCollectionType() {
+
+        RangeList list = new RangeList();
+        list.count = 2;
+        pm.call(list);
+        assertEquals(Arrays.asList(1L, 2L), list.values);
+
+        RangeSet set = new RangeSet();
+        set.count = 2;
+        pm.call(set);
+        assertEquals(LinkedHashSet.class, set.values.getClass());
+        assertEquals(Arrays.asList(1.0, 2.0), new ArrayList<>(set.values));
+    }
+
+    @Test
+    public void cachedCollectionsAreCopied() {
+
+        CachedSum sum = new CachedSum();
+        sum.values = new ArrayList<>(Arrays.asList(1, 2));
+        pm.call(sum);
+        sum.values.add(3);
+        pm.call(sum);
+        assertEquals(Integer.valueOf(6), sum.sum);
+        sum.values.remove(2);
+        pm.call(sum);
+        assertEquals(Integer.valueOf(3), sum.sum);
+        assertEquals(1, pm.getResultCache().getStatistics().getHits());
+
+        CachedRange range = new CachedRange();
+        range.count = 2;
+        pm.call(range);
+        range.values.add(99L);
+        CachedRange cached = new CachedRange();
+        cached.count = 2;
+        pm.call(cached);
+        assertEquals(Arrays.asList(1L, 2L), cached.values);
+    }
+
+    @Test
+    public void nullOutArraySetsNull() {
+
+        RangeArray array = new RangeArray();
+        array.values = new int[]{9};
+        array.count = -1;
+        pm.call(array);
+        assertNull(array.values);
+
+        RangeList list = new RangeList();
+        list.count = -1;
+        pm.call(list);
+        assertNull(list.values);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+import scalable.solutions.spm.exception.ProcedureTimeoutException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Call timeout reporting tests against an embedded H2 database.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class CallTimeoutTest {
+
+    @StoredProcedure(name = "SET_VALUE", timeout = 1000)
+    private static final class SetValue {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER)
+        private int value;
+    }
+
+    /* Connection holding the row lock. */
+    private Connection owner;
+
+    /* Connection of the manager under test. */
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+
+        owner = DriverManager.getConnection("jdbc:h2:mem:timeouts;DB_CLOSE_DELAY=-1");
+        try (Statement statement = owner.createStatement()) {
+            statement.execute("CREATE TABLE VALUES_T(ID INT PRIMARY KEY, V INT)");
+            statement.execute("INSERT INTO VALUES_T VALUES(1, 0)");
+            statement.execute("CREATE ALIAS SET_VALUE FOR \"" + CallTimeoutTest.class.getName() + ".setValue\"");
+        }
+        owner.setAutoCommit(false);
+        try (Statement statement = owner.createStatement()) {
+            statement.execute("UPDATE VALUES_T SET V = 1 WHERE ID = 1");
+        }
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:timeouts");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+        owner.rollback();
+        try (Statement statement = owner.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        owner.close();
+    }
+
+    public static void setValue(Connection connection, int value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("UPDATE VALUES_T SET V = ? WHERE ID = 1")) {
+            statement.setInt(1, value);
+            statement.executeUpdate();
+        }
+    }
+
+    private static void lockTimeout(Connection connection, int millis) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LOCK_TIMEOUT " + millis);
+        }
+    }
+
+    @Test
+    public void lockTimeoutIsNotACallTimeout() throws SQLException {
+
+        lockTimeout(connection, 100);
+        SetValue call = new SetValue();
+        call.value = 2;
+        try {
+            ProcedureManagerFactory.createInstance(connection).call(call);
+            fail();
+        } catch (ProcedureTimeoutException e) {
+            fail("lock timeout reported as call timeout");
+        } catch (ProcedureManagerException e) {
+            assertEquals("HYT00", ((SQLException) e.getCause()).getSQLState());
+        }
+    }
+
+    @Test(expected = ProcedureTimeoutException.class)
+    public void expiredCallTimeoutIsReported() throws SQLException {
+
+        lockTimeout(connection, 1500);
+        SetValue call = new SetValue();
+        call.value = 2;
+        ProcedureManagerFactory.createInstance(connection).call(call);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Concurrent manager lifecycle tests against an embedded H2 database.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class ConcurrentProcedureManagerTest {
+
+    @Test
+    public void rejectedConfigurationLeavesNoMetricsRegistered() throws Exception {
+
+        JdbcDataSource source = new JdbcDataSource();
+        source.setURL("jdbc:h2:mem:concurrent");
+        try {
+            ProcedureManagerFactory.createConcurrentInstance(source, new ProcedureManagerConfig()
+                    .setStatementCacheSize(16).setMetricsEnabled(true).setJmxName("rejected"));
+            fail("statement cache accepted");
+        } catch (ProcedureManagerException e) {
+            assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(
+                    "scalable.solutions.spm:type=ProcedureManager,name=" + ObjectName.quote("rejected"))));
+        }
+    }
+}
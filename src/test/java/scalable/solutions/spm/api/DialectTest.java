@@ -0,0 +1,151 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SQL dialect selection tests against an embedded H2 database.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class DialectTest {
+
+    @StoredProcedure(name = "TWICE", procedure = false)
+    private static final class Twice {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER, direction = Direction.OUT)
+        private int result;
+
+        @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+        private int value;
+    }
+
+    /* Database connection. */
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:dialects");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ALIAS TWICE FOR \"" + DialectTest.class.getName() + ".twice\"");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    public static int twice(int value) {
+        return 2 * value;
+    }
+
+    private static String sql(ProcedureManager pm) {
+        return ((AbstractProcedureManager) pm).resolve(Twice.class).sql;
+    }
+
+    @Test
+    public void warmUpNeedsNoConnection() {
+
+        ProcedureManager pm = ProcedureManagerFactory.createInstance();
+        WarmUpReport report = pm.warmUp(Collections.singletonList(Twice.class), false);
+
+        assertTrue(report.getFailures().isEmpty());
+        assertEquals("{? = call TWICE(?)}", sql(pm));
+    }
+
+    @Test
+    public void genericDialectIsTheDefault() {
+
+        ProcedureManager pm = ProcedureManagerFactory.createInstance(connection);
+        Twice twice = new Twice();
+        twice.value = 21;
+        pm.call(twice);
+
+        assertEquals(42, twice.result);
+        assertEquals("{? = call TWICE(?)}", sql(pm));
+    }
+
+    @Test
+    public void oracleBlockComposesProceduresAndFunctions() {
+
+        StandardDialect oracle = StandardDialect.ORACLE;
+        assertEquals("BEGIN RESERVE(?, ?); ? := PRICE(?); AUDIT(); END;", oracle.block(Arrays.asList(
+                oracle.call("RESERVE", true, 2), oracle.call("PRICE", false, 2), oracle.call("AUDIT", true, 0))));
+        assertEquals("BEGIN ? := PRICE(?); ? := PRICE(?); END;", oracle.block(Arrays.asList(
+                oracle.call("PRICE", false, 2), oracle.call("PRICE", false, 2))));
+    }
+
+    @Test
+    public void oraclePipelineShiftsThePlaceholdersOfEachCall() {
+
+        EntityResolver resolver = new EntityResolver();
+        resolver.setDialect(StandardDialect.ORACLE);
+        EntityResolver.Entity pipeline = resolver.resolvePipeline(Arrays.asList(Twice.class, Twice.class));
+
+        assertEquals("BEGIN ? := TWICE(?); ? := TWICE(?); END;", pipeline.sql);
+        assertEquals(2, pipeline.parts.length);
+        assertEquals(1, pipeline.parts[0].out[0].index);
+        assertEquals(2, pipeline.parts[0].in[0].index);
+        assertEquals(3, pipeline.parts[1].out[0].index);
+        assertEquals(4, pipeline.parts[1].in[0].index);
+    }
+
+    @Test
+    public void dialectIsDetectedOnTheFirstCall() {
+
+        ProcedureManager pm = ProcedureManagerFactory.createInstance(connection,
+                new ProcedureManagerConfig().setDialectDetectionEnabled(true));
+        assertEquals("{? = call TWICE(?)}", sql(pm));
+
+        Twice twice = new Twice();
+        twice.value = 21;
+        pm.call(twice);
+
+        assertEquals(42, twice.result);
+        assertEquals(StandardDialect.H2.call("TWICE", false, 2), sql(pm));
+
+        Twice again = new Twice();
+        again.value = 5;
+        pm.call(again);
+
+        assertEquals(10, again.result);
+        assertEquals(StandardDialect.H2.call("TWICE", false, 2), sql(pm));
+    }
+}
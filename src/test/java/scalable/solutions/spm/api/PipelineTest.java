@@ -0,0 +1,149 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Pipeline tests against an embedded H2 database, whose dialects run the
+ * calls one at a time on the same connection.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class PipelineTest {
+
+    @StoredProcedure(name = "TWICE", procedure = false)
+    private static final class Twice {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER, direction = Direction.OUT)
+        private int result;
+
+        @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+        private int value;
+
+        Twice(int value) {
+            this.value = value;
+        }
+    }
+
+    @StoredProcedure(name = "ADD_VALUE")
+    private static final class AddValue {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER)
+        private int value;
+
+        AddValue(int value) {
+            this.value = value;
+        }
+    }
+
+    @StoredProcedure(name = "SUM_VALUES", procedure = false)
+    private static final class SumValues {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER, direction = Direction.OUT)
+        private Integer sum;
+    }
+
+    /* Database connection. */
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:pipelines");
+        String prefix = PipelineTest.class.getName() + ".";
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE VALUES_T(V INT)");
+            statement.execute("CREATE ALIAS TWICE FOR \"" + prefix + "twice\"");
+            statement.execute("CREATE ALIAS ADD_VALUE FOR \"" + prefix + "addValue\"");
+            statement.execute("CREATE ALIAS SUM_VALUES FOR \"" + prefix + "sumValues\"");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    public static int twice(int value) {
+        return 2 * value;
+    }
+
+    public static void addValue(Connection connection, int value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO VALUES_T VALUES(?)")) {
+            statement.setInt(1, value);
+            statement.executeUpdate();
+        }
+    }
+
+    public static Integer sumValues(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT SUM(V) FROM VALUES_T")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void run(ProcedureManager pm) {
+
+        Twice first = new Twice(3);
+        Twice second = new Twice(4);
+        SumValues sum = new SumValues();
+        Pipeline pipeline = pm.pipeline().add(first).add(new AddValue(5)).add(second).add(new AddValue(6)).add(sum);
+        assertEquals(5, pipeline.size());
+        pipeline.execute();
+
+        assertEquals(0, pipeline.size());
+        assertEquals(6, first.result);
+        assertEquals(8, second.result);
+        assertEquals(Integer.valueOf(11), sum.sum);
+    }
+
+    @Test
+    public void callsRunInOrderWithTheGenericDialect() {
+        run(ProcedureManagerFactory.createInstance(connection));
+    }
+
+    @Test
+    public void callsRunInOrderWithTheH2Dialect() {
+        run(ProcedureManagerFactory.createInstance(connection,
+                new ProcedureManagerConfig().setDialect(StandardDialect.H2)));
+    }
+}
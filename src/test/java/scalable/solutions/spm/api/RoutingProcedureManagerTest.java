@@ -0,0 +1,230 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Read replica routing tests against embedded H2 databases.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class RoutingProcedureManagerTest {
+
+    @StoredProcedure(name = "ROLE", procedure = false, readOnly = true)
+    private static final class Role {
+
+        @StoredProcedureParameter(index = 1, type = Types.VARCHAR, direction = Direction.OUT)
+        private String role;
+    }
+
+    /* H2 replica DataSource failing to connect while the replica is down. */
+    private static final class Replica implements DataSource {
+
+        private final JdbcDataSource source = new JdbcDataSource();
+
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        private volatile boolean down;
+
+        Replica(String url) {
+            source.setURL(url);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            attempts.incrementAndGet();
+            if (down) {
+                throw new SQLTransientConnectionException("replica is down", "08001");
+            }
+            return source.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> type) throws SQLException {
+            throw new SQLException(type.getName());
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> type) {
+            return false;
+        }
+    }
+
+    /* Connections keeping the in memory databases open. */
+    private Connection primaryConnection;
+    private Connection replicaConnection;
+
+    /* Primary database. */
+    private JdbcDataSource primary;
+
+    /* Read replica under test. */
+    private Replica replica;
+
+    /* Manager under test. */
+    private ProcedureManager pm;
+
+    @Before
+    public void setUp() throws SQLException {
+
+        primary = new JdbcDataSource();
+        primary.setURL("jdbc:h2:mem:routing_primary");
+        primaryConnection = database(primary.getConnection(), "primary");
+        replica = new Replica("jdbc:h2:mem:routing_replica");
+        replicaConnection = database(replica.getConnection(), "replica");
+        replica.attempts.set(0);
+
+        pm = ProcedureManagerFactory.createRoutingInstance(primary, Collections.singletonList(replica),
+                new ProcedureManagerConfig().setReplicaFailureThreshold(2).setReplicaEjectionTime(200));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        pm.close();
+        for (Connection connection : new Connection[]{primaryConnection, replicaConnection}) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+            }
+            connection.close();
+        }
+    }
+
+    private static Connection database(Connection connection, String role) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ROLE_T(ROLE VARCHAR(16))");
+            statement.execute("INSERT INTO ROLE_T VALUES('" + role + "')");
+            statement.execute("CREATE ALIAS ROLE FOR \"" + RoutingProcedureManagerTest.class.getName() + ".role\"");
+        }
+        return connection;
+    }
+
+    public static String role(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT ROLE FROM ROLE_T")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private String call() {
+        Role call = new Role();
+        pm.call(call);
+        return call.role;
+    }
+
+    @Test
+    public void readOnlyCallsRunOnTheReplica() {
+        assertEquals("replica", call());
+        assertEquals(1, replica.attempts.get());
+    }
+
+    @Test
+    public void failingReplicaFallsBackToThePrimaryAndIsEjected() {
+
+        replica.down = true;
+        assertEquals("primary", call());
+        assertEquals("primary", call());
+        assertEquals(2, replica.attempts.get());
+
+        // ejected after the second consecutive failure
+        assertEquals("primary", call());
+        assertEquals(2, replica.attempts.get());
+    }
+
+    @Test
+    public void ejectedReplicaIsReadmittedAfterTheEjectionTime() throws InterruptedException {
+
+        replica.down = true;
+        call();
+        call();
+        replica.down = false;
+        assertEquals("primary", call());
+
+        Thread.sleep(250);
+        assertEquals("replica", call());
+        assertEquals("replica", call());
+        assertEquals(4, replica.attempts.get());
+    }
+
+    @Test
+    public void callsInATransactionRunOnThePrimary() {
+
+        TransactionManager transaction = pm.getTransactionManager();
+        transaction.begin();
+        try {
+            assertEquals("primary", call());
+        } finally {
+            transaction.end();
+        }
+        assertEquals(0, replica.attempts.get());
+        assertEquals("replica", call());
+    }
+}
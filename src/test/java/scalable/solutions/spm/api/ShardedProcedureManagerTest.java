@@ -0,0 +1,87 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Sharded manager lifecycle tests against embedded H2 databases.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class ShardedProcedureManagerTest {
+
+    private static DataSource shard(int index) {
+        JdbcDataSource source = new JdbcDataSource();
+        source.setURL("jdbc:h2:mem:shard" + index);
+        return source;
+    }
+
+    private static ObjectName name(String name) throws Exception {
+        return new ObjectName("scalable.solutions.spm:type=ProcedureManager,name=" + ObjectName.quote(name));
+    }
+
+    @Test
+    public void eachShardExposesItsOwnMetrics() throws Exception {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ShardedProcedureManager sm = ProcedureManagerFactory.createShardedInstance(
+                Arrays.asList(shard(0), shard(1)), null,
+                new ProcedureManagerConfig().setMetricsEnabled(true).setJmxName("orders"));
+        try {
+            assertTrue(server.isRegistered(name("orders-0")));
+            assertTrue(server.isRegistered(name("orders-1")));
+        } finally {
+            sm.close();
+        }
+        assertFalse(server.isRegistered(name("orders-0")));
+        assertFalse(server.isRegistered(name("orders-1")));
+    }
+
+    @Test
+    public void createdShardsAreClosedWhenConstructionFails() throws Exception {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ProcedureManagerConfig config = new ProcedureManagerConfig().setMetricsEnabled(true).setJmxName("taken");
+        ProcedureManager taken = ProcedureManagerFactory.createConcurrentInstance(shard(0),
+                new ProcedureManagerConfig().setMetricsEnabled(true).setJmxName("taken-1"));
+        try {
+            ProcedureManagerFactory.createShardedInstance(Arrays.asList(shard(0), shard(1)), null, config);
+            fail("shard registered under a taken name");
+        } catch (RuntimeException e) {
+            assertFalse(server.isRegistered(name("taken-0")));
+        } finally {
+            taken.close();
+        }
+    }
+}
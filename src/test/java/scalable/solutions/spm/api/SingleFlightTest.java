@@ -0,0 +1,163 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
+import scalable.solutions.spm.exception.ProcedureTimeoutException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Single flight call tests against an embedded H2 database.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class SingleFlightTest {
+
+    @StoredProcedure(name = "SLOW_VALUE", procedure = false, singleFlight = true)
+    private static final class SlowValue {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER, direction = Direction.OUT)
+        private Integer result;
+
+        @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+        private int value = 7;
+    }
+
+    /* Number of database calls. */
+    private static final AtomicInteger CALLS = new AtomicInteger();
+
+    /* Latch holding the first database call. */
+    private static volatile CountDownLatch hold;
+
+    /* Connection keeping the in memory database open. */
+    private Connection connection;
+
+    /* Manager under test. */
+    private ProcedureManager pm;
+
+    /* Thread running the first call. */
+    private Thread leader;
+
+    @Before
+    public void setUp() throws SQLException {
+
+        JdbcDataSource source = new JdbcDataSource();
+        source.setURL("jdbc:h2:mem:singleflight");
+        connection = source.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ALIAS SLOW_VALUE FOR \"" + SingleFlightTest.class.getName() + ".slowValue\"");
+        }
+        CALLS.set(0);
+        hold = new CountDownLatch(1);
+        pm = ProcedureManagerFactory.createConcurrentInstance(source);
+
+        leader = new Thread(() -> pm.call(new SlowValue()));
+        leader.start();
+        while (CALLS.get() == 0) {
+            Thread.yield();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hold.countDown();
+        leader.join();
+        pm.close();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    public static int slowValue(int value) throws InterruptedException {
+        if (CALLS.incrementAndGet() == 1) {
+            hold.await(10, TimeUnit.SECONDS);
+        }
+        return value * 2;
+    }
+
+    @Test(timeout = 5000)
+    public void waitingCallerGivesUpAtItsDeadline() {
+
+        long started = System.nanoTime();
+        try {
+            pm.call(new SlowValue(), Deadline.after(200, TimeUnit.MILLISECONDS));
+            fail("call completed while the shared call was held");
+        } catch (ProcedureTimeoutException e) {
+            assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+        }
+        assertEquals(1, CALLS.get());
+    }
+
+    @Test(timeout = 5000)
+    public void callsInATransactionAreNotShared() {
+
+        SlowValue call = new SlowValue();
+        pm.getTransactionManager().begin();
+        try {
+            pm.call(call);
+        } finally {
+            pm.getTransactionManager().rollback();
+        }
+        assertEquals(Integer.valueOf(14), call.result);
+        assertEquals(2, CALLS.get());
+    }
+
+    @Test(timeout = 5000)
+    public void callsOnACallerConnectionAreNotShared() {
+
+        SlowValue call = new SlowValue();
+        pm.call(connection, call);
+        assertEquals(Integer.valueOf(14), call.result);
+        assertEquals(2, CALLS.get());
+    }
+
+    @Test(timeout = 5000)
+    public void waitingCallersShareTheCallInFlight() throws InterruptedException {
+
+        SlowValue call = new SlowValue();
+        Thread waiter = new Thread(() -> pm.call(call));
+        waiter.start();
+        Thread.sleep(100);
+        hold.countDown();
+        waiter.join();
+        assertEquals(Integer.valueOf(14), call.result);
+        assertEquals(1, CALLS.get());
+    }
+}
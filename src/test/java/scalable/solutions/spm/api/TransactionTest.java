@@ -0,0 +1,135 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Transaction template tests against an embedded H2 database.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class TransactionTest {
+
+    @StoredProcedure(name = "ADD_VALUE")
+    private static final class AddValue {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER)
+        private int value;
+
+        AddValue(int value) {
+            this.value = value;
+        }
+    }
+
+    /* Connection reading the committed rows. */
+    private Connection reader;
+
+    /* Connection of the manager under test. */
+    private Connection connection;
+
+    /* Manager under test. */
+    private ProcedureManager pm;
+
+    @Before
+    public void setUp() throws SQLException {
+
+        reader = DriverManager.getConnection("jdbc:h2:mem:transactions;DB_CLOSE_DELAY=-1");
+        try (Statement statement = reader.createStatement()) {
+            statement.execute("CREATE TABLE VALUES_T(V INT)");
+            statement.execute("CREATE ALIAS ADD_VALUE FOR \"" + TransactionTest.class.getName() + ".addValue\"");
+        }
+        connection = DriverManager.getConnection("jdbc:h2:mem:transactions");
+        pm = ProcedureManagerFactory.createInstance(connection);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        pm.close();
+        try (Statement statement = reader.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        reader.close();
+    }
+
+    public static void addValue(Connection connection, int value) throws SQLException {
+
+        if (value < 0) {
+            throw new SQLException("invalid value", "22000");
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO VALUES_T VALUES(?)")) {
+            statement.setInt(1, value);
+            statement.executeUpdate();
+        }
+    }
+
+    private int committed() throws SQLException {
+        try (Statement statement = reader.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM VALUES_T")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void unitOfWorkIsCommittedOnAConnectionWithAutoCommitOff() throws SQLException {
+
+        connection.setAutoCommit(false);
+        pm.getTransactionManager().inTransaction(manager -> manager.call(new AddValue(1)));
+
+        assertEquals(1, committed());
+    }
+
+    @Test
+    public void nestedFailureRollsBackOnlyItsSavepoint() throws SQLException {
+
+        pm.getTransactionManager().inTransaction(manager -> {
+            manager.call(new AddValue(1));
+            try {
+                manager.getTransactionManager().inTransaction(nested -> nested.call(new AddValue(-1)));
+                fail("nested failure ignored");
+            } catch (ProcedureManagerException e) {
+                // the outer unit of work continues
+            }
+            return manager.call(new AddValue(2));
+        });
+
+        assertEquals(2, committed());
+    }
+}
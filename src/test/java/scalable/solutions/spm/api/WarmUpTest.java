@@ -0,0 +1,114 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.annotations.enums.Direction;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Warm up tests against an embedded H2 database.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class WarmUpTest {
+
+    @StoredProcedure(name = "TWICE", procedure = false)
+    private static final class Twice {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER, direction = Direction.OUT)
+        private int result;
+
+        @StoredProcedureParameter(index = 2, type = Types.INTEGER)
+        private int value;
+    }
+
+    /* Database connection. */
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:warmup");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ALIAS TWICE FOR \"" + WarmUpTest.class.getName() + ".twice\"");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    public static int twice(int value) {
+        return 2 * value;
+    }
+
+    private static ProcedureManagerConfig cached() {
+        return new ProcedureManagerConfig().setStatementCacheSize(8);
+    }
+
+    @Test
+    public void statementsArePreparedIntoTheCurrentConnectionCache() {
+
+        ProcedureManager pm = ProcedureManagerFactory.createInstance(connection, cached());
+        WarmUpReport report = pm.warmUp(Collections.singletonList(Twice.class), true);
+
+        assertFalse(report.isPreparationSkipped());
+        assertEquals(1, report.getPrepared());
+        assertTrue(report.getFailures().isEmpty());
+    }
+
+    @Test
+    public void preparationIsSkippedWithoutACurrentConnection() {
+
+        ProcedureManager pm = ProcedureManagerFactory.createInstance((Connection) null, cached());
+        WarmUpReport report = pm.warmUp(Collections.singletonList(Twice.class), true);
+
+        assertTrue(report.isPreparationSkipped());
+        assertEquals(0, report.getPrepared());
+        assertEquals(Collections.singletonList(Twice.class), report.getResolved());
+    }
+
+    @Test
+    public void preparationIsSkippedWithoutAStatementCache() {
+
+        ProcedureManager pm = ProcedureManagerFactory.createInstance(connection);
+        WarmUpReport report = pm.warmUp(Collections.singletonList(Twice.class), true);
+
+        assertTrue(report.isPreparationSkipped());
+        assertEquals(0, report.getPrepared());
+    }
+}
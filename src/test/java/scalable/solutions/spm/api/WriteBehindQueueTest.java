@@ -0,0 +1,360 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.annotations.StoredProcedureParameter;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import javax.sql.DataSource;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Write behind queue tests against an embedded H2 database.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class WriteBehindQueueTest {
+
+    @StoredProcedure(name = "AUDIT")
+    private static final class Audit {
+
+        @StoredProcedureParameter(index = 1, type = Types.INTEGER)
+        private int value;
+
+        Audit(int value) {
+            this.value = value;
+        }
+    }
+
+    @StoredProcedure(name = "AUDIT")
+    private static final class Note {
+
+        @StoredProcedureParameter(index = 1, type = Types.JAVA_OBJECT)
+        private Object value;
+
+        Note(Object value) {
+            this.value = value;
+        }
+    }
+
+    /* H2 DataSource failing to connect while the database is down. */
+    private static final class Database implements DataSource {
+
+        private volatile boolean down;
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLTransientConnectionException("database is down", "08001");
+            }
+            return DriverManager.getConnection("jdbc:h2:mem:writebehind");
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> type) throws SQLException {
+            throw new SQLException(type.getName());
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> type) {
+            return false;
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* Database under test. */
+    private Database database;
+
+    /* Connection keeping the in memory database open. */
+    private Connection connection;
+
+    /* Journal file. */
+    private Path journal;
+
+    @Before
+    public void setUp() throws Exception {
+
+        database = new Database();
+        connection = database.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE AUDIT_T(V INT)");
+            statement.execute("CREATE ALIAS AUDIT FOR \"" + WriteBehindQueueTest.class.getName() + ".audit\"");
+        }
+        journal = folder.getRoot().toPath().resolve("audit.journal");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    public static void audit(Connection connection, int value) throws SQLException {
+
+        if (value < 0) {
+            throw new SQLException("invalid value", "22000");
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO AUDIT_T VALUES(?)")) {
+            statement.setInt(1, value);
+            statement.executeUpdate();
+        }
+    }
+
+    private int rows() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM AUDIT_T")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private WriteBehindQueue create() {
+        return ProcedureManagerFactory.createWriteBehindQueue(database, journal, new ProcedureManagerConfig()
+                .setJournalSize(1024 * 1024).setWriteBehindRetries(1).setRetryBackoff(1).setMaxRetryBackoff(20));
+    }
+
+    /**
+     * Compile and load a version of the journal.Versioned POJO class.
+     *
+     * @param parameters Parameter field declarations.
+     * @return Class loader of the version.
+     */
+    private ClassLoader version(String... parameters) throws Exception {
+
+        Path sources = folder.newFolder().toPath();
+        Path file = sources.resolve("journal/Versioned.java");
+        Files.createDirectories(file.getParent());
+        StringBuilder source = new StringBuilder("package journal;\n"
+                + "import scalable.solutions.spm.annotations.*;\n"
+                + "@StoredProcedure(name = \"AUDIT\")\n"
+                + "public class Versioned {\n");
+        for (String parameter : parameters) {
+            source.append(parameter).append('\n');
+        }
+        source.append("    public Versioned(int value) { this.value = value; }\n}\n");
+        Files.write(file, Arrays.asList(source.toString()), StandardCharsets.UTF_8);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        String library = new File(StoredProcedure.class.getProtectionDomain().getCodeSource()
+                .getLocation().toURI()).getPath();
+        assertEquals(0, compiler.run(null, null, null, "-proc:none", "-classpath", library,
+                "-d", sources.toString(), file.toString()));
+        return new URLClassLoader(new URL[]{sources.toUri().toURL()}, getClass().getClassLoader());
+    }
+
+    @Test
+    public void callsSurviveADatabaseOutage() throws Exception {
+
+        WriteBehindQueue queue = create();
+        try {
+            database.down = true;
+            for (int i = 0; i < 5; i++) {
+                queue.enqueue(new Audit(i));
+            }
+            assertFalse(queue.flush(300, TimeUnit.MILLISECONDS));
+            assertEquals(0, queue.getFailedCount());
+            assertEquals(5, queue.getPendingCount());
+
+            database.down = false;
+            assertTrue(queue.flush(5, TimeUnit.SECONDS));
+            assertEquals(5, queue.getCompletedCount());
+            assertEquals(5, rows());
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void callsLeftByACloseDuringAnOutageAreReplayed() throws Exception {
+
+        WriteBehindQueue queue = create();
+        database.down = true;
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(new Audit(i));
+        }
+        queue.close();
+        assertEquals(0, queue.getFailedCount());
+        assertEquals(0, rows());
+
+        database.down = false;
+        WriteBehindQueue replay = create();
+        try {
+            assertTrue(replay.flush(5, TimeUnit.SECONDS));
+            assertEquals(3, rows());
+        } finally {
+            replay.close();
+        }
+    }
+
+    @Test
+    public void permanentFailuresDropOnlyTheFailingCalls() throws Exception {
+
+        WriteBehindQueue queue = create();
+        try {
+            queue.enqueue(new Audit(1));
+            queue.enqueue(new Audit(-1));
+            queue.enqueue(new Audit(2));
+            assertTrue(queue.flush(5, TimeUnit.SECONDS));
+
+            assertEquals(1, queue.getFailedCount());
+            assertEquals(2, queue.getCompletedCount());
+            assertEquals(2, rows());
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void callsEnqueuedWhileClosingAreWrittenOrRejected() throws Exception {
+
+        WriteBehindQueue queue = create();
+        int[] accepted = new int[1];
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; ; i++) {
+                    queue.enqueue(new Audit(i));
+                    accepted[0]++;
+                }
+            } catch (ProcedureManagerException e) {
+                // closed
+            }
+        });
+        producer.start();
+        Thread.sleep(50);
+        queue.close();
+        producer.join();
+
+        assertEquals(accepted[0], rows());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void valuesThatCannotBeJournaledAreRejected() throws Exception {
+
+        WriteBehindQueue queue = create();
+        try {
+            queue.enqueue(new Note(new StringBuilder("note")));
+            fail("journaled " + StringBuilder.class.getName());
+        } catch (ProcedureManagerException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(StringBuilder.class.getName()));
+        } finally {
+            queue.close();
+        }
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void replayedCallsNotMatchingTheirClassAreDropped() throws Exception {
+
+        Thread thread = Thread.currentThread();
+        ClassLoader context = thread.getContextClassLoader();
+        try {
+            ClassLoader loader = version(
+                    "    @StoredProcedureParameter(index = 1, type = java.sql.Types.INTEGER)",
+                    "    public int value;");
+            thread.setContextClassLoader(loader);
+            WriteBehindQueue queue = create();
+            database.down = true;
+            queue.enqueue(loader.loadClass("journal.Versioned").getConstructor(int.class).newInstance(1));
+            queue.close();
+
+            database.down = false;
+            thread.setContextClassLoader(version(
+                    "    @StoredProcedureParameter(index = 1, type = java.sql.Types.BIGINT)",
+                    "    public long value;"));
+            WriteBehindQueue replay = create();
+            try {
+                assertTrue(replay.flush(5, TimeUnit.SECONDS));
+                assertEquals(1, replay.getFailedCount());
+                assertEquals(0, rows());
+            } finally {
+                replay.close();
+            }
+        } finally {
+            thread.setContextClassLoader(context);
+        }
+    }
+}
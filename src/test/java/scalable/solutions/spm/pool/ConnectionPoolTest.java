@@ -0,0 +1,265 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.pool;
+
+import org.junit.After;
+import org.junit.Test;
+import scalable.solutions.spm.annotations.JDBC;
+import scalable.solutions.spm.api.ProcedureManagerFactory;
+import scalable.solutions.spm.exception.ProcedureManagerException;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Connection pool tests against an embedded H2 database.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class ConnectionPoolTest {
+
+    @JDBC(driver = "org.h2.Driver", url = "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1", maxPoolSize = 2)
+    private static final class Pooled {
+    }
+
+    @JDBC(driver = "org.h2.Driver", url = "jdbc:h2:mem:timeout;DB_CLOSE_DELAY=-1", maxPoolSize = 1,
+            acquireTimeout = 200)
+    private static final class Single {
+    }
+
+    @JDBC(driver = "org.h2.Driver", url = "jdbc:h2:mem:idle;DB_CLOSE_DELAY=-1", maxPoolSize = 4,
+            idleTimeout = 200)
+    private static final class Idle {
+    }
+
+    @JDBC(driver = "org.h2.Driver", url = "jdbc:h2:mem:validate;DB_CLOSE_DELAY=-1", maxPoolSize = 2)
+    private static final class Validated {
+    }
+
+    @JDBC(driver = "org.h2.Driver", url = "jdbc:h2:mem:leak;DB_CLOSE_DELAY=-1", maxPoolSize = 1,
+            leakDetectionThreshold = 200)
+    private static final class Leaking {
+    }
+
+    @JDBC(driver = "org.h2.Driver", url = "jdbc:h2:mem:unpooled;DB_CLOSE_DELAY=-1")
+    private static final class Unpooled {
+    }
+
+    /* Pool under test. */
+    private ConnectionPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private static ConnectionPool create(Class<?> type) {
+        return new ConnectionPool(type.getAnnotation(JDBC.class));
+    }
+
+    private static int count(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void returnedConnectionIsReused() throws SQLException {
+
+        pool = create(Pooled.class);
+        Connection first = pool.getConnection();
+        assertEquals(1, pool.getActiveConnections());
+        assertEquals(1, count(first, "SELECT 1"));
+        first.close();
+        first.close();
+
+        assertTrue(first.isClosed());
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+
+        try (Connection second = pool.getConnection()) {
+            assertNotSame(first, second);
+            assertEquals(1, pool.getTotalConnections());
+            assertEquals(0, pool.getIdleConnections());
+        }
+
+        try {
+            first.createStatement();
+            fail("closed proxy used");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void returnedConnectionIsReset() throws SQLException {
+
+        pool = create(Pooled.class);
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA IF NOT EXISTS OTHER");
+            statement.execute("CREATE TABLE IF NOT EXISTS RESET(ID INT)");
+        }
+
+        String schema;
+        int isolation;
+        try (Connection connection = pool.getConnection()) {
+            schema = connection.getSchema();
+            isolation = connection.getTransactionIsolation();
+            // H2 commits the pending transaction when the isolation level changes
+            connection.setReadOnly(true);
+            connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            connection.setSchema("OTHER");
+            connection.setAutoCommit(false);
+            connection.createStatement().execute("INSERT INTO PUBLIC.RESET VALUES(1)");
+        }
+
+        try (Connection connection = pool.getConnection()) {
+            assertEquals(1, pool.getTotalConnections());
+            assertTrue(connection.getAutoCommit());
+            assertFalse(connection.isReadOnly());
+            assertEquals(isolation, connection.getTransactionIsolation());
+            assertEquals(schema, connection.getSchema());
+            assertEquals(0, count(connection, "SELECT COUNT(*) FROM RESET"));
+        }
+    }
+
+    @Test
+    public void borrowTimesOutWhenExhausted() throws SQLException {
+
+        pool = create(Single.class);
+        try (Connection ignored = pool.getConnection()) {
+            long start = System.nanoTime();
+            try {
+                pool.getConnection();
+                fail("pool exhausted");
+            } catch (SQLTransientConnectionException e) {
+                assertTrue((System.nanoTime() - start) / 1000000 >= 190);
+            }
+        }
+
+        // the permit is available again once the connection is returned
+        pool.getConnection().close();
+    }
+
+    @Test
+    public void idleConnectionsAreEvicted() throws Exception {
+
+        pool = create(Idle.class);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        Connection third = pool.getConnection();
+        first.close();
+        second.close();
+        third.close();
+        assertEquals(3, pool.getIdleConnections());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getTotalConnections() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, pool.getTotalConnections());
+        assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    public void invalidConnectionsAreReplacedOnBorrow() throws SQLException {
+
+        pool = create(Validated.class);
+        Connection idle = pool.getConnection();
+        Connection killer = pool.getConnection();
+        idle.close();
+
+        // closes every session of the database, including the idle one
+        killer.createStatement().execute("SHUTDOWN");
+        killer.close();
+        assertEquals(1, pool.getTotalConnections());
+
+        try (Connection connection = pool.getConnection()) {
+            assertEquals(1, count(connection, "SELECT 1"));
+            assertEquals(1, pool.getTotalConnections());
+        }
+    }
+
+    @Test
+    public void leakedConnectionsAreReported() throws Exception {
+
+        List<LogRecord> records = new CopyOnWriteArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+        logger.addHandler(handler);
+        logger.setUseParentHandlers(false);
+        try {
+            pool = create(Leaking.class);
+            try (Connection ignored = pool.getConnection()) {
+                long deadline = System.currentTimeMillis() + 5000;
+                while (records.isEmpty() && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(50);
+                }
+                // reported once
+                Thread.sleep(300);
+            }
+        } finally {
+            logger.setUseParentHandlers(true);
+            logger.removeHandler(handler);
+        }
+
+        assertEquals(1, records.size());
+        assertEquals(Level.WARNING, records.get(0).getLevel());
+        assertTrue(records.get(0).getThrown() != null);
+    }
+
+    @Test(expected = ProcedureManagerException.class)
+    public void poolingIsOptIn() {
+        ProcedureManagerFactory.getConnectionPool(Unpooled.class);
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * POJO Stored Procedure Entity Manager
+ * Copyright (c) 2011-2021 Scalable Solutions SRL
+ *
+ * Author: Marius Gligor <marius.gligor@gmail.com>
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111, USA.
+ */
+package scalable.solutions.spm.processor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import scalable.solutions.spm.annotations.StoredProcedure;
+import scalable.solutions.spm.api.GeneratedEntity;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Annotation processor tests compiling sample sources with the system Java compiler.
+ *
+ * @author Marius Gligor
+ * @version 6.0
+ */
+public class StoredProcedureProcessorTest {
+
+    /* Service provider configuration file of the binders. */
+    private static final String SERVICES = "META-INF/services/" + GeneratedEntity.class.getName();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* Sample sources. */
+    private Path sources;
+
+    /* Compiled classes. */
+    private Path classes;
+
+    /* Compiler errors and warnings. */
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void setUp() throws IOException {
+        sources = folder.newFolder("sources").toPath();
+        classes = folder.newFolder("classes").toPath();
+    }
+
+    private void source(String name, String... lines) throws IOException {
+        Path file = sources.resolve(name.replace('.', File.separatorChar) + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private boolean compile() throws Exception {
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            List<File> inputs;
+            try (java.util.stream.Stream<Path> paths = Files.walk(sources)) {
+                inputs = paths.filter(path -> path.toString().endsWith(".java")).map(Path::toFile)
+                        .collect(Collectors.toList());
+            }
+            String library = new File(StoredProcedure.class.getProtectionDomain().getCodeSource()
+                    .getLocation().toURI()).getPath();
+            List<String> options = new ArrayList<>(Arrays.asList("-classpath", library,
+                    "-processor", StoredProcedureProcessor.class.getName(),
+                    "-d", classes.toString(), "-s", classes.toString()));
+            return compiler.getTask(null, files, diagnostics, options, null,
+                    files.getJavaFileObjectsFromFiles(inputs)).call();
+        }
+    }
+
+    private List<String> errors() {
+        return diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .collect(Collectors.toList());
+    }
+
+    private List<String> registered() throws IOException {
+        Path services = classes.resolve(SERVICES);
+        return Files.exists(services) ? Files.readAllLines(services, StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.trim().isEmpty()).collect(Collectors.toList()) : Collections.emptyList();
+    }
+
+    @Test
+    public void binderIsGeneratedAndRegistered() throws Exception {
+
+        source("sample.Twice",
+                "package sample;",
+                "import scalable.solutions.spm.annotations.*;",
+                "import scalable.solutions.spm.annotations.enums.Direction;",
+                "@StoredProcedure(name = \"TWICE\", procedure = false, cacheable = true, ttl = 5000)",
+                "public class Twice {",
+                "    @StoredProcedureParameter(index = 1, type = java.sql.Types.INTEGER, direction = Direction.OUT)",
+                "    int result;",
+                "    @StoredProcedureParameter(index = 2, type = java.sql.Types.INTEGER)",
+                "    private int value;",
+                "    public int getValue() { return value; }",
+                "}");
+        source("sample.Log",
+                "package sample;",
+                "import scalable.solutions.spm.annotations.*;",
+                "@StoredProcedure(name = \"LOG\")",
+                "class Log {",
+                "    @StoredProcedureParameter(index = 1, type = java.sql.Types.VARCHAR)",
+                "    String message;",
+                "    @StoredProcedure(name = \"LOG_NESTED\")",
+                "    static class Nested {",
+                "        @StoredProcedureParameter(index = 1, type = java.sql.Types.VARCHAR)",
+                "        String message;",
+                "    }",
+                "}");
+
+        boolean compiled = compile();
+        assertTrue(errors().toString(), compiled);
+        assertEquals(Arrays.asList("sample.Log_Nested_SpBinder", "sample.Log_SpBinder", "sample.Twice_SpBinder"),
+                registered());
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()},
+                getClass().getClassLoader())) {
+            List<GeneratedEntity> binders = new ArrayList<>();
+            ServiceLoader.load(GeneratedEntity.class, loader).forEach(binders::add);
+            assertEquals(3, binders.size());
+
+            GeneratedEntity twice = binders.stream()
+                    .filter(binder -> binder.type().getName().equals("sample.Twice")).findFirst().get();
+            assertEquals("TWICE", twice.name());
+            assertTrue(twice.cacheable());
+            assertEquals(5000L, twice.ttl());
+            assertEquals("{? = call TWICE(?)}", twice.sql());
+        }
+    }
+
+    @Test
+    public void inaccessibleClassesAreBoundUsingReflection() throws Exception {
+
+        source("sample.Outer",
+                "package sample;",
+                "import scalable.solutions.spm.annotations.*;",
+                "import java.util.List;",
+                "public class Outer {",
+                "    @StoredProcedure(name = \"PRIVATE\")",
+                "    private static final class Private {",
+                "        @StoredProcedureParameter(index = 1, type = java.sql.Types.INTEGER)",
+                "        private int value;",
+                "    }",
+                "    private static class Hidden {",
+                "        @StoredProcedure(name = \"INSIDE_PRIVATE\")",
+                "        public static class Inside {",
+                "            @StoredProcedureParameter(index = 1, type = java.sql.Types.INTEGER)",
+                "            public int value;",
+                "        }",
+                "    }",
+                "    private static class Row {",
+                "    }",
+                "    @StoredProcedure(name = \"PRIVATE_ROWS\")",
+                "    public static class Rows {",
+                "        @StoredProcedureParameter(index = 1, type = java.sql.Types.ARRAY, typeName = \"ROW\")",
+                "        public List<Row> rows;",
+                "    }",
+                "    void local() {",
+                "        @StoredProcedure(name = \"LOCAL\")",
+                "        class Local {",
+                "            @StoredProcedureParameter(index = 1, type = java.sql.Types.INTEGER)",
+                "            int value;",
+                "        }",
+                "    }",
+                "    @StoredProcedure(name = \"VISIBLE\")",
+                "    protected static class Visible {",
+                "        @StoredProcedureParameter(index = 1, type = java.sql.Types.INTEGER)",
+                "        int value;",
+                "    }",
+                "}");
+
+        boolean compiled = compile();
+        assertTrue(errors().toString(), compiled);
+        assertEquals(Collections.singletonList("sample.Outer_Visible_SpBinder"), registered());
+    }
+
+    @Test
+    public void invalidMappingFailsTheBuild() throws Exception {
+
+        source("sample.Duplicate",
+                "package sample;",
+                "import scalable.solutions.spm.annotations.*;",
+                "@StoredProcedure(name = \"DUPLICATE\")",
+                "public class Duplicate {",
+                "    @StoredProcedureParameter(index = 1, type = java.sql.Types.INTEGER)",
+                "    int first;",
+                "    @StoredProcedureParameter(index = 1, type = java.sql.Types.INTEGER)",
+                "    int second;",
+                "}");
+
+        assertFalse(compile());
+        assertEquals(1, errors().size());
+    }
+
+    @Test
+    public void staleRegistrationsAreReplaced() throws Exception {
+
+        Files.createDirectories(classes.resolve(SERVICES).getParent());
+        Files.write(classes.resolve(SERVICES), Collections.singletonList("sample.Removed_SpBinder"),
+                StandardCharsets.UTF_8);
+        source("sample.Kept",
+                "package sample;",
+                "import scalable.solutions.spm.annotations.*;",
+                "@StoredProcedure(name = \"KEPT\")",
+                "public class Kept {",
+                "    @StoredProcedureParameter(index = 1, type = java.sql.Types.INTEGER)",
+                "    int value;",
+                "}");
+
+        boolean compiled = compile();
+        assertTrue(errors().toString(), compiled);
+        assertEquals(Collections.singletonList("sample.Kept_SpBinder"), registered());
+    }
+}